@@ -0,0 +1,72 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.LibreriaApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Levanta la aplicación contra una H2 en memoria propia de cada benchmark
+public final class BenchmarkApplication {
+    
+    private BenchmarkApplication() {
+    }
+    
+    public static ConfigurableApplicationContext start(String externalBooksUrl, String... extraProperties) {
+        return run(WebApplicationType.NONE, externalBooksUrl, extraProperties);
+    }
+    
+    // Igual que start pero con Tomcat en un puerto libre (ver getPort), para el generador de carga
+    public static ConfigurableApplicationContext startServer(String externalBooksUrl, String... extraProperties) {
+        String[] properties = Arrays.copyOf(extraProperties, extraProperties.length + 1);
+        properties[extraProperties.length] = "server.port=0";
+        return run(WebApplicationType.SERVLET, externalBooksUrl, properties);
+    }
+    
+    public static int getPort(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+    
+    private static ConfigurableApplicationContext run(WebApplicationType webType,
+                                                      String externalBooksUrl, String... extraProperties) {
+        Path workDir;
+        try {
+            workDir = Files.createTempDirectory("libreria-bench");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("spring.h2.console.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("reservations.archive.enabled", "false");
+        properties.put("journal.directory", workDir.resolve("journal").toString());
+        properties.put("external.api.books.url", externalBooksUrl);
+        // Las propiedades extra reemplazan a las de arriba (repetir un argumento los concatena)
+        for (String property : extraProperties) {
+            int separator = property.indexOf('=');
+            properties.put(property.substring(0, separator), property.substring(separator + 1));
+        }
+        // Como argumentos de línea de comandos para que tengan prioridad sobre application.yaml
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        
+        return new SpringApplicationBuilder(LibreriaApplication.class)
+                .web(webType)
+                .run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reemplazo local de external.api.books.url que sirve un catálogo sintético del tamaño pedido
+public class CatalogStubServer implements AutoCloseable {
+    
+    public static final long FIRST_BOOK_ID = 1_000_000L;
+    
+    private final HttpServer server;
+    
+    public CatalogStubServer(int catalogSize) {
+        try {
+            byte[] catalog = new ObjectMapper().writeValueAsBytes(generateCatalog(catalogSize));
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/books", exchange -> {
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, catalog.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(catalog);
+                }
+            });
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    public String getBooksUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/books";
+    }
+    
+    public static List<ExternalBookDTO> generateCatalog(int size) {
+        List<ExternalBookDTO> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ExternalBookDTO book = new ExternalBookDTO();
+            book.setId(FIRST_BOOK_ID + i);
+            book.setTitle("Libro sintético " + i);
+            book.setAuthorName(List.of("Autor " + (i % 500), "Coautor " + (i % 37)));
+            book.setFirstPublishYear(1900 + i % 120);
+            book.setEditionCount(1 + i % 50);
+            book.setHasFulltext(i % 2 == 0);
+            book.setPrice(BigDecimal.valueOf(500 + i % 3000, 2));
+            books.add(book);
+        }
+        return books;
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.service.FeeCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeeCalculationBenchmark {
+    
+    private BigDecimal price;
+    
+    // En su propio estado para que JMH solo multiplique lateFee por los días de atraso, no totalFee
+    @State(Scope.Benchmark)
+    public static class Lateness {
+        @Param({"0", "3", "45"})
+        public long daysLate;
+    }
+    
+    @Setup
+    public void setUp() {
+        price = new BigDecimal("15.99");
+    }
+    
+    @Benchmark
+    public BigDecimal totalFee() {
+        return FeeCalculator.totalFee(price, 7);
+    }
+    
+    @Benchmark
+    public BigDecimal lateFee(Lateness lateness) {
+        return FeeCalculator.lateFee(price, lateness.daysLate);
+    }
+}
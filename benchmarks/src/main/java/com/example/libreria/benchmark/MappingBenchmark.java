@@ -0,0 +1,59 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.mapper.BookMapper;
+import com.example.libreria.mapper.ReservationMapper;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Régimen estable: mappers generados por MapStruct contra el ModelMapper reflexivo que reemplazan.
+// Correr con -prof gc para comparar también la asignación por operación.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    
+    private BookMapper bookMapper;
+    private ReservationMapper reservationMapper;
+    private ModelMapper modelMapper;
+    private Book book;
+    private Reservation reservation;
+    
+    @Setup
+    public void setUp() {
+        bookMapper = Mappers.getMapper(BookMapper.class);
+        reservationMapper = Mappers.getMapper(ReservationMapper.class);
+        modelMapper = new ModelMapper();
+        book = MappingFixtures.book();
+        reservation = MappingFixtures.reservation();
+    }
+    
+    @Benchmark
+    public BookResponseDTO bookMapStruct() {
+        return bookMapper.toDTO(book);
+    }
+    
+    @Benchmark
+    public BookResponseDTO bookModelMapper() {
+        return modelMapper.map(book, BookResponseDTO.class);
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO reservationMapStruct() {
+        return reservationMapper.toDTO(reservation);
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO reservationModelMapper() {
+        return modelMapper.map(reservation, ReservationResponseDTO.class);
+    }
+}
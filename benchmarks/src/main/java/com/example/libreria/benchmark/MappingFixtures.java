@@ -0,0 +1,51 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Entidades de ejemplo compartidas por los benchmarks de mapeo
+final class MappingFixtures {
+    
+    private MappingFixtures() {
+    }
+    
+    static Book book() {
+        Book book = new Book();
+        book.setExternalId(258027L);
+        book.setTitle("The Lord of the Rings");
+        book.setAuthorName(List.of("J. R. R. Tolkien"));
+        book.setFirstPublishYear(1954);
+        book.setEditionCount(120);
+        book.setHasFulltext(true);
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(8);
+        return book;
+    }
+    
+    static Reservation reservation() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("Juan Pérez");
+        user.setEmail("juan@example.com");
+        
+        Reservation reservation = new Reservation();
+        reservation.setId(1L);
+        reservation.setUser(user);
+        reservation.setBook(book());
+        reservation.setRentalDays(7);
+        reservation.setStartDate(LocalDate.of(2024, 1, 15));
+        reservation.setExpectedReturnDate(LocalDate.of(2024, 1, 22));
+        reservation.setDailyRate(new BigDecimal("15.99"));
+        reservation.setTotalFee(new BigDecimal("111.93"));
+        reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        reservation.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 0));
+        return reservation;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.mapper.ReservationMapper;
+import com.example.libreria.model.Reservation;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Primer mapeo en una JVM recién iniciada (lo que paga el primer request después de un deploy):
+// incluye cargar las clases y, en ModelMapper, construir el TypeMap por reflexión.
+// Cada fork es una medición independiente.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class MappingStartupBenchmark {
+    
+    private Reservation reservation;
+    
+    @Setup
+    public void setUp() {
+        reservation = MappingFixtures.reservation();
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO firstMapStruct() {
+        return Mappers.getMapper(ReservationMapper.class).toDTO(reservation);
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO firstModelMapper() {
+        return new ModelMapper().map(reservation, ReservationResponseDTO.class);
+    }
+}
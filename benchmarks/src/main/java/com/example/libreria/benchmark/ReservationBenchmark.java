@@ -0,0 +1,54 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ReservationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Ciclo reserva + devolución completo contra H2 embebida (incluye journal y outbox)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationBenchmark {
+    
+    private CatalogStubServer stub;
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private ReservationRequestDTO request;
+    private ReturnBookRequestDTO returnRequest;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        stub = new CatalogStubServer(10);
+        context = BenchmarkApplication.start(stub.getBooksUrl());
+        BookService bookService = context.getBean(BookService.class);
+        bookService.syncBooksFromExternalApi();
+        bookService.updateStock(CatalogStubServer.FIRST_BOOK_ID, 1_000_000);
+        reservationService = context.getBean(ReservationService.class);
+        
+        // El usuario 1 viene de data.sql
+        request = new ReservationRequestDTO(1L, CatalogStubServer.FIRST_BOOK_ID, 7, LocalDate.now());
+        returnRequest = new ReturnBookRequestDTO(LocalDate.now().plusDays(7));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO createAndReturn() {
+        ReservationResponseDTO created = reservationService.createReservation(request);
+        return reservationService.returnBook(created.getId(), returnRequest);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.libreria.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Compara dos resultados JMH en JSON (por ejemplo, de dos commits) y marca las regresiones.
+// Uso: java -cp target/benchmarks.jar com.example.libreria.benchmark.ResultComparator base.json actual.json [umbral%]
+// Termina con código 1 si alguna medición empeora más que el umbral (5% por defecto).
+public final class ResultComparator {
+    
+    private ResultComparator() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ResultComparator <base.json> <actual.json> [umbral%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+        
+        boolean regression = false;
+        System.out.printf("%-80s %14s %14s %9s%n", "benchmark", "base", "actual", "cambio");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode base = baseline.get(entry.getKey());
+            JsonNode now = entry.getValue();
+            double nowScore = now.path("primaryMetric").path("score").asDouble();
+            String unit = now.path("primaryMetric").path("scoreUnit").asText();
+            if (base == null) {
+                System.out.printf("%-80s %14s %14.3f %9s  %s%n", entry.getKey(), "-", nowScore, "nuevo", unit);
+                continue;
+            }
+            double baseScore = base.path("primaryMetric").path("score").asDouble();
+            double change = (nowScore - baseScore) / baseScore * 100.0;
+            // En throughput más es mejor; en los modos de tiempo, menos es mejor
+            boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+            double worsening = higherIsBetter ? -change : change;
+            String flag = worsening > threshold ? "  REGRESIÓN" : "";
+            regression |= !flag.isEmpty();
+            System.out.printf("%-80s %14.3f %14.3f %8.1f%%  %s%s%n", entry.getKey(), baseScore, nowScore, change, unit, flag);
+        }
+        System.exit(regression ? 1 : 0);
+    }
+    
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText())
+                    .append(" [").append(result.path("mode").asText()).append("]");
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Upsert completo de syncBooksFromExternalApi (HTTP + JSON + JPA) sobre un catálogo generado.
+// La primera invocación del warmup inserta; lo medido es el camino de actualización.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SyncBenchmark {
+    
+    @Param({"100", "1000"})
+    public int catalogSize;
+    
+    private CatalogStubServer stub;
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        stub = new CatalogStubServer(catalogSize);
+        context = BenchmarkApplication.start(stub.getBooksUrl());
+        bookService = context.getBean(BookService.class);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+    
+    @Benchmark
+    public void syncUpsert() {
+        bookService.syncBooksFromExternalApi();
+    }
+}
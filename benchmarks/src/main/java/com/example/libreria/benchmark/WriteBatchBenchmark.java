@@ -0,0 +1,134 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.BookService;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Filas escritas por segundo con y sin batching JDBC (hibernate.jdbc.batch_size = 1 lo desactiva).
+// El resultado a mirar es el contador "rows" (filas/s); el principal cuenta invocaciones.
+// La base es H2 por TCP en loopback: en memoria no hay viaje de red y el batching casi no se nota.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBatchBenchmark {
+    
+    @Param({"1", "50"})
+    public int batchSize;
+    
+    @Param({"1000"})
+    public int rows;
+    
+    private CatalogStubServer stub;
+    private Server h2Server;
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private ReservationRepository reservationRepository;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private EntityManagerFactory entityManagerFactory;
+    private User user;
+    private Book book;
+    
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+        public long rows;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        stub = new CatalogStubServer(rows);
+        h2Server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        context = BenchmarkApplication.start(stub.getBooksUrl(),
+                "spring.datasource.url=jdbc:h2:tcp://localhost:" + h2Server.getPort() + "/mem:write-batch-" + batchSize + ";DB_CLOSE_DELAY=-1",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        bookService = context.getBean(BookService.class);
+        reservationRepository = context.getBean(ReservationRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        
+        // Libro fuera del rango del catálogo, así syncInsert puede borrar el catálogo sin tocar las reservas
+        book = new Book();
+        book.setExternalId(1L);
+        book.setTitle("Libro para reservas");
+        book.setPrice(BigDecimal.TEN);
+        book.setStockQuantity(1_000_000);
+        book.setAvailableQuantity(1_000_000);
+        book = context.getBean(BookRepository.class).save(book);
+        // El usuario 1 viene de data.sql
+        user = context.getBean(UserRepository.class).findById(1L).orElseThrow();
+    }
+    
+    @Setup(Level.Invocation)
+    public void clean() {
+        jdbcTemplate.update("DELETE FROM reservations");
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        jdbcTemplate.update("DELETE FROM cache_invalidations");
+        jdbcTemplate.update("DELETE FROM book_authors WHERE book_id >= ?", CatalogStubServer.FIRST_BOOK_ID);
+        jdbcTemplate.update("DELETE FROM books WHERE external_id >= ?", CatalogStubServer.FIRST_BOOK_ID);
+        // Los DELETE por JDBC no pasan por Hibernate: sin esto la caché de segundo nivel seguiría
+        // teniendo los libros y persistirlos de nuevo fallaría como entidad desasociada
+        entityManagerFactory.getCache().evictAll();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        h2Server.stop();
+        stub.close();
+    }
+    
+    // Catálogo nuevo: un INSERT en books y dos en book_authors por libro (más su fila de outbox)
+    @Benchmark
+    public void syncInsert(Rows counter) {
+        bookService.syncBooksFromExternalApi();
+        counter.rows += rows;
+    }
+    
+    @Benchmark
+    public void reservationBulkInsert(Rows counter) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDate start = LocalDate.now();
+            List<Reservation> reservations = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                Reservation reservation = new Reservation();
+                reservation.setUser(user);
+                reservation.setBook(book);
+                reservation.setRentalDays(7);
+                reservation.setStartDate(start);
+                reservation.setExpectedReturnDate(start.plusDays(7));
+                reservation.setDailyRate(BigDecimal.TEN);
+                reservation.setTotalFee(BigDecimal.valueOf(70));
+                reservations.add(reservation);
+            }
+            reservationRepository.saveAll(reservations);
+        });
+        counter.rows += rows;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.libreria.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencias (en microsegundos) y errores de un endpoint
+class EndpointStats {
+    
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+    
+    private final String name;
+    private final Histogram latencies = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    
+    EndpointStats(String name) {
+        this.name = name;
+    }
+    
+    void recordSuccess(long latencyNanos) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_TRACKABLE_MICROS));
+    }
+    
+    void recordError() {
+        errors.increment();
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    Histogram getLatencies() {
+        return latencies;
+    }
+    
+    long getErrors() {
+        return errors.sum();
+    }
+}
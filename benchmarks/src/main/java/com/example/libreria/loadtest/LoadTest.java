@@ -0,0 +1,146 @@
+package com.example.libreria.loadtest;
+
+import com.example.libreria.benchmark.BenchmarkApplication;
+import com.example.libreria.benchmark.CatalogStubServer;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Generador de carga de modelo abierto: los requests salen a una tasa fija, respondan o no los anteriores.
+// Sin --target levanta la aplicación embebida contra CatalogStubServer.
+//
+//   java -cp target/benchmarks.jar com.example.libreria.loadtest.LoadTest --rate=300 --duration=2m
+public class LoadTest {
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        
+        CatalogStubServer stub = null;
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.target;
+        if (baseUrl == null) {
+            stub = new CatalogStubServer(options.catalogSize);
+            context = BenchmarkApplication.startServer(stub.getBooksUrl(),
+                    options.appProperties.toArray(String[]::new));
+            baseUrl = "http://127.0.0.1:" + BenchmarkApplication.getPort(context);
+        }
+        
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            Workload workload = new Workload(client, baseUrl, options.requestTimeout);
+            workload.prepare(options.users, options.stock);
+            
+            long measuredNanos = run(workload, options);
+            report(System.out, options, workload.getStats(), measuredNanos);
+            if (options.hdrDirectory != null) {
+                writeDistributions(Path.of(options.hdrDirectory), workload.getStats());
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+    
+    // Despacha según la tasa pedida y devuelve la duración de la ventana medida
+    private static long run(Workload workload, LoadTestOptions options) throws InterruptedException {
+        Operation[] schedule = weightedSchedule(options.mix);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        long end = measureFrom + options.duration.toNanos();
+        AtomicLong inFlight = new AtomicLong();
+        
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+            inFlight.incrementAndGet();
+            workload.execute(operation, intendedStart, intendedStart >= measureFrom)
+                    .whenComplete((ignored, error) -> inFlight.decrementAndGet());
+        }
+        
+        long drainDeadline = System.nanoTime() + options.requestTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        return end - measureFrom;
+    }
+    
+    // Cada operación aparece tantas veces como su peso, así elegir es un índice al azar
+    private static Operation[] weightedSchedule(Map<Operation, Integer> mix) {
+        return mix.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+    }
+    
+    private static void report(PrintStream out, LoadTestOptions options,
+                               Map<String, EndpointStats> stats, long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        options.describe().forEach((key, value) -> out.printf("%-10s %s%n", key, value));
+        out.println();
+        out.printf("%-36s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "ok", "errores", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long totalOk = 0;
+        long totalErrors = 0;
+        for (EndpointStats endpoint : stats.values()) {
+            Histogram latencies = endpoint.getLatencies();
+            long ok = latencies.getTotalCount();
+            if (ok == 0 && endpoint.getErrors() == 0) {
+                continue;
+            }
+            totalOk += ok;
+            totalErrors += endpoint.getErrors();
+            out.printf("%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    endpoint.getName(), ok, endpoint.getErrors(), ok / seconds,
+                    millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(90)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()));
+        }
+        out.printf("%-36s %9d %7d %9.1f%n", "total", totalOk, totalErrors, totalOk / seconds);
+    }
+    
+    // Un archivo .hgrm por endpoint, en milisegundos, para graficar con el plotter de HdrHistogram
+    private static void writeDistributions(Path directory, Map<String, EndpointStats> stats) throws IOException {
+        Files.createDirectories(directory);
+        for (EndpointStats endpoint : stats.values()) {
+            if (endpoint.getLatencies().getTotalCount() == 0) {
+                continue;
+            }
+            String fileName = endpoint.getName().replaceAll("[^A-Za-z]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(fileName)))) {
+                endpoint.getLatencies().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+    
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.libreria.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Opciones --clave=valor del generador de carga. Las que empiezan con --app. se pasan tal cual a la aplicación embebida
+class LoadTestOptions {
+    
+    String target;
+    int catalogSize = 1000;
+    int users = 20;
+    int stock = 100_000;
+    double rate = 200;
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    Duration requestTimeout = Duration.ofSeconds(30);
+    Map<Operation, Integer> mix = parseMix("browse=70,reserve=15,return=10,sync=5");
+    String hdrDirectory;
+    List<String> appProperties = new ArrayList<>();
+    
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento inválido (se espera --clave=valor): " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (key.startsWith("app.")) {
+                options.appProperties.add(key.substring(4) + "=" + value);
+                continue;
+            }
+            switch (key) {
+                case "target" -> options.target = value;
+                case "catalog-size" -> options.catalogSize = Integer.parseInt(value);
+                case "users" -> options.users = Integer.parseInt(value);
+                case "stock" -> options.stock = Integer.parseInt(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "warmup" -> options.warmup = parseDuration(value);
+                case "duration" -> options.duration = parseDuration(value);
+                case "timeout" -> options.requestTimeout = parseDuration(value);
+                case "mix" -> options.mix = parseMix(value);
+                case "hdr-dir" -> options.hdrDirectory = value;
+                case "profile" -> options.appProperties.add("spring.profiles.active=" + value);
+                default -> throw new IllegalArgumentException("Opción desconocida: --" + key);
+            }
+        }
+        if (options.rate <= 0) {
+            throw new IllegalArgumentException("--rate debe ser positivo");
+        }
+        return options;
+    }
+    
+    // "30s", "2m" o milisegundos
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+    
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] weight = part.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Mezcla inválida: " + value);
+            }
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("La mezcla debe tener algún peso positivo: " + value);
+        }
+        return mix;
+    }
+    
+    Map<String, String> describe() {
+        Map<String, String> description = new LinkedHashMap<>();
+        description.put("target", target != null ? target : "embebido (catálogo de " + catalogSize + " libros)");
+        description.put("rate", rate + " req/s");
+        description.put("warmup", warmup.toSeconds() + "s");
+        description.put("duration", duration.toSeconds() + "s");
+        description.put("mix", mix.toString());
+        description.put("users", String.valueOf(users));
+        if (!appProperties.isEmpty()) {
+            description.put("app", String.join(" ", appProperties));
+        }
+        return description;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.libreria.loadtest;
+
+// Tipos de operación de la mezcla de carga
+enum Operation {
+    BROWSE,
+    RESERVE,
+    RETURN,
+    SYNC
+}
@@ -0,0 +1,183 @@
+package com.example.libreria.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// Traduce cada operación de la mezcla en requests HTTP contra la API y registra su latencia por endpoint
+class Workload {
+    
+    static final String LIST_BOOKS = "GET /api/books";
+    static final String GET_BOOK = "GET /api/books/{id}";
+    static final String GET_USER = "GET /api/users/{id}";
+    static final String CREATE_RESERVATION = "POST /api/reservations";
+    static final String RETURN_BOOK = "POST /api/reservations/{id}/return";
+    static final String SYNC = "POST /api/books/sync";
+    
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    // Reservas creadas durante la prueba, pendientes de devolver
+    private final Queue<Long> activeReservations = new ConcurrentLinkedQueue<>();
+    private List<Long> userIds = List.of();
+    private List<Long> bookIds = List.of();
+    
+    Workload(HttpClient client, String baseUrl, Duration requestTimeout) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.requestTimeout = requestTimeout;
+        for (String endpoint : List.of(LIST_BOOKS, GET_BOOK, GET_USER, CREATE_RESERVATION, RETURN_BOOK, SYNC)) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+    }
+    
+    // Sincroniza el catálogo, sube el stock de cada libro y crea los usuarios de la prueba
+    void prepare(int users, int stock) throws IOException, InterruptedException {
+        send(post("/api/books/sync", null));
+        JsonNode books = objectMapper.readTree(send(get("/api/books")));
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode book : books) {
+            long externalId = book.get("externalId").asLong();
+            ids.add(externalId);
+            send(HttpRequest.newBuilder(uri("/api/books/" + externalId + "/stock?stockQuantity=" + stock))
+                    .PUT(HttpRequest.BodyPublishers.noBody())
+                    .build());
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("El catálogo quedó vacío después de sincronizar");
+        }
+        bookIds = List.copyOf(ids);
+        
+        List<Long> createdUsers = new ArrayList<>();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        for (int i = 0; i < users; i++) {
+            String body = objectMapper.writeValueAsString(Map.of(
+                    "name", "Carga " + i,
+                    "email", "carga-" + runId + "-" + i + "@example.com"));
+            createdUsers.add(objectMapper.readTree(send(post("/api/users", body))).get("id").asLong());
+        }
+        userIds = List.copyOf(createdUsers);
+    }
+    
+    CompletableFuture<Void> execute(Operation operation, long intendedStartNanos, boolean record) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case BROWSE -> {
+                int pick = random.nextInt(100);
+                if (pick < 75) {
+                    return call(GET_BOOK, get("/api/books/" + randomOf(bookIds)), intendedStartNanos, record, null);
+                }
+                if (pick < 90) {
+                    return call(GET_USER, get("/api/users/" + randomOf(userIds)), intendedStartNanos, record, null);
+                }
+                return call(LIST_BOOKS, get("/api/books"), intendedStartNanos, record, null);
+            }
+            case RETURN -> {
+                Long reservationId = activeReservations.poll();
+                if (reservationId != null) {
+                    String body = "{\"returnDate\":\"" + LocalDate.now() + "\"}";
+                    return call(RETURN_BOOK, post("/api/reservations/" + reservationId + "/return", body),
+                            intendedStartNanos, record, null);
+                }
+                // Sin reservas para devolver todavía: se reserva en su lugar
+                return reserve(intendedStartNanos, record);
+            }
+            case RESERVE -> {
+                return reserve(intendedStartNanos, record);
+            }
+            case SYNC -> {
+                return call(SYNC, post("/api/books/sync", null), intendedStartNanos, record, null);
+            }
+            default -> throw new IllegalArgumentException("Operación no soportada: " + operation);
+        }
+    }
+    
+    Map<String, EndpointStats> getStats() {
+        return stats;
+    }
+    
+    private CompletableFuture<Void> reserve(long intendedStartNanos, boolean record) {
+        String body = "{\"userId\":" + randomOf(userIds)
+                + ",\"bookExternalId\":" + randomOf(bookIds)
+                + ",\"rentalDays\":7,\"startDate\":\"" + LocalDate.now() + "\"}";
+        return call(CREATE_RESERVATION, post("/api/reservations", body), intendedStartNanos, record, response -> {
+            try {
+                activeReservations.add(objectMapper.readTree(response).get("id").asLong());
+            } catch (IOException e) {
+                throw new IllegalStateException("Respuesta de reserva inválida", e);
+            }
+        });
+    }
+    
+    // La latencia se mide desde el instante en que el request debía salir, no desde que salió:
+    // si el generador o el cliente se atrasan, esa espera también cuenta (coordinated omission)
+    private CompletableFuture<Void> call(String endpoint, HttpRequest request, long intendedStartNanos,
+                                         boolean record, Consumer<String> onSuccess) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    long latency = System.nanoTime() - intendedStartNanos;
+                    boolean success = error == null && response.statusCode() < 400;
+                    if (success && onSuccess != null) {
+                        onSuccess.accept(response.body());
+                    }
+                    if (record) {
+                        if (success) {
+                            endpointStats.recordSuccess(latency);
+                        } else {
+                            endpointStats.recordError();
+                        }
+                    }
+                    return null;
+                });
+    }
+    
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(request.method() + " " + request.uri()
+                    + " respondió " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+    
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).timeout(requestTimeout).GET().build();
+    }
+    
+    private HttpRequest post(String path, String json) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path)).timeout(requestTimeout);
+        if (json == null) {
+            return builder.POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return builder.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+    
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+    
+    private static Long randomOf(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.dto.CacheRegionStatsDTO;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/hibernatecache: aciertos, fallos y hit ratio por región de la caché de segundo nivel.
+// DELETE /actuator/hibernatecache?region=books vacía una región (sin region, todas) tras cambios hechos fuera de Hibernate
+@Endpoint(id = "hibernatecache")
+public class HibernateCacheEndpoint {
+    
+    private final SessionFactory sessionFactory;
+    
+    public HibernateCacheEndpoint(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+    
+    @ReadOperation
+    public Map<String, Object> regions() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<CacheRegionStatsDTO> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(name -> toDTO(name, statistics.getCacheRegionStatistics(name)))
+                .toList();
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("regions", regions);
+        result.put("queryCache", toDTO("query-cache", statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount(), -1));
+        return result;
+    }
+    
+    @DeleteOperation
+    public void evict(@Nullable String region) {
+        if (region == null) {
+            sessionFactory.getCache().evictAllRegions();
+        } else {
+            sessionFactory.getCache().evictRegion(region);
+        }
+    }
+    
+    private CacheRegionStatsDTO toDTO(String region, CacheRegionStatistics statistics) {
+        if (statistics == null) {
+            return toDTO(region, 0, 0, 0, -1);
+        }
+        // Hibernate devuelve Long.MIN_VALUE cuando el proveedor no informa el tamaño
+        long elements = Math.max(statistics.getElementCountInMemory(), -1);
+        return toDTO(region, statistics.getHitCount(), statistics.getMissCount(), statistics.getPutCount(), elements);
+    }
+    
+    private CacheRegionStatsDTO toDTO(String region, long hits, long misses, long puts, long elements) {
+        long requests = hits + misses;
+        Double hitRatio = requests > 0 ? (double) hits / requests : null;
+        return new CacheRegionStatsDTO(region, hits, misses, puts, hitRatio, elements);
+    }
+}
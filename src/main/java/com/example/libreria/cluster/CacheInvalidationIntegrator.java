@@ -0,0 +1,34 @@
+package com.example.libreria.cluster;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Registra CacheInvalidationRecorder en los eventos de escritura de Hibernate
+public class CacheInvalidationIntegrator implements Integrator {
+    
+    private final CacheInvalidationRecorder recorder;
+    
+    public CacheInvalidationIntegrator(CacheInvalidationRecorder recorder) {
+        this.recorder = recorder;
+    }
+    
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, recorder);
+        registry.appendListeners(EventType.POST_UPDATE, recorder);
+        registry.appendListeners(EventType.POST_DELETE, recorder);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, recorder);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, recorder);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, recorder);
+    }
+    
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
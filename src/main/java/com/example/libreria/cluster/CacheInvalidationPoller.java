@@ -0,0 +1,98 @@
+package com.example.libreria.cluster;
+
+import com.example.libreria.model.CacheInvalidation;
+import com.example.libreria.repository.CacheInvalidationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.metamodel.MappingMetamodel;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Lee las invalidaciones que escribieron los otros nodos y descarta esas entradas de la caché local.
+// Los IDs se confirman fuera de orden: igual que el relay del outbox, ante un hueco espera hasta
+// gapTimeoutMs a que la transacción más lenta confirme antes de saltarlo.
+// Solo lo llama el scheduler (fixedDelay no se superpone consigo mismo)
+@Slf4j
+public class CacheInvalidationPoller {
+    
+    private final CacheInvalidationRepository cacheInvalidationRepository;
+    private final Cache cache;
+    private final MappingMetamodel metamodel;
+    private final ClusterNode node;
+    private final int batchSize;
+    private final long gapTimeoutMs;
+    private final long retentionMinutes;
+    
+    private Long cursor;
+    private long gapSince;
+    
+    public CacheInvalidationPoller(CacheInvalidationRepository cacheInvalidationRepository, Cache cache,
+                                   MappingMetamodel metamodel, ClusterNode node, int batchSize,
+                                   long gapTimeoutMs, long retentionMinutes) {
+        this.cacheInvalidationRepository = cacheInvalidationRepository;
+        this.cache = cache;
+        this.metamodel = metamodel;
+        this.node = node;
+        this.batchSize = batchSize;
+        this.gapTimeoutMs = gapTimeoutMs;
+        this.retentionMinutes = retentionMinutes;
+    }
+    
+    @Scheduled(fixedDelayString = "${cluster.cache-invalidation.poll-interval-ms:1000}")
+    public void poll() {
+        if (cursor == null) {
+            // La caché arranca vacía: lo anterior al arranque no hace falta aplicarlo
+            cursor = cacheInvalidationRepository.findMaxId();
+            return;
+        }
+        List<CacheInvalidation> invalidations = cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(
+                cursor, PageRequest.of(0, batchSize));
+        int evicted = 0;
+        for (CacheInvalidation invalidation : invalidations) {
+            if (invalidation.getId() != cursor + 1) {
+                long now = System.currentTimeMillis();
+                if (gapSince == 0) {
+                    gapSince = now;
+                }
+                if (now - gapSince < gapTimeoutMs) {
+                    break;
+                }
+                log.warn("Skipping cache invalidations {}..{} after waiting {} ms", cursor + 1, invalidation.getId() - 1, gapTimeoutMs);
+            }
+            gapSince = 0;
+            cursor = invalidation.getId();
+            if (!node.getId().equals(invalidation.getNodeId())) {
+                evict(invalidation);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            // Las consultas cacheadas se validan contra timestamps locales que no vieron el cambio remoto
+            cache.evictQueryRegions();
+            log.debug("Evicted {} cache entries changed on other nodes", evicted);
+        }
+    }
+    
+    @Scheduled(cron = "${cluster.cache-invalidation.purge-cron:0 */10 * * * *}")
+    @Transactional
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minusMinutes(retentionMinutes);
+        int deleted = cacheInvalidationRepository.deleteCreatedBefore(before);
+        if (deleted > 0) {
+            log.info("Purged {} cache invalidations older than {}", deleted, before);
+        }
+    }
+    
+    private void evict(CacheInvalidation invalidation) {
+        String role = invalidation.getCacheRole();
+        if (metamodel.findCollectionDescriptor(role) != null) {
+            cache.evictCollectionData(role, invalidation.getEntityId());
+        } else if (metamodel.findEntityDescriptor(role) != null) {
+            cache.evictEntityData(role, invalidation.getEntityId());
+        }
+    }
+}
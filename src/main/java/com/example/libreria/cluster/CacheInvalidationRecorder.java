@@ -0,0 +1,159 @@
+package com.example.libreria.cluster;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Anota en cache_invalidations cada entidad o colección cacheada que cambia, dentro de la misma
+// transacción: las filas se insertan justo antes del commit (después del flush) y se confirman o
+// descartan junto con el cambio. CacheInvalidationPoller las lee en los demás nodos.
+@Slf4j
+public class CacheInvalidationRecorder implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+    
+    private static final String INSERT_SQL = "INSERT INTO cache_invalidations (node_id, cache_role, entity_id, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?)";
+    
+    // Un INSERT de varias filas por bloque: una sincronización grande no paga un viaje a la base por fila
+    private static final int ROWS_PER_STATEMENT = 100;
+    
+    private final ClusterNode node;
+    
+    // Claves pendientes por sesión; se limpian al terminar la transacción, con commit o rollback
+    private final Map<SharedSessionContractImplementor, Set<Key>> pending = new ConcurrentHashMap<>();
+    
+    public CacheInvalidationRecorder(ClusterNode node) {
+        this.node = node;
+    }
+    
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        // Un alta no está en la caché de nadie, pero invalida las consultas cacheadas sobre la tabla
+        recordEntity(event.getSession(), event.getPersister(), event.getId());
+    }
+    
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        recordEntity(event.getSession(), event.getPersister(), event.getId());
+    }
+    
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        recordEntity(event.getSession(), event.getPersister(), event.getId());
+    }
+    
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        recordCollection(event);
+    }
+    
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        recordCollection(event);
+    }
+    
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        recordCollection(event);
+    }
+    
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+    
+    // UPDATE/DELETE masivos en JPQL: Hibernate vacía la región local pero no dispara eventos por entidad,
+    // así que los demás nodos se enteran por acá. Debe llamarse dentro de la transacción del cambio
+    public void recordBulk(EntityManager entityManager, Class<?> entityClass, Collection<Long> ids) {
+        EventSource session = entityManager.unwrap(EventSource.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(entityClass);
+        ids.forEach(id -> recordEntity(session, persister, id));
+    }
+    
+    private void recordEntity(EventSource session, EntityPersister persister, Object id) {
+        if (persister.canWriteToCache() && id instanceof Number number) {
+            record(session, new Key(persister.getRootEntityName(), number.longValue()));
+        }
+    }
+    
+    private void recordCollection(AbstractCollectionEvent event) {
+        String role = event.getCollection().getRole();
+        Object ownerId = event.getAffectedOwnerIdOrNull();
+        EventSource session = event.getSession();
+        if (role != null && ownerId instanceof Number number
+                && session.getFactory().getMappingMetamodel().getCollectionDescriptor(role).hasCache()) {
+            record(session, new Key(role, number.longValue()));
+        }
+    }
+    
+    private void record(EventSource session, Key key) {
+        Set<Key> keys = pending.get(session);
+        if (keys == null) {
+            keys = new LinkedHashSet<>();
+            pending.put(session, keys);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::flush);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> pending.remove(s));
+        }
+        keys.add(key);
+    }
+    
+    private void flush(SessionImplementor session) {
+        Set<Key> keys = pending.remove(session);
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Key> rows = new ArrayList<>(keys);
+        session.doWork(connection -> {
+            for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+                List<Key> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+                String sql = INSERT_SQL + String.join(", ", Collections.nCopies(chunk.size(), ROW_PLACEHOLDERS));
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Key key : chunk) {
+                        statement.setString(index++, node.getId());
+                        statement.setString(index++, key.role());
+                        statement.setLong(index++, key.id());
+                        statement.setTimestamp(index++, now);
+                    }
+                    statement.executeUpdate();
+                }
+            }
+        });
+        log.debug("Recorded {} cache invalidations", keys.size());
+    }
+    
+    private record Key(String role, long id) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.libreria.cluster;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+// Identidad de esta instancia frente a las demás: holder de los leases y origen de las invalidaciones.
+// Lleva un sufijo aleatorio para que dos JVM en el mismo host (o un reinicio) no se confundan
+public class ClusterNode {
+    
+    private final String id;
+    
+    public ClusterNode(String name) {
+        String base = name == null || name.isBlank() ? localHostName() : name;
+        this.id = base + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "libreria";
+        }
+    }
+}
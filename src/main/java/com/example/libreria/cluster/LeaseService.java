@@ -0,0 +1,108 @@
+package com.example.libreria.cluster;
+
+import com.example.libreria.repository.NodeLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Leases en la base para las tareas que no pueden correr en dos nodos a la vez.
+// Mientras el nodo tiene el lease lo renueva; si muere, vence a los ttl y otro nodo lo toma.
+// Los tiempos son del reloj de cada nodo en UTC: el ttl tiene que ser mucho mayor que el desvío entre relojes
+@Slf4j
+public class LeaseService {
+    
+    private final NodeLeaseRepository nodeLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterNode node;
+    private final Duration ttl;
+    // true: confirmado en la base y se renueva; false: se está pidiendo
+    private final Map<String, Boolean> held = new ConcurrentHashMap<>();
+    
+    public LeaseService(NodeLeaseRepository nodeLeaseRepository, TransactionTemplate transactionTemplate,
+                        ClusterNode node, Duration ttl) {
+        this.nodeLeaseRepository = nodeLeaseRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.node = node;
+        this.ttl = ttl;
+    }
+    
+    // Cada paso en su propia transacción: el lease tiene que quedar confirmado antes de empezar la tarea.
+    // Tampoco se concede dos veces dentro del mismo nodo mientras no se libere
+    public boolean tryAcquire(String name) {
+        if (held.putIfAbsent(name, Boolean.FALSE) != null) {
+            return false;
+        }
+        boolean acquired = false;
+        try {
+            LocalDateTime now = now();
+            LocalDateTime expiresAt = now.plus(ttl);
+            acquired = transactionTemplate.execute(
+                    status -> nodeLeaseRepository.acquire(name, node.getId(), now, expiresAt) == 1);
+            if (!acquired && !transactionTemplate.execute(status -> nodeLeaseRepository.existsById(name))) {
+                acquired = insert(name, now, expiresAt);
+            }
+            if (acquired) {
+                log.debug("Lease {} acquired by {} until {}", name, node.getId(), expiresAt);
+            }
+            return acquired;
+        } finally {
+            if (acquired) {
+                held.put(name, Boolean.TRUE);
+            } else {
+                held.remove(name);
+            }
+        }
+    }
+    
+    public void release(String name) {
+        if (held.remove(name) == null) {
+            return;
+        }
+        LocalDateTime now = now();
+        transactionTemplate.executeWithoutResult(status -> nodeLeaseRepository.renew(name, node.getId(), now));
+        log.debug("Lease {} released by {}", name, node.getId());
+    }
+    
+    public boolean isHeld(String name) {
+        return Boolean.TRUE.equals(held.get(name));
+    }
+    
+    @Scheduled(fixedDelayString = "${cluster.lease.renew-interval-ms:20000}")
+    public void renewHeldLeases() {
+        for (String name : held.keySet()) {
+            if (!isHeld(name)) {
+                continue;
+            }
+            LocalDateTime expiresAt = now().plus(ttl);
+            int renewed = transactionTemplate.execute(
+                    status -> nodeLeaseRepository.renew(name, node.getId(), expiresAt));
+            if (renewed == 0) {
+                // Venció antes de renovarlo (pausa larga, base caída) y lo tomó otro nodo
+                held.remove(name, Boolean.TRUE);
+                log.warn("Lease {} was lost by {}", name, node.getId());
+            }
+        }
+    }
+    
+    private boolean insert(String name, LocalDateTime now, LocalDateTime expiresAt) {
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> nodeLeaseRepository.insert(name, node.getId(), now, expiresAt));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Otro nodo lo creó primero
+            return false;
+        }
+    }
+    
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
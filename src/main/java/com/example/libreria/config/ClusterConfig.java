@@ -0,0 +1,67 @@
+package com.example.libreria.config;
+
+import com.example.libreria.cluster.CacheInvalidationIntegrator;
+import com.example.libreria.cluster.CacheInvalidationPoller;
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.cluster.ClusterNode;
+import com.example.libreria.cluster.LeaseService;
+import com.example.libreria.repository.CacheInvalidationRepository;
+import com.example.libreria.repository.NodeLeaseRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class ClusterConfig {
+    
+    @Bean
+    public ClusterNode clusterNode(@Value("${cluster.node-id:}") String nodeId) {
+        return new ClusterNode(nodeId);
+    }
+    
+    @Bean
+    public CacheInvalidationRecorder cacheInvalidationRecorder(ClusterNode clusterNode) {
+        return new CacheInvalidationRecorder(clusterNode);
+    }
+    
+    @Bean
+    public HibernatePropertiesCustomizer cacheInvalidationCustomizer(CacheInvalidationRecorder cacheInvalidationRecorder) {
+        IntegratorProvider integrators = () -> List.of(new CacheInvalidationIntegrator(cacheInvalidationRecorder));
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, integrators);
+    }
+    
+    @Bean
+    public CacheInvalidationPoller cacheInvalidationPoller(
+            CacheInvalidationRepository cacheInvalidationRepository,
+            EntityManagerFactory entityManagerFactory,
+            ClusterNode clusterNode,
+            @Value("${cluster.cache-invalidation.batch-size:500}") int batchSize,
+            @Value("${cluster.cache-invalidation.gap-timeout-ms:5000}") long gapTimeoutMs,
+            @Value("${cluster.cache-invalidation.retention-minutes:60}") long retentionMinutes) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        return new CacheInvalidationPoller(cacheInvalidationRepository, sessionFactory.getCache(),
+                sessionFactory.getMappingMetamodel(), clusterNode, batchSize, gapTimeoutMs, retentionMinutes);
+    }
+    
+    // Los leases se confirman en su propia transacción aunque se pidan desde dentro de otra
+    @Bean
+    public LeaseService leaseService(NodeLeaseRepository nodeLeaseRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     ClusterNode clusterNode,
+                                     @Value("${cluster.lease.ttl-ms:60000}") long ttlMs) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return new LeaseService(nodeLeaseRepository, transactionTemplate, clusterNode, Duration.ofMillis(ttlMs));
+    }
+}
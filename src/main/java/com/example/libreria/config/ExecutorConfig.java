@@ -0,0 +1,61 @@
+package com.example.libreria.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// Executors propios de la aplicación. Con spring.threads.virtual.enabled (Java 21)
+// cada tarea corre en un hilo virtual; si no, en un pool acotado de hilos de plataforma.
+@Configuration
+public class ExecutorConfig {
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    @Bean
+    public AsyncTaskExecutor syncExecutor() {
+        return executor("book-sync-", 2);
+    }
+    
+    // Cada conexión tiene como mucho una tarea encolada o en curso: la cola no pasa del máximo de conexiones
+    @Bean
+    public AsyncTaskExecutor availabilitySendExecutor(@Value("${availability.stream.send-threads:8}") int sendThreads,
+                                                      @Value("${availability.stream.max-connections:20000}") int maxConnections) {
+        return executor("availability-sse-", sendThreads, maxConnections);
+    }
+    
+    // Envíos del feed de cambios: fuera del scheduler compartido, así un cliente trabado no frena los jobs
+    @Bean
+    public AsyncTaskExecutor changeFeedSendExecutor(@Value("${outbox.sse.send-threads:4}") int sendThreads) {
+        return executor("change-feed-sse-", sendThreads);
+    }
+    
+    // Cierres de conexiones SSE con un envío trabado: complete() espera el lock del emitter hasta que ese envío
+    // falla (al vencer server.tomcat.connection-timeout), así que corre acá y no en el scheduler compartido
+    @Bean
+    public AsyncTaskExecutor sseCloseExecutor() {
+        return executor("sse-close-", 2);
+    }
+    
+    private AsyncTaskExecutor executor(String threadNamePrefix, int platformThreads) {
+        return executor(threadNamePrefix, platformThreads, Integer.MAX_VALUE);
+    }
+    
+    private AsyncTaskExecutor executor(String threadNamePrefix, int platformThreads, int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(platformThreads);
+        executor.setMaxPoolSize(platformThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setDaemon(true);
+        return executor;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.libreria.config;
+
+import com.example.libreria.cache.HibernateCacheEndpoint;
+import jakarta.persistence.EntityManagerFactory;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+
+@Configuration
+public class HibernateCacheConfig {
+    
+    // Un CacheManager propio por contexto: el proveedor JCache comparte los CacheManager por URI en toda la JVM,
+    // y dos contextos levantados a la vez (tests, benchmarks) se servirían entidades de bases distintas
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("classpath:ehcache.xml") Resource configuration) throws IOException {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("libreria-" + UUID.randomUUID()),
+                new XmlConfiguration(configuration.getURL()));
+    }
+    
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+    
+    @Bean
+    public HibernateCacheEndpoint hibernateCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        return new HibernateCacheEndpoint(entityManagerFactory.unwrap(SessionFactory.class));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.libreria.config;
+
+import com.example.libreria.jdbc.DataSourceProxyPostProcessor;
+import com.example.libreria.jdbc.QueryInstrumentationListener;
+import com.example.libreria.jdbc.QueryStatistics;
+import com.example.libreria.jdbc.RequestQueryStatsFilter;
+import com.example.libreria.jdbc.SqlQueriesEndpoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcInstrumentationConfig {
+    
+    // static: los BeanPostProcessor se crean antes que el resto de la configuración
+    @Bean
+    public static DataSourceProxyPostProcessor dataSourceProxyPostProcessor(
+            ObjectProvider<QueryInstrumentationListener> listener) {
+        return new DataSourceProxyPostProcessor(listener);
+    }
+    
+    @Bean
+    public QueryStatistics queryStatistics(
+            @Value("${jdbc.instrumentation.slow-query-ms:100}") long slowQueryMs,
+            @Value("${jdbc.instrumentation.max-shapes:500}") int maxShapes,
+            @Value("${jdbc.instrumentation.slow-sample-size:50}") int slowSampleSize,
+            @Value("${jdbc.instrumentation.slow-query-log-per-minute:20}") int slowLogPerMinute) {
+        return new QueryStatistics(slowQueryMs, maxShapes, slowSampleSize, slowLogPerMinute);
+    }
+    
+    @Bean
+    public QueryInstrumentationListener queryInstrumentationListener(QueryStatistics queryStatistics) {
+        return new QueryInstrumentationListener(queryStatistics);
+    }
+    
+    @Bean
+    public RequestQueryStatsFilter requestQueryStatsFilter(
+            MeterRegistry meterRegistry,
+            @Value("${jdbc.instrumentation.request-statement-threshold:50}") int statementThreshold,
+            @Value("${jdbc.instrumentation.request-time-threshold-ms:500}") long timeThresholdMs) {
+        return new RequestQueryStatsFilter(meterRegistry, statementThreshold, timeThresholdMs);
+    }
+    
+    @Bean
+    public SqlQueriesEndpoint sqlQueriesEndpoint(QueryStatistics queryStatistics) {
+        return new SqlQueriesEndpoint(queryStatistics);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.libreria.config;
+
+import com.example.libreria.journal.EventJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class JournalConfig {
+    
+    @Bean(initMethod = "open", destroyMethod = "close")
+    public EventJournal eventJournal(
+            @Value("${journal.directory:./data/journal}") String directory,
+            @Value("${journal.segment-size-bytes:67108864}") long segmentSizeBytes,
+            @Value("${journal.max-batch-size:512}") int maxBatchSize,
+            @Value("${journal.fsync:true}") boolean fsync,
+            ObjectMapper objectMapper) {
+        return new EventJournal(Path.of(directory), segmentSizeBytes, maxBatchSize, fsync, objectMapper);
+    }
+}
@@ -3,27 +3,12 @@ package com.example.libreria.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.Conditions;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class MappersConfig {
 
-    @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
-    }
-
-    @Bean("mergerMapper")
-    public ModelMapper mergerMapper() {
-        ModelMapper mapper =  new ModelMapper();
-        mapper.getConfiguration()
-                .setPropertyCondition(Conditions.isNotNull());
-        return mapper;
-    }
-
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper objectMapper = new ObjectMapper();
@@ -0,0 +1,20 @@
+package com.example.libreria.config;
+
+import com.example.libreria.metrics.LibreriaMetrics;
+import com.example.libreria.retry.OptimisticLockRetryAspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RetryConfig {
+    
+    @Bean
+    public OptimisticLockRetryAspect optimisticLockRetryAspect(
+            @Value("${optimistic-lock.retry.max-attempts:5}") int maxAttempts,
+            @Value("${optimistic-lock.retry.initial-backoff-ms:10}") long initialBackoffMs,
+            @Value("${optimistic-lock.retry.max-backoff-ms:200}") long maxBackoffMs,
+            LibreriaMetrics metrics) {
+        return new OptimisticLockRetryAspect(maxAttempts, initialBackoffMs, maxBackoffMs, metrics);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.AnalyticsBackfillReportDTO;
+import com.example.libreria.dto.DailyRevenueDTO;
+import com.example.libreria.dto.LateFeeSummaryDTO;
+import com.example.libreria.dto.TopBookDTO;
+import com.example.libreria.dto.TopUserDTO;
+import com.example.libreria.service.AnalyticsBackfillJob;
+import com.example.libreria.service.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    
+    private static final int MAX_TOP = 100;
+    
+    private final AnalyticsService analyticsService;
+    private final AnalyticsBackfillJob analyticsBackfillJob;
+    
+    @GetMapping("/top-books")
+    public ResponseEntity<List<TopBookDTO>> getTopBooks(
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "10") int limit) {
+        checkLimit(limit);
+        return ResponseEntity.ok(analyticsService.getTopBooks(days, limit));
+    }
+    
+    @GetMapping("/top-users")
+    public ResponseEntity<List<TopUserDTO>> getTopUsers(
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "10") int limit) {
+        checkLimit(limit);
+        return ResponseEntity.ok(analyticsService.getTopUsers(days, limit));
+    }
+    
+    @GetMapping("/revenue")
+    public ResponseEntity<List<DailyRevenueDTO>> getRevenueByDay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.getRevenueByDay(from, to));
+    }
+    
+    @GetMapping("/late-fees")
+    public ResponseEntity<LateFeeSummaryDTO> getLateFees(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.getLateFees(from, to));
+    }
+    
+    // Recalcula desde las reservas los acumulados de los días anteriores a hoy. 409 si ya corre en otra réplica
+    @PostMapping("/backfill")
+    public ResponseEntity<AnalyticsBackfillReportDTO> backfill() {
+        return analyticsBackfillJob.backfill()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+    
+    private static void checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_TOP) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_TOP);
+        }
+    }
+}
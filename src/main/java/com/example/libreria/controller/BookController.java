@@ -1,23 +1,72 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.cluster.LeaseService;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.InventoryReconciliationReportDTO;
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.dto.StockBatchReportDTO;
+import com.example.libreria.service.AvailabilityStreamService;
 import com.example.libreria.service.BookService;
+import com.example.libreria.service.InventoryReconciliationJob;
+import com.example.libreria.service.RecommendationService;
+import com.example.libreria.service.StockBatchService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
+@Slf4j
 public class BookController {
     
+    private static final String SYNC_LEASE = "book-sync";
+    private static final int MAX_RELATED = 50;
+    
     private final BookService bookService;
+    private final AvailabilityStreamService availabilityStreamService;
+    private final AsyncTaskExecutor syncExecutor;
+    private final LeaseService leaseService;
+    private final StockBatchService stockBatchService;
+    private final InventoryReconciliationJob inventoryReconciliationJob;
+    private final RecommendationService recommendationService;
     
     @PostMapping("/sync")
-    public ResponseEntity<String> syncBooks() {
-        bookService.syncBooksFromExternalApi();
+    public ResponseEntity<String> syncBooks(@RequestParam(defaultValue = "false") boolean async) {
+        // Una sola sincronización a la vez en todo el cluster: las demás réplicas no repiten la descarga
+        if (!leaseService.tryAcquire(SYNC_LEASE)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Ya hay una sincronización de libros en curso");
+        }
+        if (async) {
+            // La llamada a la API externa y la escritura corren en syncExecutor, no en el hilo del request
+            try {
+                CompletableFuture.runAsync(bookService::syncBooksFromExternalApi, syncExecutor)
+                        .whenComplete((result, e) -> leaseService.release(SYNC_LEASE))
+                        .exceptionally(e -> {
+                            log.error("Asynchronous book synchronization failed: {}", e.getMessage(), e);
+                            return null;
+                        });
+            } catch (RuntimeException e) {
+                leaseService.release(SYNC_LEASE);
+                throw e;
+            }
+            return ResponseEntity.accepted().body("Sincronización de libros iniciada");
+        }
+        try {
+            bookService.syncBooksFromExternalApi();
+        } finally {
+            leaseService.release(SYNC_LEASE);
+        }
         return ResponseEntity.ok("Libros sincronizados exitosamente desde la API externa");
     }
     
@@ -33,6 +82,44 @@ public class BookController {
         return ResponseEntity.ok(book);
     }
     
+    // "Quienes reservaron este libro también reservaron", de mayor a menor parecido
+    @GetMapping("/{externalId}/related")
+    public ResponseEntity<List<RelatedBookDTO>> getRelatedBooks(
+            @PathVariable Long externalId,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > MAX_RELATED) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_RELATED);
+        }
+        return ResponseEntity.ok(recommendationService.getRelatedBooks(externalId, limit));
+    }
+    
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@RequestParam List<Long> ids) {
+        return availabilityStreamService.subscribe(ids);
+    }
+    
+    // Recepción de depósito: CSV (externalId,stockQuantity,delta) o NDJSON, aplicado en una sola transacción.
+    // Cada línea fija el stock (stockQuantity) o lo ajusta (delta); la respuesta trae el resultado por línea
+    @PutMapping(value = "/stock/batch", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<StockBatchReportDTO> updateStockBatch(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+        StockBatchService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? StockBatchService.Format.CSV
+                : StockBatchService.Format.NDJSON;
+        List<StockBatchService.Entry> entries = stockBatchService.read(body, format);
+        return ResponseEntity.ok(stockBatchService.apply(entries));
+    }
+    
+    // Recalcula los disponibles contra las reservas activas; con dryRun solo informa las diferencias
+    @PostMapping("/reconcile")
+    public ResponseEntity<InventoryReconciliationReportDTO> reconcileInventory(
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        return inventoryReconciliationJob.reconcile(dryRun)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+    
     @PutMapping("/{externalId}/stock")
     public ResponseEntity<BookResponseDTO> updateStock(
             @PathVariable Long externalId,
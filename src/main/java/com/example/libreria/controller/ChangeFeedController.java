@@ -0,0 +1,41 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.ChangeEventDTO;
+import com.example.libreria.service.OutboxRelay;
+import com.example.libreria.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/changes")
+@RequiredArgsConstructor
+public class ChangeFeedController {
+    
+    private static final int MAX_LIMIT = 1000;
+    
+    private final OutboxService outboxService;
+    private final OutboxRelay outboxRelay;
+    
+    // Last-Event-ID lo envía el navegador al reconectar un EventSource; tiene prioridad sobre fromOffset
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestParam(required = false) Long fromOffset,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return outboxRelay.subscribe(lastEventId != null ? lastEventId : fromOffset);
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<ChangeEventDTO>> getChanges(
+            @RequestParam(defaultValue = "0") long fromOffset,
+            @RequestParam(defaultValue = "200") int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_LIMIT);
+        }
+        return ResponseEntity.ok(outboxService.getChangesAfter(fromOffset, limit));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.InventorySnapshotDTO;
+import com.example.libreria.dto.JournalEntryDTO;
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.service.JournalReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/journal")
+@RequiredArgsConstructor
+public class JournalController {
+    
+    private final JournalReplayService journalReplayService;
+    
+    // Los consumidores guardan la última secuencia procesada y piden desde la siguiente
+    @GetMapping("/events")
+    public ResponseEntity<List<JournalEntryDTO>> tail(
+            @RequestParam(defaultValue = "1") long fromSequence,
+            @RequestParam(defaultValue = "500") int limit) {
+        List<JournalEntryDTO> entries = journalReplayService.tail(fromSequence, limit);
+        return ResponseEntity.ok()
+                .header("X-Journal-Last-Sequence", String.valueOf(journalReplayService.getLastSequence()))
+                .body(entries);
+    }
+    
+    @GetMapping("/rebuild/inventory")
+    public ResponseEntity<List<InventorySnapshotDTO>> rebuildInventory() {
+        return ResponseEntity.ok(journalReplayService.rebuildInventory());
+    }
+    
+    @GetMapping("/rebuild/users")
+    public ResponseEntity<List<UserReservationSummaryDTO>> rebuildUserSummaries() {
+        return ResponseEntity.ok(journalReplayService.rebuildUserSummaries());
+    }
+}
@@ -1,16 +1,30 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.AvailabilityWindowDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.dto.WaitlistRequestDTO;
+import com.example.libreria.service.ReservationArchiveJob;
+import com.example.libreria.service.ReservationArchiveService;
+import com.example.libreria.service.ReservationExportService;
 import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.WaitlistService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reservations")
@@ -18,6 +32,10 @@ import java.util.List;
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final ReservationArchiveService reservationArchiveService;
+    private final ReservationArchiveJob reservationArchiveJob;
+    private final WaitlistService waitlistService;
+    private final ReservationExportService reservationExportService;
     
     @PostMapping
     public ResponseEntity<ReservationResponseDTO> createReservation(
@@ -26,6 +44,40 @@ public class ReservationController {
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
     
+    // Libro sin copias: en vez de reintentar, se entra a la cola. La próxima copia que se libere queda apartada
+    // para el primero (waitlist.hold-ms) y se confirma con /waitlist/{id}/confirm
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistEntryDTO> joinWaitlist(@Valid @RequestBody WaitlistRequestDTO requestDTO) {
+        WaitlistEntryDTO entry = waitlistService.join(requestDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).body(entry);
+    }
+    
+    @GetMapping("/waitlist/{id}")
+    public ResponseEntity<WaitlistEntryDTO> getWaitlistEntry(@PathVariable Long id) {
+        return ResponseEntity.ok(waitlistService.getEntry(id));
+    }
+    
+    @PostMapping("/waitlist/{id}/confirm")
+    public ResponseEntity<ReservationResponseDTO> confirmWaitlistHold(@PathVariable Long id) {
+        ReservationResponseDTO reservation = waitlistService.confirmHold(id);
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+    }
+    
+    @DeleteMapping("/waitlist/{id}")
+    public ResponseEntity<Void> cancelWaitlistEntry(@PathVariable Long id) {
+        waitlistService.cancel(id);
+        return ResponseEntity.noContent().build();
+    }
+    
+    // ¿Se puede reservar el libro desde from por days días? Si no, primera fecha desde from en que sí
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityWindowDTO> checkAvailability(
+            @RequestParam Long bookExternalId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam int days) {
+        return ResponseEntity.ok(reservationService.checkAvailability(bookExternalId, from, days));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ReservationResponseDTO> getReservationById(@PathVariable Long id) {
         ReservationResponseDTO reservation = reservationService.getReservationById(id);
@@ -56,6 +108,34 @@ public class ReservationController {
         return ResponseEntity.ok(reservations);
     }
     
+    @GetMapping("/history")
+    public ResponseEntity<List<ReservationResponseDTO>> getReservationHistory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId) {
+        List<ReservationResponseDTO> reservations = reservationArchiveService.getReservationHistory(from, to, userId);
+        return ResponseEntity.ok(reservations);
+    }
+    
+    // Historial completo (archivo incluido) en el formato columnar comprimido de ReservationColumnarWriter.
+    // Se escribe mientras se lee: la respuesta va en chunks y ocupa un hilo del servidor hasta terminar
+    @GetMapping("/export")
+    public void exportReservations(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        reservationExportService.checkRange(from, to);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reservations.lrx\"");
+        reservationExportService.export(from, to, response.getOutputStream());
+    }
+    
+    @PostMapping("/archive")
+    public ResponseEntity<Map<String, Integer>> archiveClosedReservations() {
+        int archived = reservationArchiveJob.archiveClosedReservations();
+        return ResponseEntity.ok(Map.of("archived", archived));
+    }
+    
     @PostMapping("/{id}/return")
     public ResponseEntity<ReservationResponseDTO> returnBook(
             @PathVariable Long id,
@@ -1,14 +1,20 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.UserDeletionReportDTO;
+import com.example.libreria.dto.UserImportReportDTO;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.service.UserImportService;
 import com.example.libreria.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -16,7 +22,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     
+    private static final int MAX_LIMIT = 500;
+    private static final int MAX_DELETE_BATCH = 500;
+    
     private final UserService userService;
+    private final UserImportService userImportService;
     
     @PostMapping
     public ResponseEntity<UserResponseDTO> createUser(@Valid @RequestBody UserRequestDTO requestDTO) {
@@ -31,6 +41,17 @@ public class UserController {
 
     }
     
+    // El cuerpo se lee en streaming: CSV con cabecera (name,email,phoneNumber) o un JSON por línea
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<UserImportReportDTO> importUsers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+        UserImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        return ResponseEntity.ok(userImportService.importUsers(body, format));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<UserResponseDTO> getUserById(@PathVariable Long id) {
       try{
@@ -41,11 +62,22 @@ public class UserController {
       }
     }
     
+    // Paginado por keyset: la siguiente página se pide con afterId = X-Next-After-Id
     @GetMapping
-    public ResponseEntity<List<UserResponseDTO>> getAllUsers() {
+    public ResponseEntity<List<UserResponseDTO>> getUsers(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String q) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_LIMIT);
+        }
         try {
-            List<UserResponseDTO> users = userService.getAllUsers();
-            return ResponseEntity.ok(users);
+            List<UserResponseDTO> users = userService.getUsers(afterId, limit, q);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (users.size() == limit) {
+                response.header("X-Next-After-Id", String.valueOf(users.get(users.size() - 1).getId()));
+            }
+            return response.body(users);
         } catch (RuntimeException e){
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -64,6 +96,15 @@ public class UserController {
 
     }
     
+    // Baja de varios usuarios en una transacción: DELETE /api/users?ids=1,2,3
+    @DeleteMapping
+    public ResponseEntity<UserDeletionReportDTO> deleteUsers(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_DELETE_BATCH) {
+            throw new RuntimeException("Se pueden eliminar entre 1 y " + MAX_DELETE_BATCH + " usuarios por pedido");
+        }
+        return ResponseEntity.ok(userService.deleteUsers(ids));
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
       try {
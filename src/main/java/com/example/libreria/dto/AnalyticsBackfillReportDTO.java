@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBackfillReportDTO {
+    
+    // Se reemplazaron los acumulados de los días anteriores a esta fecha
+    private LocalDate before;
+    private long scannedReservations;
+    private int bookRows;
+    private int userRows;
+    private long durationMs;
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Respuesta de GET /api/reservations/availability: si el libro tiene una copia libre todos los días
+// de [from, from + days) y, si no, el primer día desde from en que sí (null si el libro no tiene stock)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityWindowDTO {
+    
+    private Long bookExternalId;
+    private LocalDate from;
+    private Integer days;
+    private boolean available;
+    private LocalDate firstAvailableDate;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheRegionStatsDTO {
+    
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    // null mientras no hubo lecturas
+    private Double hitRatio;
+    // -1 si el proveedor no informa el tamaño (JCache no lo expone)
+    private long elementCountInMemory;
+}
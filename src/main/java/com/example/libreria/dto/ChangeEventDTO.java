@@ -0,0 +1,23 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.OutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEventDTO {
+    
+    private Long offset;
+    private OutboxEvent.AggregateType aggregateType;
+    private Long aggregateId;
+    private String eventType;
+    @JsonRawValue
+    private String payload;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// rentalRevenue: tarifas de las reservas creadas ese día; lateFees: recargos de las devueltas ese día
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyRevenueDTO {
+    
+    private LocalDate day;
+    private long reservations;
+    private BigDecimal rentalRevenue;
+    private BigDecimal lateFees;
+    private BigDecimal total;
+}
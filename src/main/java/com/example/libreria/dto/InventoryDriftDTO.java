@@ -0,0 +1,30 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryDriftDTO {
+    
+    private Long externalId;
+    private int stockQuantity;
+    // Lo que decía books.available_quantity al detectar la diferencia
+    private int availableQuantity;
+    private long activeReservations;
+    // Copias apartadas para la lista de espera
+    private long heldCopies;
+    // stockQuantity - activeReservations - heldCopies, nunca menos de 0
+    private int expectedAvailableQuantity;
+    private Status status;
+    
+    public enum Status {
+        // Solo informado (dry-run)
+        DETECTED,
+        FIXED,
+        // El libro cambió entre la lectura y el UPDATE: lo revisa la próxima corrida
+        CHANGED
+    }
+}
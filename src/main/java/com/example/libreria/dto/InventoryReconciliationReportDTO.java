@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class InventoryReconciliationReportDTO {
+    
+    private boolean dryRun;
+    private long driftedBooks;
+    private long fixedBooks;
+    private long changedBooks;
+    // De los que no cuadraban, los que tienen más reservas activas y holds que stock (quedan con 0 disponibles)
+    private long overbookedBooks;
+    // Solo los primeros inventory.reconciliation.max-reported-drifts; driftedBooks cuenta todos
+    private List<InventoryDriftDTO> drifts = new ArrayList<>();
+    private boolean driftsTruncated;
+}
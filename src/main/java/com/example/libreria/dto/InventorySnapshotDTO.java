@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventorySnapshotDTO {
+    
+    private Long bookExternalId;
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+    private Long lastSequence;
+}
@@ -0,0 +1,39 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Reservation;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntryDTO {
+    
+    private Long sequence;
+    private LocalDateTime timestamp;
+    private EntryType type;
+    private String reason;
+    private Long bookExternalId;
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+    private Long bookVersion;
+    private Long reservationId;
+    private Long userId;
+    private LocalDate startDate;
+    private LocalDate expectedReturnDate;
+    private LocalDate actualReturnDate;
+    private BigDecimal totalFee;
+    private BigDecimal lateFee;
+    private Reservation.ReservationStatus status;
+    
+    public enum EntryType {
+        BOOK_STOCK_CHANGED, RESERVATION_CREATED, RESERVATION_RETURNED
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Devoluciones con fecha en [from, to]
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LateFeeSummaryDTO {
+    
+    private LocalDate from;
+    private LocalDate to;
+    private long returns;
+    private long lateReturns;
+    private BigDecimal lateFees;
+}
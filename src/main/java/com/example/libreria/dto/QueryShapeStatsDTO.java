@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryShapeStatsDTO {
+    
+    private String shape;
+    private long count;
+    private double totalMs;
+    private double averageMs;
+    private double maxMs;
+}
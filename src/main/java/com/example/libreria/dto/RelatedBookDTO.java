@@ -0,0 +1,18 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelatedBookDTO {
+    
+    private Long externalId;
+    private String title;
+    // Lectores distintos que reservaron los dos libros
+    private int coReservations;
+    // Coseno entre los conjuntos de lectores de los dos libros, entre 0 y 1
+    private double score;
+}
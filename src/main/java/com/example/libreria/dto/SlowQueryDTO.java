@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowQueryDTO {
+    
+    private LocalDateTime executedAt;
+    private double elapsedMs;
+    private String query;
+    // Un elemento por ejecución (más de uno en los batch), con los parámetros en orden
+    private List<String> parameters;
+    // Request HTTP que la ejecutó, si la hubo
+    private String request;
+}
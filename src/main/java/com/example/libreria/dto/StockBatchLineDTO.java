@@ -0,0 +1,24 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchLineDTO {
+    
+    // Línea del archivo (la cabecera del CSV es la 1)
+    private long line;
+    private Long externalId;
+    private Status status;
+    // Valores del libro después de aplicar la línea (null si se rechazó)
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+    private String message;
+    
+    public enum Status {
+        APPLIED, REJECTED
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchReportDTO {
+    
+    private int applied;
+    private int rejected;
+    // Libros efectivamente modificados (varias líneas del mismo libro cuentan una vez)
+    private int updatedBooks;
+    private List<StockBatchLineDTO> lines;
+}
@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopBookDTO {
+    
+    private Long externalId;
+    // null si el libro ya no está en el catálogo
+    private String title;
+    private long reservations;
+    private BigDecimal revenue;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopUserDTO {
+    
+    private Long userId;
+    // null si el usuario fue dado de baja
+    private String name;
+    private long reservations;
+    // Tarifas de las reservas más los recargos por atraso
+    private BigDecimal spent;
+}
@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDeletionReportDTO {
+    
+    private int deletedUsers;
+    private int deletedReservations;
+    // Copias de reservas activas que volvieron a estar disponibles
+    private int releasedCopies;
+    private List<Long> notFound;
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportErrorDTO {
+    
+    // Línea del archivo (la cabecera del CSV es la 1)
+    private long line;
+    private String email;
+    private String message;
+}
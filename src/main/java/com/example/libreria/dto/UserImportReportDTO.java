@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class UserImportReportDTO {
+    
+    private long totalRows;
+    private long imported;
+    private long failed;
+    // Solo las primeras user-import.max-reported-errors; failed cuenta todas
+    private List<UserImportErrorDTO> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReservationSummaryDTO {
+    
+    private Long userId;
+    private long totalReservations;
+    private long activeReservations;
+    private long overdueReturns;
+    private BigDecimal totalFees = BigDecimal.ZERO;
+    private BigDecimal lateFees = BigDecimal.ZERO;
+}
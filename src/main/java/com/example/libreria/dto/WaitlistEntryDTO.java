@@ -0,0 +1,25 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.WaitlistEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntryDTO {
+    
+    private Long id;
+    private Long userId;
+    private Long bookExternalId;
+    private Integer rentalDays;
+    private WaitlistEntry.Status status;
+    // Lugar en la cola del libro mientras está WAITING (1 = la próxima copia que se libere)
+    private Integer position;
+    private LocalDateTime holdExpiresAt;
+    private Long reservationId;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.event;
+
+import lombok.Value;
+
+// Se publica cada vez que cambia el stock o la cantidad disponible de un libro.
+// version es la versión de la fila con estos valores: ordena los cambios de un libro aunque los listeners
+// posteriores al commit los reciban en otro orden
+@Value
+public class BookStockChangedEvent {
+    
+    Long externalId;
+    Integer stockQuantity;
+    Integer availableQuantity;
+    Long version;
+    Reason reason;
+    
+    public enum Reason {
+        SYNC_CREATED, SYNC_UPDATED, STOCK_UPDATED, COPY_TAKEN, COPY_RELEASED, RECONCILED
+    }
+}
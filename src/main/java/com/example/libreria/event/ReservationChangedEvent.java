@@ -0,0 +1,45 @@
+package com.example.libreria.event;
+
+import com.example.libreria.model.Reservation;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Se publica al crear una reserva y al devolver el libro
+@Value
+public class ReservationChangedEvent {
+    
+    Type type;
+    Long reservationId;
+    Long userId;
+    Long bookExternalId;
+    LocalDate startDate;
+    LocalDate expectedReturnDate;
+    LocalDate actualReturnDate;
+    BigDecimal totalFee;
+    BigDecimal lateFee;
+    Reservation.ReservationStatus status;
+    LocalDateTime occurredAt;
+    
+    public enum Type {
+        CREATED, RETURNED
+    }
+    
+    public static ReservationChangedEvent of(Type type, Reservation reservation) {
+        return new ReservationChangedEvent(
+                type,
+                reservation.getId(),
+                reservation.getUser().getId(),
+                reservation.getBook().getExternalId(),
+                reservation.getStartDate(),
+                reservation.getExpectedReturnDate(),
+                reservation.getActualReturnDate(),
+                reservation.getTotalFee(),
+                reservation.getLateFee(),
+                reservation.getStatus(),
+                LocalDateTime.now()
+        );
+    }
+}
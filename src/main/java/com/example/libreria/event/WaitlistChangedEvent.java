@@ -0,0 +1,30 @@
+package com.example.libreria.event;
+
+import com.example.libreria.model.WaitlistEntry;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Se publica con cada cambio de estado de una entrada de la lista de espera.
+// HELD avisa al usuario que tiene una copia apartada hasta holdExpiresAt
+@Value
+public class WaitlistChangedEvent {
+    
+    Long entryId;
+    Long userId;
+    Long bookExternalId;
+    WaitlistEntry.Status status;
+    LocalDateTime holdExpiresAt;
+    Long reservationId;
+    
+    public static WaitlistChangedEvent of(WaitlistEntry entry) {
+        return new WaitlistChangedEvent(
+                entry.getId(),
+                entry.getUser().getId(),
+                entry.getBook().getExternalId(),
+                entry.getStatus(),
+                entry.getHoldExpiresAt(),
+                entry.getReservationId()
+        );
+    }
+}
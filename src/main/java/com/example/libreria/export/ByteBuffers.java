@@ -0,0 +1,108 @@
+package com.example.libreria.export;
+
+import java.util.Arrays;
+
+// Varints sin signo (7 bits por byte, el bit alto indica que sigue otro) y zigzag para los valores con signo,
+// así un delta chico, positivo o negativo, ocupa un byte
+final class ByteBuffers {
+    
+    private ByteBuffers() {
+    }
+    
+    // Buffer de escritura que se reutiliza entre bloques: crece hasta el bloque más grande y no vuelve a pedir memoria
+    static final class Sink {
+        
+        private byte[] bytes;
+        private int size;
+        
+        Sink(int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+        
+        byte[] array() {
+            return bytes;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void reset() {
+            size = 0;
+        }
+        
+        // Para escribir directamente en el arreglo (salida del Deflater)
+        void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        int free() {
+            return bytes.length - size;
+        }
+        
+        void advance(int written) {
+            size += written;
+        }
+    }
+    
+    static final class Source {
+        
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+        
+        Source(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+        
+        int readByte() {
+            check();
+            return bytes[position++] & 0xFF;
+        }
+        
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                check();
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new RuntimeException("Varint mal formado en el export");
+        }
+        
+        long readZigzag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        private void check() {
+            if (position >= limit) {
+                throw new RuntimeException("Bloque del export truncado");
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.libreria.export;
+
+import com.example.libreria.model.Reservation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Una fila del export de reservas. archived indica si salió de reservations_archive.
+// Los importes tienen dos decimales, como en la base
+public record ExportedReservation(
+        long id,
+        long userId,
+        long bookExternalId,
+        LocalDate startDate,
+        int rentalDays,
+        LocalDate expectedReturnDate,
+        LocalDate actualReturnDate,
+        BigDecimal dailyRate,
+        BigDecimal totalFee,
+        BigDecimal lateFee,
+        Reservation.ReservationStatus status,
+        LocalDateTime createdAt,
+        boolean archived) {
+}
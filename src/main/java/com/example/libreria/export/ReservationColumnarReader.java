@@ -0,0 +1,213 @@
+package com.example.libreria.export;
+
+import com.example.libreria.model.Reservation;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Lee un export de ReservationColumnarWriter bloque por bloque: en memoria queda solo el bloque actual
+public class ReservationColumnarReader implements Closeable {
+    
+    private static final Reservation.ReservationStatus[] STATUSES = Reservation.ReservationStatus.values();
+    private static final long NULL_DAYS = Long.MIN_VALUE;
+    
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private byte[] payload = new byte[0];
+    
+    private long[] ids = new long[0];
+    private long[] userIds = new long[0];
+    private long[] bookIds = new long[0];
+    private int[] startDays = new int[0];
+    private int[] rentalDays = new int[0];
+    private int[] expectedDays = new int[0];
+    private long[] actualDays = new long[0];
+    private long[] dailyRates = new long[0];
+    private long[] totalFees = new long[0];
+    private long[] lateFees = new long[0];
+    private byte[] statuses = new byte[0];
+    private long[] createdMicros = new long[0];
+    private byte[] archived = new byte[0];
+    private int rows;
+    private int position;
+    private boolean finished;
+    
+    public ReservationColumnarReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != ReservationColumnarWriter.MAGIC) {
+            throw new RuntimeException("El archivo no es un export de reservas");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != ReservationColumnarWriter.VERSION) {
+            throw new RuntimeException("Versión de export no soportada: " + version);
+        }
+    }
+    
+    // null al terminar
+    public ExportedReservation next() throws IOException {
+        if (position == rows && !readBlock()) {
+            return null;
+        }
+        int i = position++;
+        LocalDate expected = LocalDate.ofEpochDay(expectedDays[i]);
+        return new ExportedReservation(
+                ids[i],
+                userIds[i],
+                bookIds[i],
+                LocalDate.ofEpochDay(startDays[i]),
+                rentalDays[i],
+                expected,
+                actualDays[i] == NULL_DAYS ? null : expected.plusDays(actualDays[i]),
+                BigDecimal.valueOf(dailyRates[i], 2),
+                amount(totalFees[i]),
+                amount(lateFees[i]),
+                STATUSES[statuses[i]],
+                LocalDateTime.ofEpochSecond(Math.floorDiv(createdMicros[i], 1_000_000L),
+                        (int) Math.floorMod(createdMicros[i], 1_000_000L) * 1_000, ZoneOffset.UTC),
+                archived[i] == 1
+        );
+    }
+    
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+    
+    private boolean readBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        int blockRows = in.readInt();
+        if (blockRows == 0) {
+            finished = true;
+            return false;
+        }
+        int payloadSize = in.readInt();
+        int compressedSize = in.readInt();
+        if (compressed.length < compressedSize) {
+            compressed = new byte[compressedSize];
+        }
+        if (payload.length < payloadSize) {
+            payload = new byte[payloadSize];
+        }
+        in.readFully(compressed, 0, compressedSize);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedSize);
+        try {
+            int inflated = 0;
+            while (inflated < payloadSize) {
+                int read = inflater.inflate(payload, inflated, payloadSize - inflated);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new RuntimeException("Bloque del export truncado");
+                }
+                inflated += read;
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Bloque del export dañado: " + e.getMessage(), e);
+        }
+        decode(new ByteBuffers.Source(payload, payloadSize), blockRows);
+        return true;
+    }
+    
+    private void decode(ByteBuffers.Source source, int blockRows) {
+        if ((int) source.readVarint() != blockRows) {
+            throw new RuntimeException("Bloque del export inconsistente");
+        }
+        ensure(blockRows);
+        long[] users = readDictionary(source);
+        long[] books = readDictionary(source);
+        readDeltas(source, ids, blockRows);
+        for (int i = 0; i < blockRows; i++) {
+            userIds[i] = users[(int) source.readVarint()];
+        }
+        for (int i = 0; i < blockRows; i++) {
+            bookIds[i] = books[(int) source.readVarint()];
+        }
+        long previousDay = 0;
+        for (int i = 0; i < blockRows; i++) {
+            previousDay += source.readZigzag();
+            startDays[i] = (int) previousDay;
+        }
+        for (int i = 0; i < blockRows; i++) {
+            rentalDays[i] = (int) source.readVarint();
+        }
+        for (int i = 0; i < blockRows; i++) {
+            expectedDays[i] = (int) (startDays[i] + rentalDays[i] + source.readZigzag());
+        }
+        // En el archivo: 0 para null o zigzag(actual - expected) + 1. actualDays queda con actual - expected
+        for (int i = 0; i < blockRows; i++) {
+            long encoded = source.readVarint();
+            actualDays[i] = encoded == 0 ? NULL_DAYS : unzigzag(encoded - 1);
+        }
+        for (int i = 0; i < blockRows; i++) {
+            dailyRates[i] = source.readVarint();
+        }
+        for (int i = 0; i < blockRows; i++) {
+            totalFees[i] = source.readVarint();
+        }
+        for (int i = 0; i < blockRows; i++) {
+            lateFees[i] = source.readVarint();
+        }
+        for (int i = 0; i < blockRows; i++) {
+            statuses[i] = (byte) source.readByte();
+        }
+        readDeltas(source, createdMicros, blockRows);
+        for (int i = 0; i < blockRows; i++) {
+            archived[i] = (byte) source.readByte();
+        }
+        rows = blockRows;
+        position = 0;
+    }
+    
+    private static long[] readDictionary(ByteBuffers.Source source) {
+        long[] dictionary = new long[(int) source.readVarint()];
+        readDeltas(source, dictionary, dictionary.length);
+        return dictionary;
+    }
+    
+    private static void readDeltas(ByteBuffers.Source source, long[] values, int count) {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += source.readZigzag();
+            values[i] = previous;
+        }
+    }
+    
+    private void ensure(int blockRows) {
+        if (ids.length >= blockRows) {
+            return;
+        }
+        ids = new long[blockRows];
+        userIds = new long[blockRows];
+        bookIds = new long[blockRows];
+        startDays = new int[blockRows];
+        rentalDays = new int[blockRows];
+        expectedDays = new int[blockRows];
+        actualDays = new long[blockRows];
+        dailyRates = new long[blockRows];
+        totalFees = new long[blockRows];
+        lateFees = new long[blockRows];
+        statuses = new byte[blockRows];
+        createdMicros = new long[blockRows];
+        archived = new byte[blockRows];
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    // 0 es null; si no, centavos + 1
+    private static BigDecimal amount(long encoded) {
+        return encoded == 0 ? null : BigDecimal.valueOf(encoded - 1, 2);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.libreria.export;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+// Escribe reservas en el formato columnar del export: las filas se juntan en bloques de blockRows y cada bloque se
+// guarda columna por columna, comprimido con Deflate. Dentro de un bloque:
+// - user_id y book_external_id van como índice a un diccionario del bloque (los IDs distintos, ordenados, con deltas)
+// - id, start_date y created_at van como delta contra la fila anterior; expected_return_date contra
+//   start_date + rental_days y actual_return_date contra expected_return_date (casi siempre 0 o pocos días)
+// - los importes van en centavos, con 0 para null y el valor + 1 si no lo es
+// Las columnas son arreglos primitivos de blockRows elementos que se reutilizan: la memoria no depende
+// de cuántas filas se exporten
+public class ReservationColumnarWriter implements Closeable {
+    
+    // "LRX1"
+    static final int MAGIC = 0x4C525831;
+    static final int VERSION = 1;
+    
+    private static final int NULL_DAY = Integer.MIN_VALUE;
+    private static final long NULL_AMOUNT = Long.MIN_VALUE;
+    
+    private final DataOutputStream out;
+    private final int blockRows;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final ByteBuffers.Sink payload;
+    private final ByteBuffers.Sink compressed;
+    
+    private final long[] ids;
+    private final long[] userIds;
+    private final long[] bookIds;
+    private final int[] startDays;
+    private final int[] rentalDays;
+    private final int[] expectedDays;
+    private final int[] actualDays;
+    private final long[] dailyRates;
+    private final long[] totalFees;
+    private final long[] lateFees;
+    private final byte[] statuses;
+    private final long[] createdMicros;
+    private final byte[] archived;
+    // Valores distintos y ordenados de userIds / bookIds en el bloque actual
+    private final long[] userDictionary;
+    private final long[] bookDictionary;
+    private int rows;
+    private long written;
+    private boolean finished;
+    
+    public ReservationColumnarWriter(OutputStream out, int blockRows) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.blockRows = blockRows;
+        payload = new ByteBuffers.Sink(blockRows * 16);
+        compressed = new ByteBuffers.Sink(blockRows * 4);
+        ids = new long[blockRows];
+        userIds = new long[blockRows];
+        bookIds = new long[blockRows];
+        startDays = new int[blockRows];
+        rentalDays = new int[blockRows];
+        expectedDays = new int[blockRows];
+        actualDays = new int[blockRows];
+        dailyRates = new long[blockRows];
+        totalFees = new long[blockRows];
+        lateFees = new long[blockRows];
+        statuses = new byte[blockRows];
+        createdMicros = new long[blockRows];
+        archived = new byte[blockRows];
+        userDictionary = new long[blockRows];
+        bookDictionary = new long[blockRows];
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+    
+    public void write(ExportedReservation reservation) throws IOException {
+        ids[rows] = reservation.id();
+        userIds[rows] = reservation.userId();
+        bookIds[rows] = reservation.bookExternalId();
+        startDays[rows] = (int) reservation.startDate().toEpochDay();
+        rentalDays[rows] = reservation.rentalDays();
+        expectedDays[rows] = day(reservation.expectedReturnDate());
+        actualDays[rows] = day(reservation.actualReturnDate());
+        dailyRates[rows] = cents(reservation.dailyRate());
+        totalFees[rows] = cents(reservation.totalFee());
+        lateFees[rows] = cents(reservation.lateFee());
+        statuses[rows] = (byte) reservation.status().ordinal();
+        createdMicros[rows] = micros(reservation.createdAt());
+        archived[rows] = (byte) (reservation.archived() ? 1 : 0);
+        if (++rows == blockRows) {
+            flushBlock();
+        }
+    }
+    
+    public long getWritten() {
+        return written;
+    }
+    
+    // Bloque pendiente y marca de fin (un bloque de 0 filas). Sin finish el export queda truncado
+    // y el lector falla al llegar al final, en vez de tomar como completo un export cortado
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flushBlock();
+        out.writeInt(0);
+        out.flush();
+        finished = true;
+    }
+    
+    // Libera el Deflater; no cierra el stream
+    @Override
+    public void close() {
+        deflater.end();
+    }
+    
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        payload.reset();
+        payload.writeVarint(rows);
+        int users = writeDictionary(userIds, userDictionary);
+        int books = writeDictionary(bookIds, bookDictionary);
+        writeDeltas(ids, rows);
+        writeIndexes(userIds, userDictionary, users);
+        writeIndexes(bookIds, bookDictionary, books);
+        long previousDay = 0;
+        for (int i = 0; i < rows; i++) {
+            payload.writeZigzag(startDays[i] - previousDay);
+            previousDay = startDays[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            payload.writeVarint(rentalDays[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            // Casi siempre start + rentalDays: queda en 0
+            payload.writeZigzag((long) expectedDays[i] - startDays[i] - rentalDays[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            payload.writeVarint(actualDays[i] == NULL_DAY ? 0 : zigzag((long) actualDays[i] - expectedDays[i]) + 1);
+        }
+        for (int i = 0; i < rows; i++) {
+            payload.writeVarint(dailyRates[i]);
+        }
+        writeNullableAmounts(totalFees);
+        writeNullableAmounts(lateFees);
+        for (int i = 0; i < rows; i++) {
+            payload.writeByte(statuses[i]);
+        }
+        writeDeltas(createdMicros, rows);
+        for (int i = 0; i < rows; i++) {
+            payload.writeByte(archived[i]);
+        }
+        
+        compressed.reset();
+        deflater.reset();
+        deflater.setInput(payload.array(), 0, payload.size());
+        deflater.finish();
+        while (!deflater.finished()) {
+            compressed.ensure(8192);
+            compressed.advance(deflater.deflate(compressed.array(), compressed.size(), compressed.free()));
+        }
+        out.writeInt(rows);
+        out.writeInt(payload.size());
+        out.writeInt(compressed.size());
+        out.write(compressed.array(), 0, compressed.size());
+        written += rows;
+        rows = 0;
+    }
+    
+    private int writeDictionary(long[] values, long[] dictionary) {
+        System.arraycopy(values, 0, dictionary, 0, rows);
+        Arrays.sort(dictionary, 0, rows);
+        int distinct = 0;
+        for (int i = 0; i < rows; i++) {
+            if (distinct == 0 || dictionary[i] != dictionary[distinct - 1]) {
+                dictionary[distinct++] = dictionary[i];
+            }
+        }
+        payload.writeVarint(distinct);
+        writeDeltas(dictionary, distinct);
+        return distinct;
+    }
+    
+    private void writeIndexes(long[] values, long[] dictionary, int size) {
+        for (int i = 0; i < rows; i++) {
+            payload.writeVarint(Arrays.binarySearch(dictionary, 0, size, values[i]));
+        }
+    }
+    
+    private void writeDeltas(long[] values, int count) {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            payload.writeZigzag(values[i] - previous);
+            previous = values[i];
+        }
+    }
+    
+    private void writeNullableAmounts(long[] amounts) {
+        for (int i = 0; i < rows; i++) {
+            payload.writeVarint(amounts[i] == NULL_AMOUNT ? 0 : amounts[i] + 1);
+        }
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static int day(LocalDate date) {
+        return date == null ? NULL_DAY : (int) date.toEpochDay();
+    }
+    
+    private static long cents(BigDecimal amount) {
+        return amount == null ? NULL_AMOUNT : amount.movePointRight(2).longValueExact();
+    }
+    
+    private static long micros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+}
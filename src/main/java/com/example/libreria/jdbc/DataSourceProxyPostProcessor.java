@@ -0,0 +1,68 @@
+package com.example.libreria.jdbc;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+// Envuelve el DataSource con datasource-proxy. El listener se resuelve en la primera consulta:
+// un BeanPostProcessor no debe forzar la creación temprana de otros beans.
+public class DataSourceProxyPostProcessor implements BeanPostProcessor {
+    
+    private final ObjectProvider<QueryInstrumentationListener> listenerProvider;
+    
+    public DataSourceProxyPostProcessor(ObjectProvider<QueryInstrumentationListener> listenerProvider) {
+        this.listenerProvider = listenerProvider;
+    }
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        return ProxyDataSourceBuilder.create(dataSource)
+                .name(beanName)
+                .listener(new LazyListener(listenerProvider))
+                .build();
+    }
+    
+    private static final class LazyListener implements QueryExecutionListener {
+        
+        private final ObjectProvider<QueryInstrumentationListener> provider;
+        private volatile QueryExecutionListener delegate;
+        
+        LazyListener(ObjectProvider<QueryInstrumentationListener> provider) {
+            this.provider = provider;
+        }
+        
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            QueryExecutionListener listener = resolve();
+            if (listener != null) {
+                listener.beforeQuery(execInfo, queryInfoList);
+            }
+        }
+        
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            QueryExecutionListener listener = resolve();
+            if (listener != null) {
+                listener.afterQuery(execInfo, queryInfoList);
+            }
+        }
+        
+        private QueryExecutionListener resolve() {
+            QueryExecutionListener listener = delegate;
+            if (listener == null) {
+                listener = provider.getIfAvailable();
+                delegate = listener;
+            }
+            return listener;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.libreria.jdbc;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+// Mide cada ejecución JDBC con nanoTime (ExecutionInfo.getElapsedTime solo tiene milisegundos)
+// y la suma al request en curso y a las estadísticas por forma de consulta
+public class QueryInstrumentationListener implements QueryExecutionListener {
+    
+    private static final String START_KEY = "libreria.start";
+    
+    private final QueryStatistics queryStatistics;
+    
+    public QueryInstrumentationListener(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+    
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START_KEY, System.nanoTime());
+    }
+    
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START_KEY, Long.class);
+        if (start == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        // Un batch cuenta como una sola ida y vuelta a la base
+        RequestQueryContext context = RequestQueryContext.current();
+        if (context != null) {
+            context.record(elapsed);
+        }
+        
+        // En un batch de Statement hay varias consultas: el tiempo se reparte entre ellas
+        long perQuery = elapsed / Math.max(1, queryInfoList.size());
+        for (QueryInfo queryInfo : queryInfoList) {
+            queryStatistics.record(queryInfo.getQuery(), perQuery);
+        }
+        if (queryStatistics.isSlow(elapsed)) {
+            for (QueryInfo queryInfo : queryInfoList) {
+                queryStatistics.recordSlow(queryInfo.getQuery(), elapsed, queryInfo.getParametersList(),
+                        context != null ? context.getRequest() : null);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.libreria.jdbc;
+
+import com.example.libreria.dto.QueryShapeStatsDTO;
+import com.example.libreria.dto.SlowQueryDTO;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+// Agregado de sentencias SQL por "forma" (la consulta con literales y listas IN normalizadas)
+// y muestra de las consultas lentas con sus parámetros
+@Slf4j
+public class QueryStatistics {
+    
+    static final String OTHER_SHAPE = "<otras>";
+    
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_PARAMETER_LENGTH = 100;
+    
+    private final long slowQueryNanos;
+    private final int maxShapes;
+    private final int slowSampleSize;
+    private final int slowLogPerMinute;
+    
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    // SQL tal como llega -> forma. Hibernate reutiliza pocas cadenas, así que normalizar es casi siempre un get
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final Deque<SlowQueryDTO> slowQueries = new ArrayDeque<>();
+    // Como en UserEmailIndex: en la aplicación no se usa synchronized (ver el perfil java21)
+    private final ReentrantLock slowQueriesLock = new ReentrantLock();
+    private final AtomicLong slowLogWindowStart = new AtomicLong();
+    private final AtomicInteger slowLoggedInWindow = new AtomicInteger();
+    
+    public QueryStatistics(long slowQueryMs, int maxShapes, int slowSampleSize, int slowLogPerMinute) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+        this.maxShapes = maxShapes;
+        this.slowSampleSize = slowSampleSize;
+        this.slowLogPerMinute = slowLogPerMinute;
+    }
+    
+    public void record(String sql, long elapsedNanos) {
+        String shape = shapeOf(sql);
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            // Con demasiadas formas distintas (SQL armado a mano con literales) se agrupa el resto
+            stats = shapes.size() < maxShapes
+                    ? shapes.computeIfAbsent(shape, k -> new ShapeStats())
+                    : shapes.computeIfAbsent(OTHER_SHAPE, k -> new ShapeStats());
+        }
+        stats.record(elapsedNanos);
+    }
+    
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= slowQueryNanos;
+    }
+    
+    // Un elemento de parameters por ejecución (varias en un batch), con los setXxx del PreparedStatement
+    public void recordSlow(String sql, long elapsedNanos, List<List<ParameterSetOperation>> parameters, String request) {
+        List<String> formatted = new ArrayList<>(parameters.size());
+        for (List<ParameterSetOperation> execution : parameters) {
+            formatted.add(formatParameters(execution));
+        }
+        SlowQueryDTO slowQuery = new SlowQueryDTO(LocalDateTime.now(), elapsedNanos / 1_000_000.0,
+                sql, formatted, request);
+        slowQueriesLock.lock();
+        try {
+            if (slowQueries.size() == slowSampleSize) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        } finally {
+            slowQueriesLock.unlock();
+        }
+        if (tryAcquireLogPermit()) {
+            log.warn("Slow query ({} ms){}: {} {}", String.format(Locale.ROOT, "%.1f", slowQuery.getElapsedMs()),
+                    request != null ? " in " + request : "", sql, formatted);
+        }
+    }
+    
+    public List<QueryShapeStatsDTO> getTopShapes(int limit, String sort) {
+        Comparator<QueryShapeStatsDTO> order = switch (sort == null ? "total" : sort) {
+            case "count" -> Comparator.comparingLong(QueryShapeStatsDTO::getCount);
+            case "max" -> Comparator.comparingDouble(QueryShapeStatsDTO::getMaxMs);
+            case "average" -> Comparator.comparingDouble(QueryShapeStatsDTO::getAverageMs);
+            case "total" -> Comparator.comparingDouble(QueryShapeStatsDTO::getTotalMs);
+            default -> throw new IllegalArgumentException("Orden inválido: " + sort);
+        };
+        return shapes.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(order.reversed())
+                .limit(limit)
+                .toList();
+    }
+    
+    public List<SlowQueryDTO> getSlowQueries() {
+        slowQueriesLock.lock();
+        try {
+            List<SlowQueryDTO> newestFirst = new ArrayList<>(slowQueries);
+            Collections.reverse(newestFirst);
+            return newestFirst;
+        } finally {
+            slowQueriesLock.unlock();
+        }
+    }
+    
+    public void reset() {
+        shapes.clear();
+        slowQueriesLock.lock();
+        try {
+            slowQueries.clear();
+        } finally {
+            slowQueriesLock.unlock();
+        }
+    }
+    
+    String shapeOf(String sql) {
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (shapeCache.size() < maxShapes * 4) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+    
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+    
+    private boolean tryAcquireLogPermit() {
+        long now = System.currentTimeMillis();
+        long windowStart = slowLogWindowStart.get();
+        if (now - windowStart >= 60_000 && slowLogWindowStart.compareAndSet(windowStart, now)) {
+            slowLoggedInWindow.set(0);
+        }
+        return slowLoggedInWindow.incrementAndGet() <= slowLogPerMinute;
+    }
+    
+    // args[0] es el índice (o el nombre, en un CallableStatement) y args[1] el valor; setNull lleva el tipo SQL
+    private static String formatParameters(List<ParameterSetOperation> parameters) {
+        StringBuilder text = new StringBuilder("[");
+        parameters.stream()
+                .filter(operation -> !ParameterSetOperation.isRegisterOutParameterOperation(operation))
+                .sorted(Comparator.comparingInt(operation -> parameterIndex(operation.getArgs()[0])))
+                .forEach(operation -> {
+                    if (text.length() > 1) {
+                        text.append(", ");
+                    }
+                    String value = ParameterSetOperation.isSetNullParameterOperation(operation)
+                            ? "NULL" : String.valueOf(operation.getArgs()[1]);
+                    if (value.length() > MAX_PARAMETER_LENGTH) {
+                        value = value.substring(0, MAX_PARAMETER_LENGTH) + "...";
+                    }
+                    text.append(value);
+                });
+        return text.append(']').toString();
+    }
+    
+    private static int parameterIndex(Object key) {
+        return key instanceof Integer index ? index : Integer.MAX_VALUE;
+    }
+    
+    private static final class ShapeStats {
+        
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+        
+        QueryShapeStatsDTO toDTO(String shape) {
+            long executions = count.sum();
+            double totalMs = totalNanos.sum() / 1_000_000.0;
+            return new QueryShapeStatsDTO(shape, executions, totalMs,
+                    executions > 0 ? totalMs / executions : 0, maxNanos.get() / 1_000_000.0);
+        }
+    }
+}
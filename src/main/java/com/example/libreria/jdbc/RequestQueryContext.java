@@ -0,0 +1,47 @@
+package com.example.libreria.jdbc;
+
+// Sentencias SQL ejecutadas por el request HTTP en curso. Vive en un ThreadLocal porque
+// JDBC se usa en el mismo hilo que atiende el request (también con hilos virtuales).
+public final class RequestQueryContext {
+    
+    private static final ThreadLocal<RequestQueryContext> CURRENT = new ThreadLocal<>();
+    
+    private final String request;
+    private int statements;
+    private long elapsedNanos;
+    
+    private RequestQueryContext(String request) {
+        this.request = request;
+    }
+    
+    static RequestQueryContext begin(String request) {
+        RequestQueryContext context = new RequestQueryContext(request);
+        CURRENT.set(context);
+        return context;
+    }
+    
+    static RequestQueryContext current() {
+        return CURRENT.get();
+    }
+    
+    static void end() {
+        CURRENT.remove();
+    }
+    
+    void record(long nanos) {
+        statements++;
+        elapsedNanos += nanos;
+    }
+    
+    String getRequest() {
+        return request;
+    }
+    
+    int getStatements() {
+        return statements;
+    }
+    
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
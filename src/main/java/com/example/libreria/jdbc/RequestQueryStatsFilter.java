@@ -0,0 +1,62 @@
+package com.example.libreria.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Cuenta las sentencias SQL de cada request y avisa cuando pasa los umbrales (típicamente un N+1)
+@Slf4j
+public class RequestQueryStatsFilter extends OncePerRequestFilter {
+    
+    private final MeterRegistry meterRegistry;
+    private final int statementThreshold;
+    private final long timeThresholdNanos;
+    private final Map<String, DistributionSummary> statementsByUri = new ConcurrentHashMap<>();
+    
+    public RequestQueryStatsFilter(MeterRegistry meterRegistry, int statementThreshold, long timeThresholdMs) {
+        this.meterRegistry = meterRegistry;
+        this.statementThreshold = statementThreshold;
+        this.timeThresholdNanos = TimeUnit.MILLISECONDS.toNanos(timeThresholdMs);
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestQueryContext context = RequestQueryContext.begin(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestQueryContext.end();
+            record(request, context);
+        }
+    }
+    
+    private void record(HttpServletRequest request, RequestQueryContext context) {
+        // La plantilla (/api/books/{externalId}) y no la URI real, para no crear una serie por id
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        statementsByUri.computeIfAbsent(request.getMethod() + " " + uri, key -> DistributionSummary
+                        .builder("libreria.http.request.statements")
+                        .description("Sentencias SQL ejecutadas por request")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .register(meterRegistry))
+                .record(context.getStatements());
+        
+        if (context.getStatements() > statementThreshold || context.getElapsedNanos() > timeThresholdNanos) {
+            log.warn("{} executed {} SQL statements in {} ms", context.getRequest(), context.getStatements(),
+                    TimeUnit.NANOSECONDS.toMillis(context.getElapsedNanos()));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.libreria.jdbc;
+
+import com.example.libreria.dto.QueryShapeStatsDTO;
+import com.example.libreria.dto.SlowQueryDTO;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/sqlqueries?limit=20&sort=total|count|average|max y DELETE para reiniciar
+@Endpoint(id = "sqlqueries")
+public class SqlQueriesEndpoint {
+    
+    private final QueryStatistics queryStatistics;
+    
+    public SqlQueriesEndpoint(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+    
+    @ReadOperation
+    public Map<String, Object> queries(@Nullable Integer limit, @Nullable String sort) {
+        List<QueryShapeStatsDTO> top = queryStatistics.getTopShapes(limit != null ? limit : 20, sort);
+        List<SlowQueryDTO> slow = queryStatistics.getSlowQueries();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("top", top);
+        result.put("slow", slow);
+        return result;
+    }
+    
+    @DeleteOperation
+    public void reset() {
+        queryStatistics.reset();
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.dto.JournalEntryDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Journal append-only de eventos de reservas e inventario.
+// Cada segmento es un archivo de líneas JSON llamado por la primera secuencia que contiene,
+// así una lectura desde una secuencia dada salta directamente al segmento correcto.
+// Un único hilo escritor agrupa las entradas pendientes y hace un solo fsync por lote (group commit).
+// Los lectores no toman locks: leen cada segmento solo hasta el último byte publicado por el escritor,
+// así nunca ven una línea a medio escribir.
+@Slf4j
+public class EventJournal implements AutoCloseable {
+    
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final byte NEWLINE = '\n';
+    
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final int maxBatchSize;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    
+    private final BlockingQueue<PendingEntry> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    
+    private FileChannel currentChannel;
+    private Segment currentSegment;
+    private long currentSegmentSize;
+    private volatile long lastSequence;
+    private volatile boolean running;
+    private Thread writerThread;
+    
+    public EventJournal(Path directory, long segmentSizeBytes, int maxBatchSize, boolean fsync, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.maxBatchSize = maxBatchSize;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper.copy()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+    
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(this::isSegment).toList()) {
+                segments.put(parseFirstSequence(path), new Segment(path, Files.size(path)));
+            }
+        }
+        
+        if (segments.isEmpty()) {
+            lastSequence = 0;
+            openSegment(1);
+        } else {
+            Map.Entry<Long, Segment> last = segments.lastEntry();
+            currentSegment = last.getValue();
+            lastSequence = recoverSegment(currentSegment.path, last.getKey() - 1);
+            currentChannel = FileChannel.open(currentSegment.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            currentSegmentSize = currentChannel.size();
+            currentSegment.publishedBytes = currentSegmentSize;
+        }
+        
+        running = true;
+        writerThread = new Thread(this::writeLoop, "event-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Event journal opened at {} ({} segments, last sequence {})", directory, segments.size(), lastSequence);
+    }
+    
+    // Encola la entrada; el futuro se completa con la secuencia asignada una vez que está en disco
+    public CompletableFuture<Long> append(JournalEntryDTO entry) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("El journal no está abierto"));
+        }
+        PendingEntry pending = new PendingEntry(entry, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.future;
+    }
+    
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    
+    // Lee como máximo limit entradas a partir de fromSequence (inclusive)
+    public List<JournalEntryDTO> read(long fromSequence, int limit) {
+        List<JournalEntryDTO> result = new ArrayList<>(Math.min(limit, 1024));
+        scan(fromSequence, entry -> {
+            if (result.size() < limit) {
+                result.add(entry);
+            }
+        }, limit);
+        return result;
+    }
+    
+    // Recorre secuencialmente todas las entradas desde fromSequence
+    public void replay(long fromSequence, Consumer<JournalEntryDTO> consumer) {
+        scan(fromSequence, consumer, Long.MAX_VALUE);
+    }
+    
+    private void scan(long fromSequence, Consumer<JournalEntryDTO> consumer, long limit) {
+        long upTo = lastSequence;
+        Long startKey = segments.floorKey(Math.max(fromSequence, 1));
+        if (startKey == null) {
+            startKey = segments.isEmpty() ? null : segments.firstKey();
+        }
+        if (startKey == null) {
+            return;
+        }
+        
+        long delivered = 0;
+        for (Segment segment : segments.tailMap(startKey, true).values()) {
+            // Leído después de upTo: cubre todas las entradas hasta upTo. Lo que sigue puede estar a medio escribir
+            long published = segment.publishedBytes;
+            long offset = 0;
+            try (BufferedReader reader = Files.newBufferedReader(segment.path, StandardCharsets.UTF_8)) {
+                String line;
+                while (offset < published && (line = reader.readLine()) != null) {
+                    offset += line.isEmpty() ? 1 : line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    if (line.isEmpty() || offset > published) {
+                        continue;
+                    }
+                    JournalEntryDTO entry = objectMapper.readValue(line, JournalEntryDTO.class);
+                    if (entry.getSequence() > upTo) {
+                        return;
+                    }
+                    if (entry.getSequence() >= fromSequence) {
+                        consumer.accept(entry);
+                        if (++delivered >= limit) {
+                            return;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al leer el segmento del journal " + segment.path, e);
+            }
+        }
+    }
+    
+    private void writeLoop() {
+        List<PendingEntry> batch = new ArrayList<>(maxBatchSize);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch, buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Error writing event journal batch of {} entries: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(p -> p.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+                buffer.reset();
+            }
+        }
+    }
+    
+    // Si el lote falla a mitad, las entradas que ya llegaron a disco (antes de una rotación) quedan confirmadas
+    // y lastSequence avanza hasta ellas: el próximo lote no puede repetir sus secuencias
+    private void writeBatch(List<PendingEntry> batch, ByteArrayOutputStream buffer) throws IOException {
+        long sequence = lastSequence;
+        int flushed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEntry pending = batch.get(i);
+            sequence++;
+            pending.entry.setSequence(sequence);
+            if (pending.entry.getTimestamp() == null) {
+                pending.entry.setTimestamp(LocalDateTime.now());
+            }
+            objectMapper.writeValue(buffer, pending.entry);
+            buffer.write(NEWLINE);
+            
+            // Se rota al superar el tamaño de segmento, siempre en límite de entrada
+            if (currentSegmentSize + buffer.size() >= segmentSizeBytes) {
+                flush(buffer, sequence);
+                flushed = complete(batch, flushed, i + 1);
+                openSegment(sequence + 1);
+            }
+        }
+        flush(buffer, sequence);
+        complete(batch, flushed, batch.size());
+    }
+    
+    private int complete(List<PendingEntry> batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            batch.get(i).future.complete(batch.get(i).entry.getSequence());
+        }
+        return to;
+    }
+    
+    // Escribe el buffer (líneas completas) y publica el nuevo tamaño y la última secuencia.
+    // Si la escritura falla, el segmento vuelve al último tamaño publicado: no quedan bytes sueltos
+    // delante del próximo lote
+    private void flush(ByteArrayOutputStream buffer, long sequence) throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                currentChannel.write(bytes);
+            }
+            if (fsync) {
+                currentChannel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                currentChannel.truncate(currentSegmentSize);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+            throw e;
+        }
+        currentSegmentSize += buffer.size();
+        currentSegment.publishedBytes = currentSegmentSize;
+        lastSequence = sequence;
+        buffer.reset();
+    }
+    
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        // Se abre el nuevo antes de cerrar el actual: si falla, el escritor sigue en el segmento anterior
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (currentChannel != null) {
+            currentChannel.close();
+        }
+        currentChannel = channel;
+        currentSegmentSize = channel.size();
+        currentSegment = new Segment(path, currentSegmentSize);
+        segments.put(firstSequence, currentSegment);
+    }
+    
+    // Busca la última secuencia del segmento y descarta una línea final incompleta (escritura cortada)
+    private long recoverSegment(Path segment, long previousSequence) throws IOException {
+        long last = previousSequence;
+        long validBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    validBytes += 1;
+                    continue;
+                }
+                try {
+                    last = objectMapper.readValue(line, JournalEntryDTO.class).getSequence();
+                    validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                } catch (IOException e) {
+                    log.warn("Truncating corrupted tail of journal segment {} at byte {}", segment, validBytes);
+                    break;
+                }
+            }
+        }
+        if (validBytes < Files.size(segment)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        return last;
+    }
+    
+    private boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+    
+    private long parseFirstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (currentChannel != null) {
+            currentChannel.close();
+        }
+        log.info("Event journal closed at sequence {}", lastSequence);
+    }
+    
+    private record PendingEntry(JournalEntryDTO entry, CompletableFuture<Long> future) {
+    }
+    
+    private static final class Segment {
+        private final Path path;
+        // Bytes con líneas completas; lo escribe solo el hilo escritor
+        private volatile long publishedBytes;
+        
+        Segment(Path path, long publishedBytes) {
+            this.path = path;
+            this.publishedBytes = publishedBytes;
+        }
+    }
+}
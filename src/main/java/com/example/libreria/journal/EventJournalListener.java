@@ -0,0 +1,57 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.dto.JournalEntryDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.event.ReservationChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Escribe en el journal solo lo que efectivamente se confirmó en la base de datos
+@Component
+@RequiredArgsConstructor
+public class EventJournalListener {
+    
+    private final EventJournal eventJournal;
+    
+    @Value("${journal.enabled:true}")
+    private boolean enabled;
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookStockChanged(BookStockChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        JournalEntryDTO entry = new JournalEntryDTO();
+        entry.setType(JournalEntryDTO.EntryType.BOOK_STOCK_CHANGED);
+        entry.setReason(event.getReason().name());
+        entry.setBookExternalId(event.getExternalId());
+        entry.setStockQuantity(event.getStockQuantity());
+        entry.setAvailableQuantity(event.getAvailableQuantity());
+        entry.setBookVersion(event.getVersion());
+        eventJournal.append(entry);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        JournalEntryDTO entry = new JournalEntryDTO();
+        entry.setType(event.getType() == ReservationChangedEvent.Type.CREATED
+                ? JournalEntryDTO.EntryType.RESERVATION_CREATED
+                : JournalEntryDTO.EntryType.RESERVATION_RETURNED);
+        entry.setTimestamp(event.getOccurredAt());
+        entry.setReservationId(event.getReservationId());
+        entry.setUserId(event.getUserId());
+        entry.setBookExternalId(event.getBookExternalId());
+        entry.setStartDate(event.getStartDate());
+        entry.setExpectedReturnDate(event.getExpectedReturnDate());
+        entry.setActualReturnDate(event.getActualReturnDate());
+        entry.setTotalFee(event.getTotalFee());
+        entry.setLateFee(event.getLateFee());
+        entry.setStatus(event.getStatus());
+        eventJournal.append(entry);
+    }
+}
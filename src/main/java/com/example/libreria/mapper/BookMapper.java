@@ -0,0 +1,30 @@
+package com.example.libreria.mapper;
+
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.model.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+
+@Mapper(config = MappingConfig.class)
+public interface BookMapper {
+    
+    BookResponseDTO toDTO(Book book);
+    
+    BookAvailabilityDTO toAvailabilityDTO(Book book);
+    
+    // El stock no viene de la API externa: lo define el servicio
+    @Mapping(target = "externalId", source = "id")
+    @Mapping(target = "stockQuantity", ignore = true)
+    @Mapping(target = "availableQuantity", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toEntity(ExternalBookDTO externalBook);
+    
+    @Mapping(target = "externalId", ignore = true)
+    @Mapping(target = "stockQuantity", ignore = true)
+    @Mapping(target = "availableQuantity", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateFromExternal(ExternalBookDTO externalBook, @MappingTarget Book book);
+}
@@ -0,0 +1,14 @@
+package com.example.libreria.mapper;
+
+import org.mapstruct.MapperConfig;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+// Configuración común de los mappers generados por MapStruct: beans de Spring y
+// error de compilación si algún campo del destino queda sin mapear
+@MapperConfig(
+        componentModel = MappingConstants.ComponentModel.SPRING,
+        unmappedTargetPolicy = ReportingPolicy.ERROR
+)
+public interface MappingConfig {
+}
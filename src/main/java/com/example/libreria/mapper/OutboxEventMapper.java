@@ -0,0 +1,13 @@
+package com.example.libreria.mapper;
+
+import com.example.libreria.dto.ChangeEventDTO;
+import com.example.libreria.model.OutboxEvent;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MappingConfig.class)
+public interface OutboxEventMapper {
+    
+    @Mapping(target = "offset", source = "id")
+    ChangeEventDTO toDTO(OutboxEvent event);
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.mapper;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.ReservationArchive;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MappingConfig.class)
+public interface ReservationMapper {
+    
+    // Solo lee id/nombre del usuario y id externo/título del libro
+    @Mapping(target = "userId", source = "user.id")
+    @Mapping(target = "userName", source = "user.name")
+    @Mapping(target = "bookExternalId", source = "book.externalId")
+    @Mapping(target = "bookTitle", source = "book.title")
+    ReservationResponseDTO toDTO(Reservation reservation);
+    
+    ReservationResponseDTO toDTO(ReservationArchive archive);
+}
@@ -0,0 +1,24 @@
+package com.example.libreria.mapper;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.User;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+
+@Mapper(config = MappingConfig.class)
+public interface UserMapper {
+    
+    UserResponseDTO toDTO(User user);
+    
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "reservations", ignore = true)
+    User toEntity(UserRequestDTO requestDTO);
+    
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "reservations", ignore = true)
+    void updateEntity(UserRequestDTO requestDTO, @MappingTarget User user);
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.mapper;
+
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.model.WaitlistEntry;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MappingConfig.class)
+public interface WaitlistEntryMapper {
+    
+    // La posición sale de la cola en memoria, no de la entidad
+    @Mapping(target = "userId", source = "user.id")
+    @Mapping(target = "bookExternalId", source = "book.externalId")
+    @Mapping(target = "position", ignore = true)
+    WaitlistEntryDTO toDTO(WaitlistEntry entry);
+}
@@ -0,0 +1,85 @@
+package com.example.libreria.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Métricas de negocio. Los contadores se registran una sola vez al arrancar, así
+// incrementar desde los caminos calientes no busca ni crea meters en el registry.
+@Component
+public class LibreriaMetrics {
+    
+    public enum RejectionReason {
+        // No había copias disponibles al validar la reserva
+        STOCK_OUT,
+        // La validación vio copias pero al descontar ya no quedaban (reserva concurrente)
+        STOCK_CONFLICT,
+        // Devolución de una reserva que ya no está activa
+        ALREADY_RETURNED
+    }
+    
+    private final DistributionSummary syncBatchSize;
+    private final Counter syncCreated;
+    private final Counter syncUpdated;
+    private final Map<RejectionReason, Counter> reservationRejections = new EnumMap<>(RejectionReason.class);
+    private final Counter optimisticLockConflicts;
+    private final Counter optimisticLockRetries;
+    private final Counter optimisticLockExhausted;
+    
+    public LibreriaMetrics(MeterRegistry registry) {
+        this.syncBatchSize = DistributionSummary.builder("libreria.sync.batch.size")
+                .description("Libros recibidos de la API externa por sincronización")
+                .baseUnit("books")
+                .register(registry);
+        this.syncCreated = Counter.builder("libreria.sync.books")
+                .description("Libros creados o actualizados por la sincronización")
+                .tag("result", "created")
+                .register(registry);
+        this.syncUpdated = Counter.builder("libreria.sync.books")
+                .description("Libros creados o actualizados por la sincronización")
+                .tag("result", "updated")
+                .register(registry);
+        for (RejectionReason reason : RejectionReason.values()) {
+            reservationRejections.put(reason, Counter.builder("libreria.reservations.rejected")
+                    .description("Reservas o devoluciones rechazadas")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.optimisticLockConflicts = Counter.builder("libreria.optimistic.lock.conflicts")
+                .description("Commits rechazados porque otra transacción cambió la versión del libro o la reserva")
+                .register(registry);
+        this.optimisticLockRetries = Counter.builder("libreria.optimistic.lock.retries")
+                .description("Reintentos de operaciones después de un conflicto de versión")
+                .register(registry);
+        this.optimisticLockExhausted = Counter.builder("libreria.optimistic.lock.exhausted")
+                .description("Operaciones que agotaron los reintentos por conflictos de versión")
+                .register(registry);
+    }
+    
+    public void recordSync(int batchSize, int created, int updated) {
+        syncBatchSize.record(batchSize);
+        syncCreated.increment(created);
+        syncUpdated.increment(updated);
+    }
+    
+    public void reservationRejected(RejectionReason reason) {
+        reservationRejections.get(reason).increment();
+    }
+    
+    public void optimisticLockConflict() {
+        optimisticLockConflicts.increment();
+    }
+    
+    public void optimisticLockRetry() {
+        optimisticLockRetries.increment();
+    }
+    
+    public void optimisticLockRetriesExhausted() {
+        optimisticLockExhausted.increment();
+    }
+}
@@ -1,19 +1,28 @@
 package com.example.libreria.model;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
 @Table(name = "books")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Book {
+public class Book implements Persistable<Long> {
     
     @Id
     @Column(name = "external_id", unique = true)
@@ -23,7 +32,9 @@ public class Book {
     private String title;
     
     @ElementCollection
-    @CollectionTable(name = "book_authors", joinColumns = @JoinColumn(name = "book_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books.authors")
+    @CollectionTable(name = "book_authors", joinColumns = @JoinColumn(name = "book_id"),
+            indexes = @Index(name = "idx_book_authors_book_id", columnList = "book_id"))
     @Column(name = "author_name")
     private List<String> authorName;
     
@@ -45,5 +56,35 @@ public class Book {
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Bloqueo optimista: dos cambios de stock concurrentes no se pisan, el segundo falla y se reintenta
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
+    // El id es el de la API externa (asignado), así que Spring Data no puede deducir si el libro es nuevo:
+    // sin esto save() hace merge, con un SELECT previo por libro, en vez de un INSERT que entra en el batch
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+    
+    @Override
+    public Long getId() {
+        return externalId;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
 }
 
@@ -0,0 +1,37 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Entrada de la caché de segundo nivel que cambió en un nodo y los demás tienen que descartar.
+// cacheRole es el nombre de la entidad o el rol de la colección (p. ej. com.example.libreria.model.Book.authorName)
+@Entity
+@Table(name = "cache_invalidations", indexes = {
+        @Index(name = "idx_cache_invalidations_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidation {
+    
+    // Las filas se insertan por JDBC al confirmar (CacheInvalidationRecorder), el ID ordena la lectura
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "node_id", nullable = false, length = 200)
+    private String nodeId;
+    
+    @Column(name = "cache_role", nullable = false)
+    private String cacheRole;
+    
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,54 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Acumulado de un día para un libro. Las filas las escribe AnalyticsRollupService por JDBC
+// (suma en el lugar) y las reescribe AnalyticsBackfillJob; la entidad solo fija el esquema
+@Entity
+@Table(name = "daily_book_stats")
+@IdClass(DailyBookStats.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBookStats {
+    
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+    
+    @Id
+    @Column(name = "book_external_id")
+    private Long bookExternalId;
+    
+    @Column(nullable = false)
+    private Long reservations;
+    
+    // Suma de totalFee de las reservas creadas ese día
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue;
+    
+    @Column(nullable = false)
+    private Long returns;
+    
+    @Column(name = "late_returns", nullable = false)
+    private Long lateReturns;
+    
+    @Column(name = "late_fees", nullable = false, precision = 14, scale = 2)
+    private BigDecimal lateFees;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        
+        private LocalDate statDate;
+        private Long bookExternalId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Lease de una tarea que debe correr en un solo nodo a la vez (sincronización, archivo).
+// Lo tiene el nodo holder hasta expiresAt; vencido, cualquier otro nodo puede tomarlo
+@Entity
+@Table(name = "node_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NodeLease {
+    
+    @Id
+    @Column(length = 100)
+    private String name;
+    
+    @Column(nullable = false, length = 200)
+    private String holder;
+    
+    @Column(name = "acquired_at", nullable = false)
+    private LocalDateTime acquiredAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
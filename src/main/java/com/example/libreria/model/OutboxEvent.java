@@ -0,0 +1,48 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    
+    // El ID es el offset del feed de cambios: se mantiene IDENTITY para que sea denso y ordenado
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "aggregate_type", nullable = false, length = 20)
+    private AggregateType aggregateType;
+    
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+    
+    @Column(name = "event_type", nullable = false, length = 40)
+    private String eventType;
+    
+    @Column(nullable = false, length = 4000)
+    private String payload;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum AggregateType {
+        BOOK, RESERVATION, WAITLIST
+    }
+}
@@ -4,20 +4,27 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+@Table(name = "reservations", indexes = {
+        @Index(name = "idx_reservations_status_return_date", columnList = "status, actual_return_date"),
+        @Index(name = "idx_reservations_user_id", columnList = "user_id"),
+        @Index(name = "idx_reservations_book_external_id", columnList = "book_external_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Reservation {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con optimizador pooled: un viaje a la base cada 50 ids y los INSERT pueden ir en batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservations_seq")
+    @SequenceGenerator(name = "reservations_seq", sequenceName = "reservations_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -53,9 +60,20 @@ public class Reservation {
     @Column(nullable = false)
     private ReservationStatus status = ReservationStatus.ACTIVE;
     
+    // Si la reserva ya se llevó su copia de availableQuantity: al devolverla o borrarla se libera según esto y no
+    // según la fecha de inicio. Una reserva futura la toma cuando la conciliación corre el día que empieza
+    @Column(name = "copy_taken", nullable = false)
+    @ColumnDefault("false")
+    private boolean copyTaken;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
+    // Bloqueo optimista: una devolución concurrente con otra falla en vez de cerrar la reserva dos veces
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,69 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reservations_archive", indexes = {
+        @Index(name = "idx_reservations_archive_start_date", columnList = "start_date"),
+        @Index(name = "idx_reservations_archive_user", columnList = "user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationArchive {
+    
+    // Se conserva el mismo ID que tenía la reserva en la tabla principal
+    @Id
+    private Long id;
+    
+    // Sin FKs: el usuario o el libro pueden dejar de existir, el historial se mantiene
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "user_name")
+    private String userName;
+    
+    @Column(name = "book_external_id", nullable = false)
+    private Long bookExternalId;
+    
+    @Column(name = "book_title")
+    private String bookTitle;
+    
+    @Column(name = "rental_days", nullable = false)
+    private Integer rentalDays;
+    
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+    
+    @Column(name = "expected_return_date", nullable = false)
+    private LocalDate expectedReturnDate;
+    
+    @Column(name = "actual_return_date")
+    private LocalDate actualReturnDate;
+    
+    @Column(name = "daily_rate", nullable = false, precision = 10, scale = 2)
+    private BigDecimal dailyRate;
+    
+    @Column(name = "total_fee", precision = 10, scale = 2)
+    private BigDecimal totalFee;
+    
+    @Column(name = "late_fee", precision = 10, scale = 2)
+    private BigDecimal lateFee;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Reservation.ReservationStatus status;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
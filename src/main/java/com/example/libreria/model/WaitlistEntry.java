@@ -0,0 +1,65 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Lugar en la lista de espera de un libro sin copias. Al liberarse una copia, la primera entrada WAITING
+// del libro pasa a HELD: la copia queda apartada hasta holdExpiresAt para que el usuario confirme la reserva
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+        @Index(name = "idx_waitlist_entries_book_status", columnList = "book_external_id, status"),
+        @Index(name = "idx_waitlist_entries_user_id", columnList = "user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+    
+    // El ID ordena la cola (FIFO por llegada)
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_external_id", nullable = false)
+    private Book book;
+    
+    @Column(name = "rental_days", nullable = false)
+    private Integer rentalDays;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.WAITING;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+    
+    // Reserva creada al confirmar el hold
+    @Column(name = "reservation_id")
+    private Long reservationId;
+    
+    // Una confirmación y el vencimiento del mismo hold no pueden ganar los dos
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum Status {
+        WAITING, HELD, CONFIRMED, EXPIRED, CANCELLED
+    }
+}
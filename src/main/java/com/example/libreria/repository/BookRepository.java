@@ -1,16 +1,48 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     
-    Optional<Book> findByExternalId(Long externalId);
+    // externalId es la clave primaria: findById resuelve desde la caché de segundo nivel sin consultar la base,
+    // mientras que la consulta derivada findByExternalId siempre iría a la base
+    default Optional<Book> findByExternalId(Long externalId) {
+        return findById(externalId);
+    }
+    
+    // GET /api/books: la caché de consultas guarda los ids y los libros salen de la región books
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Book> findAll();
     
     boolean existsByExternalId(Long externalId);
+    
+    // Ajustes de stock en lote: reservados = stock - disponibles, y la versión para el UPDATE condicional
+    @Query("SELECT b.externalId AS externalId, b.stockQuantity AS stockQuantity, " +
+           "b.stockQuantity - b.availableQuantity AS reserved, b.version AS version " +
+           "FROM Book b WHERE b.externalId IN :externalIds")
+    List<StockLevel> findStockLevels(@Param("externalIds") Collection<Long> externalIds);
+    
+    // Para la sincronización: trae los autores en la misma consulta, así actualizarlos no dispara un SELECT por libro
+    @Query("SELECT DISTINCT b FROM Book b LEFT JOIN FETCH b.authorName WHERE b.externalId IN :externalIds")
+    List<Book> findAllWithAuthorsByExternalIdIn(@Param("externalIds") Collection<Long> externalIds);
+    
+    interface StockLevel {
+        Long getExternalId();
+        Integer getStockQuantity();
+        Integer getReserved();
+        Long getVersion();
+    }
 }
-
@@ -0,0 +1,25 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.CacheInvalidation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidation, Long> {
+    
+    List<CacheInvalidation> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM CacheInvalidation c")
+    Long findMaxId();
+    
+    @Modifying
+    @Query("DELETE FROM CacheInvalidation c WHERE c.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,37 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.NodeLease;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface NodeLeaseRepository extends JpaRepository<NodeLease, String> {
+    
+    // Toma el lease si ya es de este nodo o si venció; la condición va en el UPDATE para que dos nodos
+    // no puedan ganarlo a la vez
+    @Modifying
+    @Query("UPDATE NodeLease l SET l.holder = :holder, l.acquiredAt = :now, l.expiresAt = :expiresAt " +
+            "WHERE l.name = :name AND (l.holder = :holder OR l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("holder") String holder,
+                @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    // Primera vez que se pide el lease: si otro nodo inserta antes, falla por clave duplicada
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "node_leases"))
+    @Query(value = "INSERT INTO node_leases (name, holder, acquired_at, expires_at) " +
+            "VALUES (:name, :holder, :now, :expiresAt)", nativeQuery = true)
+    int insert(@Param("name") String name, @Param("holder") String holder,
+               @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying
+    @Query("UPDATE NodeLease l SET l.expiresAt = :expiresAt WHERE l.name = :name AND l.holder = :holder")
+    int renew(@Param("name") String name, @Param("holder") String holder, @Param("expiresAt") LocalDateTime expiresAt);
+}
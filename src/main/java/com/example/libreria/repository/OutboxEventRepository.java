@@ -0,0 +1,29 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    List<OutboxEvent> findByIdGreaterThanOrderByIdAsc(Long offset, Pageable pageable);
+    
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM OutboxEvent e")
+    Long findMaxId();
+    
+    @Query("SELECT e.id FROM OutboxEvent e WHERE e.createdAt < :before ORDER BY e.id")
+    List<Long> findIdsCreatedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
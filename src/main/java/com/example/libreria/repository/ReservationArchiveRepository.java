@@ -0,0 +1,39 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.ReservationArchive;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReservationArchiveRepository extends JpaRepository<ReservationArchive, Long> {
+    
+    List<ReservationArchive> findByStartDateBetweenOrderByStartDate(LocalDate from, LocalDate to);
+    
+    List<ReservationArchive> findByUserIdAndStartDateBetweenOrderByStartDate(Long userId, LocalDate from, LocalDate to);
+    
+    // Copia las reservas cerradas a la tabla de archivo en una sola sentencia.
+    // Sin declarar la tabla afectada, Hibernate vacía toda la caché de segundo nivel ante un UPDATE nativo
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "reservations_archive"))
+    @Query(value = "INSERT INTO reservations_archive (id, user_id, user_name, book_external_id, book_title, " +
+            "rental_days, start_date, expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, " +
+            "status, created_at, archived_at) " +
+            "SELECT r.id, r.user_id, u.name, r.book_external_id, b.title, r.rental_days, r.start_date, " +
+            "r.expected_return_date, r.actual_return_date, r.daily_rate, r.total_fee, r.late_fee, r.status, " +
+            "r.created_at, CURRENT_TIMESTAMP " +
+            "FROM reservations r " +
+            "JOIN users u ON u.id = r.user_id " +
+            "JOIN books b ON b.external_id = r.book_external_id " +
+            "WHERE r.id IN (:ids)", nativeQuery = true)
+    int copyFromReservations(@Param("ids") Collection<Long> ids);
+}
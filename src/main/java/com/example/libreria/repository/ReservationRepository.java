@@ -2,11 +2,17 @@ package com.example.libreria.repository;
 
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.model.Reservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,5 +25,61 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     List<Reservation> findOverdueReservations();
 
     // TODO: Implementar los métodos de la reserva
-}
 
+    // IDs de reservas cerradas (RETURNED / OVERDUE) devueltas y empezadas antes de la fecha de corte.
+    // Una reserva futura cancelada tiene la devolución antes del inicio: se archiva recién cuando el inicio
+    // también pasó el corte, así /history (que filtra por start_date) la sigue encontrando en la tabla principal
+    @Query("SELECT r.id FROM Reservation r WHERE r.status <> 'ACTIVE' AND r.actualReturnDate < :cutoff " +
+            "AND r.startDate < :cutoff ORDER BY r.id")
+    List<Long> findClosedIdsReturnedBefore(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+            "WHERE r.startDate BETWEEN :from AND :to ORDER BY r.startDate")
+    List<Reservation> findByStartDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+            "WHERE r.user.id = :userId AND r.startDate BETWEEN :from AND :to ORDER BY r.startDate")
+    List<Reservation> findByUserIdAndStartDateBetween(@Param("userId") Long userId,
+                                                      @Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Reservation r WHERE r.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Libro de cada reserva activa de estos usuarios y si ya tomó su copia, con las filas bloqueadas: una devolución
+    // en paralelo espera y después no encuentra la reserva, así la copia no se devuelve dos veces
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r.book.externalId AS bookExternalId, r.copyTaken AS copyTaken FROM Reservation r " +
+            "WHERE r.user.id IN :userIds AND r.status = 'ACTIVE'")
+    List<ActiveBooking> findActiveBookingsForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.user.id IN :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    // Calendario de disponibilidad: reservas activas que todavía ocupan algún día desde la fecha dada
+    @Query("SELECT r.book.externalId AS bookExternalId, r.book.stockQuantity AS stockQuantity, " +
+            "r.startDate AS startDate, r.expectedReturnDate AS expectedReturnDate " +
+            "FROM Reservation r WHERE r.status = 'ACTIVE' AND r.expectedReturnDate > :day")
+    List<BookedInterval> findActiveIntervalsEndingAfter(@Param("day") LocalDate day);
+
+    @Query("SELECT r.book.externalId AS bookExternalId, r.book.stockQuantity AS stockQuantity, " +
+            "r.startDate AS startDate, r.expectedReturnDate AS expectedReturnDate " +
+            "FROM Reservation r WHERE r.book.externalId = :bookExternalId AND r.status = 'ACTIVE' " +
+            "AND r.expectedReturnDate > :day")
+    List<BookedInterval> findActiveIntervalsByBookEndingAfter(@Param("bookExternalId") Long bookExternalId,
+                                                             @Param("day") LocalDate day);
+
+    interface ActiveBooking {
+        Long getBookExternalId();
+        Boolean getCopyTaken();
+    }
+
+    interface BookedInterval {
+        Long getBookExternalId();
+        Integer getStockQuantity();
+        LocalDate getStartDate();
+        LocalDate getExpectedReturnDate();
+    }
+}
@@ -1,9 +1,21 @@
 package com.example.libreria.repository;
 
+import com.example.libreria.dto.UserResponseDTO;
 import com.example.libreria.model.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +23,43 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByEmail(String email);
     
+    // Se consulta en cada alta y modificación de usuario; la tabla users cambia poco
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByEmail(String email);
+    
+    // Directorio por keyset (id > afterId): proyección directa al DTO, sin entidades ni reservas
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new com.example.libreria.dto.UserResponseDTO(u.id, u.name, u.email, u.phoneNumber, u.createdAt) " +
+           "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserResponseDTO> findDirectoryPage(@Param("afterId") long afterId, Pageable pageable);
+    
+    // prefix llega en minúsculas, con % al final y los comodines del usuario escapados con \
+    @Query("SELECT new com.example.libreria.dto.UserResponseDTO(u.id, u.name, u.email, u.phoneNumber, u.createdAt) " +
+           "FROM User u WHERE u.id > :afterId " +
+           "AND (LOWER(u.name) LIKE :prefix ESCAPE '\\' OR LOWER(u.email) LIKE :prefix ESCAPE '\\') " +
+           "ORDER BY u.id")
+    List<UserResponseDTO> searchDirectoryPage(@Param("afterId") long afterId, @Param("prefix") String prefix, Pageable pageable);
+    
+    // Cuáles de estos emails ya están dados de alta (importación por lotes)
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+    
+    // Bloquea las filas de los usuarios a borrar: un alta de reserva en paralelo (que referencia al usuario)
+    // espera a que termine el borrado y falla por la clave foránea
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u.email AS email, u.id AS id FROM User u WHERE u.id IN :ids")
+    List<EmailId> findEmailIdsForUpdate(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Solo las dos columnas para armar el índice de emails en memoria
+    @Query("SELECT u.email AS email, u.id AS id FROM User u")
+    List<EmailId> findAllEmailIds();
+    
+    interface EmailId {
+        String getEmail();
+        Long getId();
+    }
 }
-
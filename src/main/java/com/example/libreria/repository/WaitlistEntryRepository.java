@@ -0,0 +1,51 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    
+    // Carga de las colas en memoria, en orden de llegada
+    @Query("SELECT w.id AS id, w.book.externalId AS bookExternalId FROM WaitlistEntry w " +
+            "WHERE w.status = 'WAITING' ORDER BY w.id")
+    List<QueuedEntry> findAllWaiting();
+    
+    @Query("SELECT w.id AS id, w.book.externalId AS bookExternalId FROM WaitlistEntry w " +
+            "WHERE w.user.id IN :userIds AND w.status = 'WAITING'")
+    List<QueuedEntry> findWaitingByUserIds(@Param("userIds") Collection<Long> userIds);
+    
+    // Holds pendientes para programar su vencimiento al arrancar
+    @Query("SELECT w.id AS id, w.holdExpiresAt AS holdExpiresAt FROM WaitlistEntry w WHERE w.status = 'HELD'")
+    List<PendingHold> findAllHeld();
+    
+    @Query("SELECT COUNT(w) > 0 FROM WaitlistEntry w WHERE w.user.id = :userId AND w.book.externalId = :bookExternalId " +
+            "AND w.status IN ('WAITING', 'HELD')")
+    boolean existsOpenEntry(@Param("userId") Long userId, @Param("bookExternalId") Long bookExternalId);
+    
+    // Libro de cada hold de estos usuarios: al darlos de baja la copia pasa al siguiente de la cola
+    @Query("SELECT w.book.externalId FROM WaitlistEntry w WHERE w.user.id IN :userIds AND w.status = 'HELD'")
+    List<Long> findHeldBookIdsByUserIds(@Param("userIds") Collection<Long> userIds);
+    
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.user.id IN :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Long> userIds);
+    
+    interface QueuedEntry {
+        Long getId();
+        Long getBookExternalId();
+    }
+    
+    interface PendingHold {
+        Long getId();
+        LocalDateTime getHoldExpiresAt();
+    }
+}
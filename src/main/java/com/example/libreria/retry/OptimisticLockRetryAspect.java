@@ -0,0 +1,97 @@
+package com.example.libreria.retry;
+
+import com.example.libreria.metrics.LibreriaMetrics;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Reintenta los métodos @RetryOnConflict cuando otra transacción modificó la misma fila.
+// Tiene que quedar por fuera de @Transactional: el conflicto aparece en el flush del commit,
+// y cada intento necesita su propia transacción para releer el estado actual.
+@Aspect
+@Slf4j
+public class OptimisticLockRetryAspect implements Ordered {
+    
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final LibreriaMetrics metrics;
+    
+    public OptimisticLockRetryAspect(int maxAttempts, long initialBackoffMs, long maxBackoffMs, LibreriaMetrics metrics) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts debe ser al menos 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = Math.max(1, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+        this.metrics = metrics;
+    }
+    
+    @Around("@annotation(com.example.libreria.retry.RetryOnConflict)")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Llamado desde otra transacción (p. ej. decreaseAvailableQuantity dentro de createReservation):
+        // el conflicto saldría en el commit de la externa, que es la que tiene que reintentar
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        
+        long backoffMs = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                metrics.optimisticLockConflict();
+                if (attempt >= maxAttempts) {
+                    metrics.optimisticLockRetriesExhausted();
+                    log.warn("Optimistic lock conflict in {} after {} attempts, giving up",
+                            joinPoint.getSignature().toShortString(), attempt);
+                    throw e;
+                }
+                metrics.optimisticLockRetry();
+                log.debug("Optimistic lock conflict in {} (attempt {}), retrying",
+                        joinPoint.getSignature().toShortString(), attempt);
+                // Espera exponencial con jitter: los que chocaron no vuelven a chocar en el mismo instante
+                if (!sleep(ThreadLocalRandom.current().nextLong(backoffMs / 2, backoffMs + 1))) {
+                    throw e;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+    }
+    
+    @Override
+    public int getOrder() {
+        // Antes que el interceptor de transacciones y que @Timed (ambos con la menor precedencia)
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+    
+    // createReservation envuelve sus excepciones, así que el conflicto puede venir como causa
+    private static boolean isConflict(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof OptimisticLockingFailureException || current instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
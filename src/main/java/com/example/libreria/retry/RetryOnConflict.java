@@ -0,0 +1,13 @@
+package com.example.libreria.retry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Métodos @Transactional que modifican entidades con @Version: si el commit falla por un conflicto
+// de versión se vuelven a ejecutar enteros, en una transacción nueva (ver OptimisticLockRetryAspect)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
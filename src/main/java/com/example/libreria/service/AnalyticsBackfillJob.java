@@ -0,0 +1,68 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.LeaseService;
+import com.example.libreria.dto.AnalyticsBackfillReportDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsBackfillJob {
+    
+    private static final String BACKFILL_LEASE = "analytics-backfill";
+    
+    private final AnalyticsBackfillService analyticsBackfillService;
+    private final LeaseService leaseService;
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Primer arranque con la tabla de acumulados vacía (recién migrada): se carga toda la historia, incluido hoy
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        boolean empty = jdbcTemplate.queryForList("SELECT stat_date FROM " + AnalyticsRollupService.BOOK_TABLE
+                + " FETCH FIRST 1 ROWS ONLY", LocalDate.class).isEmpty();
+        if (empty) {
+            runUnderLease(LocalDate.now().plusDays(1));
+        }
+    }
+    
+    // Desactivado por defecto ("-"): los acumulados se mantienen solos; el recálculo es para reparar
+    @Scheduled(cron = "${analytics.backfill.cron:-}")
+    public void runScheduled() {
+        backfill();
+    }
+    
+    // Recalcula los días anteriores a hoy. Vacío si otra réplica ya está recalculando
+    public Optional<AnalyticsBackfillReportDTO> backfill() {
+        return runUnderLease(LocalDate.now());
+    }
+    
+    // También con la lease del archivado: mientras se recalcula ninguna réplica mueve reservas entre las tablas
+    private Optional<AnalyticsBackfillReportDTO> runUnderLease(LocalDate before) {
+        if (!leaseService.tryAcquire(BACKFILL_LEASE)) {
+            log.info("Analytics backfill is already running on another node, skipping");
+            return Optional.empty();
+        }
+        try {
+            if (!leaseService.tryAcquire(ReservationArchiveJob.ARCHIVE_LEASE)) {
+                log.info("Reservation archive is running, skipping analytics backfill");
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(analyticsBackfillService.backfill(before));
+            } finally {
+                leaseService.release(ReservationArchiveJob.ARCHIVE_LEASE);
+            }
+        } finally {
+            leaseService.release(BACKFILL_LEASE);
+        }
+    }
+}
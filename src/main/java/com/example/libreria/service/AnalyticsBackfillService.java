@@ -0,0 +1,180 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.AnalyticsBackfillReportDTO;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Recalcula los acumulados diarios desde reservations y reservations_archive. Las dos tablas y los acumulados
+// actuales se leen en streaming (sin entidades) dentro de una sola transacción de solo lectura REPEATABLE READ,
+// como el export: todo sale de la misma foto, aunque el archivado mueva filas entre las tablas mientras tanto.
+// Solo se tocan los días anteriores a before y lo que se escribe es la diferencia entre lo recalculado y lo que
+// tenían los acumulados en esa foto (AnalyticsRollupService.applyBackfill): lo que las reservas y devoluciones
+// suman después de la foto no está en ninguno de los dos y se conserva. Nada se persiste hasta el final
+@Service
+@Timed("libreria.service")
+@Slf4j
+public class AnalyticsBackfillService {
+    
+    private static final String[] SOURCES = {"reservations", "reservations_archive"};
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final AnalyticsRollupService analyticsRollupService;
+    
+    @Value("${analytics.backfill.fetch-size:1000}")
+    private int fetchSize;
+    
+    @Value("${analytics.backfill.batch-size:1000}")
+    private int batchSize;
+    
+    public AnalyticsBackfillService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    AnalyticsRollupService analyticsRollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.analyticsRollupService = analyticsRollupService;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+    
+    public AnalyticsBackfillReportDTO backfill(LocalDate before) {
+        long started = System.nanoTime();
+        Rollup rebuilt = new Rollup();
+        Rollup current = new Rollup();
+        snapshotTemplate.executeWithoutResult(status -> {
+            for (String source : SOURCES) {
+                scan(rebuilt, source, before);
+            }
+            readCurrent(current.byBook, AnalyticsRollupService.BOOK_TABLE, "book_external_id", before);
+            readCurrent(current.byUser, AnalyticsRollupService.USER_TABLE, "user_id", before);
+        });
+        Map<AnalyticsRollupService.RollupKey, AnalyticsRollupService.Delta> bookDeltas = deltas(rebuilt.byBook, current.byBook);
+        Map<AnalyticsRollupService.RollupKey, AnalyticsRollupService.Delta> userDeltas = deltas(rebuilt.byUser, current.byUser);
+        analyticsRollupService.applyBackfill(before, bookDeltas, userDeltas, batchSize);
+        
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Backfilled analytics rollups before {} from {} reservations ({} book rows, {} user rows, {} corrected) in {} ms",
+                before, rebuilt.scanned, rebuilt.byBook.size(), rebuilt.byUser.size(), bookDeltas.size() + userDeltas.size(),
+                elapsedMs);
+        return new AnalyticsBackfillReportDTO(before, rebuilt.scanned, rebuilt.byBook.size(), rebuilt.byUser.size(), elapsedMs);
+    }
+    
+    // Cada reserva suma en el día de su creación y, si se devolvió, en el de su devolución
+    private void scan(Rollup rollup, String source, LocalDate before) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT user_id, book_external_id, created_at, "
+                    + "total_fee, actual_return_date, late_fee FROM " + source);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            long userId = resultSet.getLong("user_id");
+            long bookExternalId = resultSet.getLong("book_external_id");
+            rollup.scanned++;
+            LocalDate created = resultSet.getTimestamp("created_at").toLocalDateTime().toLocalDate();
+            if (created.isBefore(before)) {
+                BigDecimal totalFee = orZero(resultSet.getBigDecimal("total_fee"));
+                rollup.add(created, bookExternalId, userId, totals -> totals.addReservation(totalFee));
+            }
+            Date returned = resultSet.getDate("actual_return_date");
+            if (returned != null && returned.toLocalDate().isBefore(before)) {
+                BigDecimal lateFee = orZero(resultSet.getBigDecimal("late_fee"));
+                rollup.add(returned.toLocalDate(), bookExternalId, userId, totals -> totals.addReturn(lateFee));
+            }
+        });
+    }
+    
+    private void readCurrent(Map<AnalyticsRollupService.RollupKey, Totals> rows, String table, String keyColumn,
+                             LocalDate before) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT stat_date, " + keyColumn + ", reservations, "
+                    + "revenue, returns, late_returns, late_fees FROM " + table + " WHERE stat_date < ?");
+            statement.setObject(1, before);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            Totals totals = new Totals();
+            totals.reservations = resultSet.getLong("reservations");
+            totals.revenue = resultSet.getBigDecimal("revenue");
+            totals.returns = resultSet.getLong("returns");
+            totals.lateReturns = resultSet.getLong("late_returns");
+            totals.lateFees = resultSet.getBigDecimal("late_fees");
+            rows.put(new AnalyticsRollupService.RollupKey(resultSet.getDate("stat_date").toLocalDate(),
+                    resultSet.getLong(keyColumn)), totals);
+        });
+    }
+    
+    // Recalculado menos actual, solo las filas que cambian
+    private static Map<AnalyticsRollupService.RollupKey, AnalyticsRollupService.Delta> deltas(
+            Map<AnalyticsRollupService.RollupKey, Totals> rebuilt, Map<AnalyticsRollupService.RollupKey, Totals> current) {
+        Map<AnalyticsRollupService.RollupKey, AnalyticsRollupService.Delta> deltas = new HashMap<>();
+        Totals none = new Totals();
+        rebuilt.forEach((key, totals) -> addDelta(deltas, key, totals, current.getOrDefault(key, none)));
+        current.forEach((key, totals) -> {
+            if (!rebuilt.containsKey(key)) {
+                addDelta(deltas, key, none, totals);
+            }
+        });
+        return deltas;
+    }
+    
+    private static void addDelta(Map<AnalyticsRollupService.RollupKey, AnalyticsRollupService.Delta> deltas,
+                                 AnalyticsRollupService.RollupKey key, Totals target, Totals current) {
+        AnalyticsRollupService.Delta delta = new AnalyticsRollupService.Delta(target.reservations - current.reservations,
+                target.revenue.subtract(current.revenue), target.returns - current.returns,
+                target.lateReturns - current.lateReturns, target.lateFees.subtract(current.lateFees));
+        if (!delta.isZero()) {
+            deltas.put(key, delta);
+        }
+    }
+    
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    
+    private static final class Totals {
+        
+        private long reservations;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long returns;
+        private long lateReturns;
+        private BigDecimal lateFees = BigDecimal.ZERO;
+        
+        void addReservation(BigDecimal totalFee) {
+            reservations++;
+            revenue = revenue.add(totalFee);
+        }
+        
+        void addReturn(BigDecimal lateFee) {
+            returns++;
+            if (lateFee.signum() > 0) {
+                lateReturns++;
+            }
+            lateFees = lateFees.add(lateFee);
+        }
+    }
+    
+    private static final class Rollup {
+        
+        private final Map<AnalyticsRollupService.RollupKey, Totals> byBook = new HashMap<>();
+        private final Map<AnalyticsRollupService.RollupKey, Totals> byUser = new HashMap<>();
+        private long scanned;
+        
+        void add(LocalDate day, long bookExternalId, long userId, Consumer<Totals> change) {
+            change.accept(byBook.computeIfAbsent(new AnalyticsRollupService.RollupKey(day, bookExternalId), key -> new Totals()));
+            change.accept(byUser.computeIfAbsent(new AnalyticsRollupService.RollupKey(day, userId), key -> new Totals()));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.libreria.service;
+
+import com.example.libreria.event.ReservationChangedEvent;
+import com.example.libreria.retry.RetryOnConflict;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Mantiene daily_book_stats y daily_user_stats al crear y devolver reservas. Como el outbox, escucha dentro
+// de la transacción que publicó el evento: el acumulado se confirma (o se descarta) junto con la reserva.
+// Cada cambio es un UPDATE que suma en el lugar, sin leer la fila, y el INSERT solo la primera vez del día
+@Service
+@RequiredArgsConstructor
+public class AnalyticsRollupService {
+    
+    static final String BOOK_TABLE = "daily_book_stats";
+    static final String USER_TABLE = "daily_user_stats";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @EventListener
+    @Transactional
+    public void onReservationChanged(ReservationChangedEvent event) {
+        Delta delta;
+        LocalDate day;
+        if (event.getType() == ReservationChangedEvent.Type.CREATED) {
+            day = event.getOccurredAt().toLocalDate();
+            delta = new Delta(1, orZero(event.getTotalFee()), 0, 0, BigDecimal.ZERO);
+        } else {
+            day = event.getActualReturnDate();
+            BigDecimal lateFee = orZero(event.getLateFee());
+            delta = new Delta(0, BigDecimal.ZERO, 1, lateFee.signum() > 0 ? 1 : 0, lateFee);
+        }
+        // Siempre libro y después usuario: dos reservas simultáneas bloquean las filas en el mismo orden
+        add(BOOK_TABLE, "book_external_id", day, event.getBookExternalId(), delta);
+        add(USER_TABLE, "user_id", day, event.getUserId(), delta);
+    }
+    
+    // Correcciones del recálculo (AnalyticsBackfillService): se suman como cualquier otro cambio, así que no pisan
+    // lo que las reservas hayan sumado después de la foto del recálculo. Las filas que quedan a cero se borran
+    @RetryOnConflict
+    @Transactional
+    public void applyBackfill(LocalDate before, Map<RollupKey, Delta> byBook, Map<RollupKey, Delta> byUser, int batchSize) {
+        addAll(BOOK_TABLE, "book_external_id", byBook, batchSize);
+        addAll(USER_TABLE, "user_id", byUser, batchSize);
+        for (String table : new String[]{BOOK_TABLE, USER_TABLE}) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE stat_date < ? AND reservations = 0 AND returns = 0", before);
+        }
+    }
+    
+    private void addAll(String table, String keyColumn, Map<RollupKey, Delta> deltas, int batchSize) {
+        List<Map.Entry<RollupKey, Delta>> entries = new ArrayList<>(deltas.entrySet());
+        int[][] counts = jdbcTemplate.batchUpdate("UPDATE " + table + " SET reservations = reservations + ?, "
+                        + "revenue = revenue + ?, returns = returns + ?, late_returns = late_returns + ?, "
+                        + "late_fees = late_fees + ? WHERE stat_date = ? AND " + keyColumn + " = ?",
+                entries, batchSize, (statement, entry) -> {
+                    Delta delta = entry.getValue();
+                    statement.setLong(1, delta.reservations());
+                    statement.setBigDecimal(2, delta.revenue());
+                    statement.setLong(3, delta.returns());
+                    statement.setLong(4, delta.lateReturns());
+                    statement.setBigDecimal(5, delta.lateFees());
+                    statement.setObject(6, entry.getKey().day());
+                    statement.setLong(7, entry.getKey().id());
+                });
+        // SUCCESS_NO_INFO cuenta como aplicada: solo se insertan las que no encontraron fila
+        List<Map.Entry<RollupKey, Delta>> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    missing.add(entries.get(index));
+                }
+                index++;
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO " + table + " (stat_date, " + keyColumn + ", reservations, revenue, "
+                            + "returns, late_returns, late_fees) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    missing, batchSize, (statement, entry) -> {
+                        Delta delta = entry.getValue();
+                        statement.setObject(1, entry.getKey().day());
+                        statement.setLong(2, entry.getKey().id());
+                        statement.setLong(3, delta.reservations());
+                        statement.setBigDecimal(4, delta.revenue());
+                        statement.setLong(5, delta.returns());
+                        statement.setLong(6, delta.lateReturns());
+                        statement.setBigDecimal(7, delta.lateFees());
+                    });
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Acumulado de " + table + " creado en paralelo durante el recálculo", e);
+        }
+    }
+    
+    // Si otra transacción insertó la misma fila entre el UPDATE y el INSERT, se reintenta toda la operación
+    // (@RetryOnConflict): la segunda vez el UPDATE ya la encuentra
+    private void add(String table, String keyColumn, LocalDate day, Long key, Delta delta) {
+        int updated = jdbcTemplate.update("UPDATE " + table + " SET reservations = reservations + ?, "
+                        + "revenue = revenue + ?, returns = returns + ?, late_returns = late_returns + ?, "
+                        + "late_fees = late_fees + ? WHERE stat_date = ? AND " + keyColumn + " = ?",
+                delta.reservations(), delta.revenue(), delta.returns(), delta.lateReturns(), delta.lateFees(), day, key);
+        if (updated > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO " + table + " (stat_date, " + keyColumn + ", reservations, revenue, "
+                            + "returns, late_returns, late_fees) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    day, key, delta.reservations(), delta.revenue(), delta.returns(), delta.lateReturns(), delta.lateFees());
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Acumulado de " + table + " creado en paralelo para " + day, e);
+        }
+    }
+    
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    
+    record Delta(long reservations, BigDecimal revenue, long returns, long lateReturns, BigDecimal lateFees) {
+        
+        boolean isZero() {
+            return reservations == 0 && revenue.signum() == 0 && returns == 0 && lateReturns == 0 && lateFees.signum() == 0;
+        }
+    }
+    
+    record RollupKey(LocalDate day, long id) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.DailyRevenueDTO;
+import com.example.libreria.dto.LateFeeSummaryDTO;
+import com.example.libreria.dto.TopBookDTO;
+import com.example.libreria.dto.TopUserDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Reportes sobre los acumulados diarios (daily_book_stats, daily_user_stats): nunca se leen reservas. Un ranking
+// suma las filas de la ventana agrupadas por libro o usuario (días × libros con movimiento, no reservas) y se
+// queda con los limit mejores en un heap acotado mientras las filas llegan, sin ordenar el resto
+@Service
+@Timed("libreria.service")
+@RequiredArgsConstructor
+public class AnalyticsService {
+    
+    private static final int MAX_RANGE_DAYS = 3660;
+    
+    private static final String TOP_BOOKS_SQL = "SELECT book_external_id AS id, SUM(reservations) AS reservations, "
+            + "SUM(revenue) AS amount FROM daily_book_stats WHERE stat_date BETWEEN ? AND ? GROUP BY book_external_id";
+    
+    private static final String TOP_USERS_SQL = "SELECT user_id AS id, SUM(reservations) AS reservations, "
+            + "SUM(revenue + late_fees) AS amount FROM daily_user_stats WHERE stat_date BETWEEN ? AND ? GROUP BY user_id";
+    
+    private static final String REVENUE_SQL = "SELECT stat_date, SUM(reservations) AS reservations, "
+            + "SUM(revenue) AS revenue, SUM(late_fees) AS late_fees FROM daily_book_stats "
+            + "WHERE stat_date BETWEEN ? AND ? GROUP BY stat_date";
+    
+    private static final String LATE_FEES_SQL = "SELECT COALESCE(SUM(returns), 0) AS returns, "
+            + "COALESCE(SUM(late_returns), 0) AS late_returns, COALESCE(SUM(late_fees), 0) AS late_fees "
+            + "FROM daily_book_stats WHERE stat_date BETWEEN ? AND ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    
+    // Libros más reservados en los últimos days días (hoy incluido); empates por recaudación y por ID
+    @Transactional(readOnly = true)
+    public List<TopBookDTO> getTopBooks(int days, int limit) {
+        LocalDate today = LocalDate.now();
+        return top(TOP_BOOKS_SQL, window(days), today, limit, Comparator.comparingLong(Ranked::reservations)
+                .thenComparing(Ranked::amount)).stream()
+                .map(ranked -> new TopBookDTO(ranked.id(), bookRepository.findByExternalId(ranked.id())
+                        .map(Book::getTitle).orElse(null), ranked.reservations(), ranked.amount()))
+                .toList();
+    }
+    
+    // Usuarios que más gastaron (tarifas más recargos) en los últimos days días; empates por reservas y por ID
+    @Transactional(readOnly = true)
+    public List<TopUserDTO> getTopUsers(int days, int limit) {
+        LocalDate today = LocalDate.now();
+        return top(TOP_USERS_SQL, window(days), today, limit, Comparator.comparing(Ranked::amount)
+                .thenComparingLong(Ranked::reservations)).stream()
+                .map(ranked -> new TopUserDTO(ranked.id(), userRepository.findById(ranked.id())
+                        .map(User::getName).orElse(null), ranked.reservations(), ranked.amount()))
+                .toList();
+    }
+    
+    // Un elemento por día del rango, en orden; los días sin movimiento van en cero
+    @Transactional(readOnly = true)
+    public List<DailyRevenueDTO> getRevenueByDay(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<LocalDate, DailyRevenueDTO> byDay = new HashMap<>();
+        jdbcTemplate.query(REVENUE_SQL, resultSet -> {
+            LocalDate day = resultSet.getDate("stat_date").toLocalDate();
+            BigDecimal revenue = resultSet.getBigDecimal("revenue");
+            BigDecimal lateFees = resultSet.getBigDecimal("late_fees");
+            byDay.put(day, new DailyRevenueDTO(day, resultSet.getLong("reservations"), revenue, lateFees,
+                    revenue.add(lateFees)));
+        }, from, to);
+        List<DailyRevenueDTO> result = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DailyRevenueDTO row = byDay.get(day);
+            result.add(row != null ? row : new DailyRevenueDTO(day, 0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+        }
+        return result;
+    }
+    
+    @Transactional(readOnly = true)
+    public LateFeeSummaryDTO getLateFees(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return jdbcTemplate.queryForObject(LATE_FEES_SQL, (resultSet, rowNum) -> new LateFeeSummaryDTO(from, to,
+                resultSet.getLong("returns"), resultSet.getLong("late_returns"), resultSet.getBigDecimal("late_fees")),
+                from, to);
+    }
+    
+    // Heap de mínimos con a lo sumo limit elementos: cada fila nueva desplaza a la peor si la supera
+    private List<Ranked> top(String sql, LocalDate from, LocalDate to, int limit, Comparator<Ranked> byScore) {
+        Comparator<Ranked> order = byScore.thenComparing(Ranked::id, Comparator.reverseOrder());
+        PriorityQueue<Ranked> top = new PriorityQueue<>(limit + 1, order);
+        jdbcTemplate.query(sql, resultSet -> {
+            top.add(new Ranked(resultSet.getLong("id"), resultSet.getLong("reservations"), resultSet.getBigDecimal("amount")));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }, from, to);
+        List<Ranked> result = new ArrayList<>(top);
+        result.sort(order.reversed());
+        return result;
+    }
+    
+    private static LocalDate window(int days) {
+        if (days <= 0 || days > MAX_RANGE_DAYS) {
+            throw new RuntimeException("La cantidad de días debe estar entre 1 y " + MAX_RANGE_DAYS);
+        }
+        return LocalDate.now().minusDays(days - 1L);
+    }
+    
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new RuntimeException("El rango puede abarcar hasta " + MAX_RANGE_DAYS + " días");
+        }
+    }
+    
+    private record Ranked(long id, long reservations, BigDecimal amount) {
+    }
+}
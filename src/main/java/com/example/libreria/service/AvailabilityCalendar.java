@@ -0,0 +1,408 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Calendario de ocupación por libro, en memoria: para cada día desde hoy, cuántas reservas ACTIVE lo cubren
+// ([startDate, expectedReturnDate)) y un BitSet con los días en que ya no queda ninguna copia del stock.
+// "¿Se puede reservar desde A por N días?" es un nextSetBit sobre el rango y "primera fecha disponible" salta
+// de bloque ocupado en bloque ocupado con nextClearBit: ninguna consulta va a la base ni recorre reservas.
+// Se arma desde la base al arrancar (o al primer uso de cada libro) y se actualiza al reservar, devolver y cambiar
+// el stock. Es de cada nodo, así que no alcanza para decidir una reserva: cada calendario recuerda la versión del
+// libro que refleja, y reservar bloquea la fila del libro y sube su versión. Si la versión en la base es otra
+// (reservó otro nodo, cambió el stock) el calendario de ese libro se vuelve a leer antes de decidir
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AvailabilityCalendar {
+    
+    private final ReservationRepository reservationRepository;
+    private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final CacheInvalidationRecorder cacheInvalidationRecorder;
+    
+    private final Map<Long, BookCalendar> calendars = new ConcurrentHashMap<>();
+    
+    // Hasta cuántos días adelante puede terminar una reserva: acota el tamaño de cada calendario
+    @Value("${availability.calendar.horizon-days:730}")
+    private int horizonDays;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long today = LocalDate.now().toEpochDay();
+        List<ReservationRepository.BookedInterval> intervals = reservationRepository.findActiveIntervalsEndingAfter(LocalDate.now());
+        calendars.clear();
+        for (ReservationRepository.BookedInterval interval : intervals) {
+            calendars.computeIfAbsent(interval.getBookExternalId(), key -> new BookCalendar(interval.getStockQuantity(), today))
+                    .add(interval.getStartDate().toEpochDay(), interval.getExpectedReturnDate().toEpochDay());
+        }
+        log.info("Built availability calendar with {} active reservations for {} books", intervals.size(), calendars.size());
+    }
+    
+    // Reserva los días [start, end) si ninguno está completo y devuelve false si no hay lugar. El lugar se toma
+    // en el momento, así dos reservas en paralelo no ven el mismo hueco, y se suelta si la transacción se deshace.
+    // Tiene que llamarse dentro de la transacción y antes de modificar el libro (se relee de la base)
+    public boolean tryBook(Long bookExternalId, LocalDate start, LocalDate end) {
+        checkHorizon(end);
+        Booking booking = lock(bookExternalId);
+        if (!booking.calendar().tryAdd(start.toEpochDay(), end.toEpochDay())) {
+            return false;
+        }
+        booking.onCompletion(start.toEpochDay(), end.toEpochDay(), false);
+        return true;
+    }
+    
+    // Hold de la lista de espera: la copia ya está tomada, pero reservas futuras pueden haber completado días
+    // del alquiler. Reserva desde start los días libres seguidos, hasta maxDays, y devuelve cuántos tomó
+    // (0 si start ya está completo). Mismas condiciones que tryBook
+    public int bookFreeDays(Long bookExternalId, LocalDate start, int maxDays) {
+        checkHorizon(start.plusDays(maxDays));
+        Booking booking = lock(bookExternalId);
+        int days = booking.calendar().tryAddUpTo(start.toEpochDay(), maxDays);
+        if (days > 0) {
+            booking.onCompletion(start.toEpochDay(), start.toEpochDay() + days, false);
+        }
+        return days;
+    }
+    
+    // Devolución: los días que quedaban libres vuelven al calendario cuando la transacción confirma.
+    // También bloquea el libro y sube su versión, así los otros nodos dejan de contar la reserva
+    public void release(Long bookExternalId, LocalDate start, LocalDate end) {
+        lock(bookExternalId).onCompletion(start.toEpochDay(), end.toEpochDay(), true);
+    }
+    
+    // Para cambios que no pasan por reservas (baja masiva de usuarios): el libro se vuelve a leer de la base al próximo uso
+    public void reload(Collection<Long> bookExternalIds) {
+        afterCommit(() -> bookExternalIds.forEach(calendars::remove));
+    }
+    
+    public boolean isAvailable(Long bookExternalId, LocalDate start, int days) {
+        return calendar(bookExternalId).isFree(start.toEpochDay(), start.toEpochDay() + days);
+    }
+    
+    // Primer día desde from en que se puede reservar por days días seguidos; null si el libro no tiene stock
+    public LocalDate firstAvailableDate(Long bookExternalId, LocalDate from, int days) {
+        long day = calendar(bookExternalId).firstFree(from.toEpochDay(), days);
+        return day < 0 ? null : LocalDate.ofEpochDay(day);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookStockChanged(BookStockChangedEvent event) {
+        BookCalendar calendar = calendars.get(event.getExternalId());
+        if (calendar != null && event.getStockQuantity() != null) {
+            calendar.setStock(event.getStockQuantity());
+        }
+    }
+    
+    // Bloquea la fila del libro hasta el fin de la transacción (las reservas del mismo libro, de cualquier nodo,
+    // se ordenan en la base) y lo relee, y sube su versión al confirmar. La lectura va con el bloqueo porque la
+    // caché de segundo nivel puede tener una versión vieja; por lo mismo se descarta al confirmar, acá y en los
+    // otros nodos. Si el calendario está en otra versión se recarga desde la base, ya con la fila tomada
+    private Booking lock(Long bookExternalId) {
+        Book book = entityManager.find(Book.class, bookExternalId);
+        if (book == null) {
+            throw new RuntimeException("Libro no encontrado con ID externo: " + bookExternalId);
+        }
+        entityManager.lock(book, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        entityManager.refresh(book, LockModeType.PESSIMISTIC_WRITE);
+        cacheInvalidationRecorder.recordBulk(entityManager, Book.class, List.of(bookExternalId));
+        afterCommit(() -> entityManager.getEntityManagerFactory().getCache().evict(Book.class, bookExternalId));
+        
+        long version = book.getVersion();
+        LocalDate today = LocalDate.now();
+        BookCalendar calendar = calendars.computeIfAbsent(bookExternalId, key -> new BookCalendar(0, today.toEpochDay()));
+        if (calendar.version() != version) {
+            List<ReservationRepository.BookedInterval> intervals =
+                    reservationRepository.findActiveIntervalsByBookEndingAfter(bookExternalId, today);
+            calendar.reload(version, book.getStockQuantity(), today.toEpochDay(), intervals);
+            log.debug("Reloaded availability calendar of book {} at version {}", bookExternalId, version);
+        }
+        return new Booking(book, version, calendar);
+    }
+    
+    private void checkHorizon(LocalDate end) {
+        if (end.toEpochDay() > LocalDate.now().toEpochDay() + horizonDays) {
+            throw new RuntimeException("Las reservas pueden terminar hasta " + horizonDays + " días después de hoy");
+        }
+    }
+    
+    // Carga perezosa fuera del mapa: si otro hilo cargó el mismo libro antes, gana el suyo
+    private BookCalendar calendar(Long bookExternalId) {
+        BookCalendar calendar = calendars.get(bookExternalId);
+        if (calendar != null) {
+            return calendar;
+        }
+        Book book = bookRepository.findByExternalId(bookExternalId)
+                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + bookExternalId));
+        LocalDate today = LocalDate.now();
+        BookCalendar loaded = new BookCalendar(book.getStockQuantity(), today.toEpochDay());
+        reservationRepository.findActiveIntervalsByBookEndingAfter(bookExternalId, today).forEach(interval ->
+                loaded.add(interval.getStartDate().toEpochDay(), interval.getExpectedReturnDate().toEpochDay()));
+        BookCalendar previous = calendars.putIfAbsent(bookExternalId, loaded);
+        return previous != null ? previous : loaded;
+    }
+    
+    // Fuera de una transacción el cambio se aplica en el momento
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    // Libro bloqueado en la transacción, con la versión que tenía y su calendario ya en esa versión
+    private record Booking(Book book, long version, BookCalendar calendar) {
+        
+        // Al confirmar, el calendario pasa a la versión nueva del libro (la que dejó el commit en la entidad) con
+        // [start, end) ya tomado o, si removed, quitado; al deshacerse, lo tomado se suelta. Si el calendario se
+        // recargó en el medio ya refleja la base y no se toca
+        void onCompletion(long start, long end, boolean removed) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        calendar.commit(version, book.getVersion(), removed ? start : end, end);
+                    } else if (!removed) {
+                        calendar.rollback(version, start, end);
+                    }
+                }
+            });
+        }
+    }
+    
+    // Días como epoch day. counts[i] y full cubren el día firstDay + i; lo anterior a firstDay ya pasó y no se guarda
+    // (una reserva que empezó antes solo ocupa su parte desde firstDay). Al crecer se descartan los días vencidos
+    static final class BookCalendar {
+        
+        static final long UNKNOWN_VERSION = -1;
+        
+        private final ReentrantLock lock = new ReentrantLock();
+        private final BitSet full = new BitSet();
+        private int stock;
+        private long firstDay;
+        private int[] counts = new int[0];
+        // Versión del libro que refleja; UNKNOWN_VERSION si se armó sin leerla (al arrancar o al consultar)
+        private long version = UNKNOWN_VERSION;
+        
+        BookCalendar(int stock, long firstDay) {
+            this.stock = stock;
+            this.firstDay = firstDay;
+        }
+        
+        long version() {
+            lock.lock();
+            try {
+                return version;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void reload(long version, int stock, long today, List<ReservationRepository.BookedInterval> intervals) {
+            lock.lock();
+            try {
+                this.version = version;
+                this.stock = stock;
+                firstDay = today;
+                counts = new int[0];
+                full.clear();
+                intervals.forEach(interval ->
+                        addLocked(interval.getStartDate().toEpochDay(), interval.getExpectedReturnDate().toEpochDay()));
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // Confirmó una transacción que empezó en la versión from: [removeStart, removeEnd) sale (vacío si solo tomó días)
+        void commit(long from, long to, long removeStart, long removeEnd) {
+            lock.lock();
+            try {
+                if (version == from) {
+                    removeLocked(removeStart, removeEnd);
+                    version = to;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void rollback(long from, long start, long end) {
+            lock.lock();
+            try {
+                if (version == from) {
+                    removeLocked(start, end);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        boolean tryAdd(long start, long end) {
+            lock.lock();
+            try {
+                if (!isFreeLocked(start, end)) {
+                    return false;
+                }
+                addLocked(start, end);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // Días libres seguidos desde start, hasta maxDays; los toma y devuelve cuántos son
+        int tryAddUpTo(long start, int maxDays) {
+            lock.lock();
+            try {
+                if (stock <= 0) {
+                    return 0;
+                }
+                int days = maxDays;
+                int blocked = full.nextSetBit((int) Math.max(start - firstDay, 0));
+                if (blocked >= 0) {
+                    days = (int) Math.max(Math.min(maxDays, firstDay + blocked - start), 0);
+                }
+                addLocked(start, start + days);
+                return days;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void add(long start, long end) {
+            lock.lock();
+            try {
+                addLocked(start, end);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        boolean isFree(long start, long end) {
+            lock.lock();
+            try {
+                return isFreeLocked(start, end);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // -1 si no hay stock
+        long firstFree(long from, int days) {
+            lock.lock();
+            try {
+                if (stock <= 0) {
+                    return -1;
+                }
+                long day = from;
+                while (true) {
+                    int blocked = full.nextSetBit((int) Math.max(day - firstDay, 0));
+                    if (blocked < 0 || firstDay + blocked >= day + days) {
+                        return day;
+                    }
+                    day = firstDay + full.nextClearBit(blocked);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void setStock(int stock) {
+            lock.lock();
+            try {
+                this.stock = stock;
+                refill();
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private boolean isFreeLocked(long start, long end) {
+            if (end <= start) {
+                return true;
+            }
+            if (stock <= 0) {
+                return false;
+            }
+            long from = Math.max(start, firstDay);
+            if (from >= end) {
+                return true;
+            }
+            int blocked = full.nextSetBit((int) (from - firstDay));
+            return blocked < 0 || firstDay + blocked >= end;
+        }
+        
+        private void removeLocked(long start, long end) {
+            int from = (int) (Math.max(start, firstDay) - firstDay);
+            int to = (int) Math.min(end - firstDay, counts.length);
+            for (int i = from; i < to; i++) {
+                if (counts[i] > 0 && --counts[i] < stock) {
+                    full.clear(i);
+                }
+            }
+        }
+        
+        private void addLocked(long start, long end) {
+            if (end - firstDay > counts.length) {
+                grow(end);
+            }
+            int from = (int) (Math.max(start, firstDay) - firstDay);
+            int to = (int) (end - firstDay);
+            for (int i = from; i < to; i++) {
+                if (++counts[i] >= stock) {
+                    full.set(i);
+                }
+            }
+        }
+        
+        private void grow(long end) {
+            long today = LocalDate.now().toEpochDay();
+            long newFirstDay = Math.max(firstDay, today);
+            int shift = (int) (newFirstDay - firstDay);
+            int[] grown = new int[(int) Math.max(end - newFirstDay, (counts.length - shift) * 2L)];
+            if (shift < counts.length) {
+                System.arraycopy(counts, shift, grown, 0, counts.length - shift);
+            }
+            counts = grown;
+            firstDay = newFirstDay;
+            refill();
+        }
+        
+        private void refill() {
+            full.clear();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] >= stock) {
+                    full.set(i);
+                }
+            }
+        }
+    }
+}
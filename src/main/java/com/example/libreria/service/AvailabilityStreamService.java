@@ -0,0 +1,251 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.mapper.BookMapper;
+import com.example.libreria.repository.BookRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Stream SSE de disponibilidad por libro.
+// Las conexiones son asíncronas (no retienen un hilo del servlet mientras están inactivas);
+// los envíos corren en availabilitySendExecutor, que usa hilos virtuales si están habilitados.
+// Cada conexión acumula solo el último valor por libro: si el cliente es lento, los cambios
+// intermedios se colapsan en vez de encolarse, y nunca hay más de una tarea (cambios o ping) encolada
+// o en curso por conexión. Un envío trabado más de slow-client-timeout-ms da de baja la conexión, y el
+// envío mismo falla al vencer el timeout de escritura de Tomcat (server.tomcat.connection-timeout): unos
+// pocos clientes que no leen no retienen los hilos del pool que atienden al resto.
+@Service
+@Slf4j
+public class AvailabilityStreamService {
+    
+    private final BookRepository bookRepository;
+    private final BookMapper bookMapper;
+    private final Map<Long, Set<Connection>> connectionsByBook = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AsyncTaskExecutor sendExecutor;
+    private final AsyncTaskExecutor closeExecutor;
+    
+    @Value("${availability.stream.max-connections:20000}")
+    private int maxConnections;
+    
+    @Value("${availability.stream.max-ids-per-connection:100}")
+    private int maxIdsPerConnection;
+    
+    @Value("${availability.stream.timeout-ms:3600000}")
+    private long timeoutMs;
+    
+    // Un envío que tarda más que esto indica un cliente que no lee: se cierra la conexión
+    @Value("${availability.stream.slow-client-timeout-ms:10000}")
+    private long slowClientTimeoutMs;
+    
+    public AvailabilityStreamService(BookRepository bookRepository, BookMapper bookMapper,
+                                     @Qualifier("availabilitySendExecutor") AsyncTaskExecutor sendExecutor,
+                                     @Qualifier("sseCloseExecutor") AsyncTaskExecutor closeExecutor) {
+        this.bookRepository = bookRepository;
+        this.bookMapper = bookMapper;
+        this.sendExecutor = sendExecutor;
+        this.closeExecutor = closeExecutor;
+    }
+    
+    public SseEmitter subscribe(Collection<Long> externalIds) {
+        Set<Long> ids = Set.copyOf(externalIds);
+        if (ids.isEmpty() || ids.size() > maxIdsPerConnection) {
+            throw new RuntimeException("Se debe indicar entre 1 y " + maxIdsPerConnection + " libros");
+        }
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new RuntimeException("Se alcanzó el máximo de conexiones de disponibilidad");
+        }
+        
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Connection connection = new Connection(emitter, ids);
+        emitter.onCompletion(() -> unregister(connection));
+        emitter.onTimeout(() -> unregister(connection));
+        emitter.onError(e -> unregister(connection));
+        
+        connections.add(connection);
+        ids.forEach(id -> connectionsByBook.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(connection));
+        
+        // Estado inicial: el cliente no necesita un GET previo
+        bookRepository.findAllById(ids).forEach(book -> connection.pending.put(book.getExternalId(),
+                bookMapper.toAvailabilityDTO(book)));
+        schedule(connection);
+        return emitter;
+    }
+    
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookStockChanged(BookStockChangedEvent event) {
+        Set<Connection> subscribed = connectionsByBook.get(event.getExternalId());
+        if (subscribed == null || subscribed.isEmpty()) {
+            return;
+        }
+        BookAvailabilityDTO availability = new BookAvailabilityDTO(
+                event.getExternalId(), event.getStockQuantity(), event.getAvailableQuantity());
+        for (Connection connection : subscribed) {
+            connection.pending.put(event.getExternalId(), availability);
+            schedule(connection);
+        }
+    }
+    
+    // Mantiene vivas las conexiones inactivas frente a proxies y detecta clientes caídos
+    @Scheduled(fixedDelayString = "${availability.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            connection.pingRequested = true;
+            schedule(connection);
+        }
+    }
+    
+    // Más seguido que el heartbeat. complete() esperaría el lock del emitter que retiene el envío trabado:
+    // acá solo se da de baja la conexión y el cierre corre en sseCloseExecutor
+    @Scheduled(fixedDelayString = "${availability.stream.slow-client-check-ms:1000}")
+    public void closeSlowClients() {
+        long now = System.currentTimeMillis();
+        for (Connection connection : connections) {
+            long started = connection.sendStartedAt;
+            if (started > 0 && now - started > slowClientTimeoutMs) {
+                log.debug("Closing slow availability stream client after {} ms", now - started);
+                unregister(connection);
+                closeLater(connection);
+            }
+        }
+    }
+    
+    private void schedule(Connection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            submit(connection, () -> flush(connection));
+        }
+    }
+    
+    private void submit(Connection connection, Runnable task) {
+        try {
+            sendExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            close(connection, e);
+        }
+    }
+    
+    private void flush(Connection connection) {
+        try {
+            List<BookAvailabilityDTO> changes = new ArrayList<>(connection.pending.size());
+            for (Long id : connection.pending.keySet()) {
+                BookAvailabilityDTO value = connection.pending.remove(id);
+                if (value != null) {
+                    changes.add(value);
+                }
+            }
+            if (!changes.isEmpty()) {
+                send(connection, SseEmitter.event().name("availability").data(changes));
+            } else if (connection.pingRequested) {
+                send(connection, SseEmitter.event().comment("ping"));
+            }
+            connection.pingRequested = false;
+        } finally {
+            connection.scheduled.set(false);
+        }
+        // Lo que llegó mientras se enviaba sale en el próximo envío
+        if (!connection.pending.isEmpty() && !connection.closed.get()) {
+            schedule(connection);
+        }
+    }
+    
+    private void send(Connection connection, SseEmitter.SseEventBuilder event) {
+        if (connection.closed.get()) {
+            return;
+        }
+        connection.sendStartedAt = System.currentTimeMillis();
+        try {
+            connection.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            close(connection, e);
+        } finally {
+            connection.sendStartedAt = 0;
+        }
+    }
+    
+    // Solo sin un envío en curso (el que falló, uno rechazado o al apagar): no espera ningún lock
+    private void close(Connection connection, Exception cause) {
+        unregister(connection);
+        complete(connection, cause);
+    }
+    
+    private void closeLater(Connection connection) {
+        try {
+            closeExecutor.execute(() -> complete(connection, null));
+        } catch (RejectedExecutionException e) {
+            // Apagando: Tomcat cierra la conexión
+        }
+    }
+    
+    private void complete(Connection connection, Exception cause) {
+        try {
+            if (cause != null) {
+                connection.emitter.completeWithError(cause);
+            } else {
+                connection.emitter.complete();
+            }
+        } catch (Exception ignored) {
+            // La conexión ya estaba cerrada
+        }
+    }
+    
+    private void unregister(Connection connection) {
+        if (!connection.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connections.remove(connection);
+        connectionCount.decrementAndGet();
+        for (Long id : connection.ids) {
+            connectionsByBook.computeIfPresent(id, (k, set) -> {
+                set.remove(connection);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        connection.pending.clear();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        connections.stream().collect(Collectors.toList()).forEach(c -> close(c, null));
+    }
+    
+    private static class Connection {
+        private final SseEmitter emitter;
+        private final Set<Long> ids;
+        private final Map<Long, BookAvailabilityDTO> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long sendStartedAt;
+        private volatile boolean pingRequested;
+        
+        Connection(SseEmitter emitter, Set<Long> ids) {
+            this.emitter = emitter;
+            this.ids = ids;
+        }
+    }
+}
@@ -2,53 +2,92 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.mapper.BookMapper;
+import com.example.libreria.metrics.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.retry.RetryOnConflict;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("libreria.service")
 @RequiredArgsConstructor
 @Slf4j
 public class BookService {
     
+    // Coincide con hibernate.jdbc.batch_size
+    private static final int SYNC_CHUNK_SIZE = 50;
+    
     private final BookRepository bookRepository;
     private final ExternalBookService externalBookService;
+    private final BookMapper bookMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibreriaMetrics metrics;
+    private final WaitlistQueue waitlistQueue;
     
+    @RetryOnConflict
     @Transactional
     public void syncBooksFromExternalApi() {
         log.info("Synchronizing books from external API");
         List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
+        int created = 0;
         
-        for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
+        // Por bloques: un SELECT por bloque para los existentes y los INSERT/UPDATE en batch JDBC
+        for (int from = 0; from < externalBooks.size(); from += SYNC_CHUNK_SIZE) {
+            List<ExternalBookDTO> chunk = externalBooks.subList(from, Math.min(from + SYNC_CHUNK_SIZE, externalBooks.size()));
+            List<Long> externalIds = chunk.stream().map(ExternalBookDTO::getId).toList();
+            Map<Long, Book> existingBooks = bookRepository.findAllWithAuthorsByExternalIdIn(externalIds).stream()
+                    .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
             
-            if (existingBook == null) {
-                Book newBook = convertToBook(externalBook);
-                newBook.setStockQuantity(10); // Stock inicial por defecto
-                newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
-            } else {
-                // Actualizar información del libro
-                updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
+            List<Book> books = new ArrayList<>(chunk.size());
+            List<BookStockChangedEvent.Reason> reasons = new ArrayList<>(chunk.size());
+            for (ExternalBookDTO externalBook : chunk) {
+                Book existingBook = existingBooks.get(externalBook.getId());
+                
+                if (existingBook == null) {
+                    Book newBook = bookMapper.toEntity(externalBook);
+                    newBook.setStockQuantity(10); // Stock inicial por defecto
+                    newBook.setAvailableQuantity(10);
+                    books.add(newBook);
+                    reasons.add(BookStockChangedEvent.Reason.SYNC_CREATED);
+                    created++;
+                    log.debug("Created new book: {}", newBook.getTitle());
+                } else {
+                    // Actualizar información del libro
+                    bookMapper.updateFromExternal(externalBook, existingBook);
+                    books.add(existingBook);
+                    reasons.add(BookStockChangedEvent.Reason.SYNC_UPDATED);
+                    log.debug("Updated book: {}", existingBook.getTitle());
+                }
+            }
+            bookRepository.saveAll(books);
+            // El outbox inserta con IDENTITY y eso ejecuta los INSERT pendientes: los eventos se publican
+            // después del flush para no cortar el batch de libros en lotes de a uno
+            bookRepository.flush();
+            for (int i = 0; i < books.size(); i++) {
+                publishStockChanged(books.get(i), reasons.get(i));
             }
         }
-        log.info("Synchronization completed");
+        metrics.recordSync(externalBooks.size(), created, externalBooks.size() - created);
+        log.info("Synchronization completed: {} created, {} updated", created, externalBooks.size() - created);
     }
     
     @Transactional(readOnly = true)
     public List<BookResponseDTO> getAllBooks() {
         return bookRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(bookMapper::toDTO)
                 .collect(Collectors.toList());
     }
     
@@ -56,9 +95,10 @@ public class BookService {
     public BookResponseDTO getBookByExternalId(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
                 .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        return convertToDTO(book);
+        return bookMapper.toDTO(book);
     }
     
+    @RetryOnConflict
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
         Book book = bookRepository.findByExternalId(externalId)
@@ -69,26 +109,35 @@ public class BookService {
             throw new RuntimeException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
         }
         
+        // Las copias nuevas van primero a la lista de espera del libro
+        int freed = Math.max(0, stockQuantity - reserved - book.getAvailableQuantity());
         book.setStockQuantity(stockQuantity);
-        book.setAvailableQuantity(stockQuantity - reserved);
+        book.setAvailableQuantity(stockQuantity - reserved - waitlistQueue.holdCopies(externalId, freed));
         bookRepository.save(book);
+        bookRepository.flush();
+        publishStockChanged(book, BookStockChangedEvent.Reason.STOCK_UPDATED);
         
-        return convertToDTO(book);
+        return bookMapper.toDTO(book);
     }
     
+    @RetryOnConflict
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
                 .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
         
         if (book.getAvailableQuantity() <= 0) {
+            metrics.reservationRejected(LibreriaMetrics.RejectionReason.STOCK_CONFLICT);
             throw new RuntimeException("No hay libros disponibles para reservar");
         }
         
         book.setAvailableQuantity(book.getAvailableQuantity() - 1);
         bookRepository.save(book);
+        bookRepository.flush();
+        publishStockChanged(book, BookStockChangedEvent.Reason.COPY_TAKEN);
     }
     
+    @RetryOnConflict
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
@@ -98,43 +147,39 @@ public class BookService {
             throw new RuntimeException("La cantidad disponible no puede exceder el stock");
         }
         
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
+        // Si alguien espera el libro, la copia queda apartada para él y los disponibles no cambian
+        book.setAvailableQuantity(book.getAvailableQuantity() + 1 - waitlistQueue.holdCopies(externalId, 1));
         bookRepository.save(book);
+        bookRepository.flush();
+        publishStockChanged(book, BookStockChangedEvent.Reason.COPY_RELEASED);
     }
     
-    private Book convertToBook(ExternalBookDTO dto) {
-        Book book = new Book();
-        book.setExternalId(dto.getId());
-        book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
-        book.setFirstPublishYear(dto.getFirstPublishYear());
-        book.setEditionCount(dto.getEditionCount());
-        book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
-        return book;
-    }
-    
-    private void updateBookFromExternal(Book book, ExternalBookDTO dto) {
-        book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
-        book.setFirstPublishYear(dto.getFirstPublishYear());
-        book.setEditionCount(dto.getEditionCount());
-        book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
+    // Copias de reservas que se eliminan sin pasar por returnBook (baja de usuarios).
+    // Un UPDATE por libro con el total de copias, no uno por reserva. Devuelve las copias repuestas
+    @RetryOnConflict
+    @Transactional
+    public int releaseCopies(Map<Long, Integer> copiesByExternalId) {
+        if (copiesByExternalId.isEmpty()) {
+            return 0;
+        }
+        int released = 0;
+        List<Book> books = bookRepository.findAllById(copiesByExternalId.keySet());
+        for (Book book : books) {
+            int available = Math.min(book.getStockQuantity(),
+                    book.getAvailableQuantity() + copiesByExternalId.get(book.getExternalId()));
+            int freed = available - book.getAvailableQuantity();
+            released += freed;
+            book.setAvailableQuantity(available - waitlistQueue.holdCopies(book.getExternalId(), freed));
+        }
+        bookRepository.saveAll(books);
+        bookRepository.flush();
+        books.forEach(book -> publishStockChanged(book, BookStockChangedEvent.Reason.COPY_RELEASED));
+        return released;
     }
     
-    private BookResponseDTO convertToDTO(Book book) {
-        BookResponseDTO dto = new BookResponseDTO();
-        dto.setExternalId(book.getExternalId());
-        dto.setTitle(book.getTitle());
-        dto.setAuthorName(book.getAuthorName());
-        dto.setFirstPublishYear(book.getFirstPublishYear());
-        dto.setEditionCount(book.getEditionCount());
-        dto.setHasFulltext(book.getHasFulltext());
-        dto.setPrice(book.getPrice());
-        dto.setStockQuantity(book.getStockQuantity());
-        dto.setAvailableQuantity(book.getAvailableQuantity());
-        return dto;
+    // Después del flush: la versión del libro ya es la que quedó en la fila
+    private void publishStockChanged(Book book, BookStockChangedEvent.Reason reason) {
+        eventPublisher.publishEvent(new BookStockChangedEvent(book.getExternalId(), book.getStockQuantity(),
+                book.getAvailableQuantity(), book.getVersion(), reason));
     }
 }
-
@@ -0,0 +1,99 @@
+package com.example.libreria.service;
+
+import java.util.Arrays;
+
+// Vector disperso libro -> contador con claves long primitivas: tabla de direccionamiento abierto
+// (sondeo lineal) sobre dos arreglos paralelos, sin objetos por entrada. Los IDs externos son positivos,
+// así que EMPTY marca los casilleros libres. No es thread-safe: CoReservationModel lo protege con su lock
+final class CoOccurrenceVector {
+    
+    private static final long EMPTY = Long.MIN_VALUE;
+    
+    private long[] keys;
+    private int[] counts;
+    private int size;
+    
+    CoOccurrenceVector() {
+        this(4);
+    }
+    
+    CoOccurrenceVector(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 4)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+    
+    void increment(long key) {
+        add(key, 1);
+    }
+    
+    void add(long key, int delta) {
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            counts[slot] += delta;
+            return;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size * 4 > keys.length * 3) {
+            resize();
+        }
+    }
+    
+    int get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == key ? counts[slot] : 0;
+    }
+    
+    void addAll(CoOccurrenceVector other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+    
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+    
+    // Casillero de la clave o el primero libre de su secuencia de sondeo
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, int count);
+    }
+}
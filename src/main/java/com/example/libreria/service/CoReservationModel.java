@@ -0,0 +1,275 @@
+package com.example.libreria.service;
+
+import com.example.libreria.event.ReservationChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Modelo ítem a ítem de "quienes reservaron este libro también reservaron": para cada libro, un CoOccurrenceVector
+// con cuántos lectores distintos reservaron también cada otro libro, más la cantidad de lectores de cada libro.
+// Se arma fuera de línea desde los pares (usuario, libro) de reservations y reservations_archive, repartiendo los
+// usuarios entre los núcleos, y se actualiza con cada reserva nueva. Consultar recorre solo el vector del libro
+// (acotado por el catálogo): el tiempo no depende de cuántas reservas haya. Es de cada nodo, como AvailabilityCalendar
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CoReservationModel {
+    
+    // UNION descarta los pares repetidos: un lector que reservó el mismo libro varias veces cuenta una vez
+    private static final String PAIRS_SQL = "SELECT user_id, book_external_id FROM reservations "
+            + "UNION SELECT user_id, book_external_id FROM reservations_archive ORDER BY user_id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Las reservas nuevas escriben y las consultas leen el mismo modelo; la reconstrucción arma uno aparte y lo reemplaza
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private Model model = new Model(new HashMap<>(), new HashMap<>(), new CoOccurrenceVector());
+    // Pares que llegan mientras se reconstruye: se vuelven a aplicar sobre el modelo nuevo (aplicarlos dos veces no suma)
+    private List<long[]> pendingDuringRebuild;
+    
+    // Un lector con más libros distintos no aporta pares: son cuentas institucionales o cargas masivas,
+    // y sus pares crecen con el cuadrado
+    @Value("${recommendations.max-books-per-user:200}")
+    private int maxBooksPerUser;
+    
+    @Value("${recommendations.fetch-size:1000}")
+    private int fetchSize;
+    
+    // 0: un hilo por núcleo
+    @Value("${recommendations.build-parallelism:0}")
+    private int buildParallelism;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${recommendations.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        if (!rebuildLock.tryLock()) {
+            log.info("Recommendation model rebuild already running, skipping");
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long started = System.nanoTime();
+            List<UserBooks> users = loadUsers();
+            Model built = build(users);
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild.forEach(pair -> built.add(pair[0], pair[1], maxBooksPerUser));
+                model = built;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Built recommendation model from {} readers and {} books in {} ms", users.size(),
+                    built.vectors().size(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuildLock.unlock();
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (event.getType() != ReservationChangedEvent.Type.CREATED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            model.add(event.getUserId(), event.getBookExternalId(), maxBooksPerUser);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(new long[] {event.getUserId(), event.getBookExternalId()});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Los limit libros más parecidos: coseno entre los conjuntos de lectores, co / sqrt(lectores(a) * lectores(b)),
+    // así un libro que reserva todo el mundo no aparece en todas las listas. Empates por co-reservas y por ID
+    public List<Related> related(long bookExternalId, int limit) {
+        lock.readLock().lock();
+        try {
+            CoOccurrenceVector vector = model.vectors().get(bookExternalId);
+            if (vector == null) {
+                return List.of();
+            }
+            int readers = model.readers().get(bookExternalId);
+            Comparator<Related> order = Comparator.comparingDouble(Related::score)
+                    .thenComparingInt(Related::coReservations)
+                    .thenComparing(Related::externalId, Comparator.reverseOrder());
+            PriorityQueue<Related> top = new PriorityQueue<>(limit + 1, order);
+            vector.forEach((other, count) -> {
+                // Un par que se restó al pasar un lector el tope queda en el vector con 0
+                if (count == 0) {
+                    return;
+                }
+                double score = count / Math.sqrt((double) readers * model.readers().get(other));
+                top.add(new Related(other, count, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+            List<Related> result = new ArrayList<>(top);
+            result.sort(order.reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Los pares vienen ordenados por usuario: cada corte de usuario cierra su lista de libros
+    private List<UserBooks> loadUsers() {
+        List<UserBooks> users = new ArrayList<>();
+        long[] current = {Long.MIN_VALUE};
+        List<Long> books = new ArrayList<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(PAIRS_SQL);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            long userId = resultSet.getLong("user_id");
+            if (userId != current[0] && !books.isEmpty()) {
+                users.add(UserBooks.of(current[0], books));
+                books.clear();
+            }
+            current[0] = userId;
+            books.add(resultSet.getLong("book_external_id"));
+        });
+        if (!books.isEmpty()) {
+            users.add(UserBooks.of(current[0], books));
+        }
+        return users;
+    }
+    
+    // Cada hilo acumula sus propios vectores para una parte de los usuarios y después se suman
+    private Model build(List<UserBooks> users) {
+        int parallelism = buildParallelism > 0 ? buildParallelism : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Accumulator accumulated;
+        try {
+            accumulated = pool.submit(() -> users.parallelStream()
+                    .collect(Accumulator::new, (accumulator, user) -> accumulator.add(user, maxBooksPerUser), Accumulator::merge))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Se interrumpió la reconstrucción del modelo de recomendaciones", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Falló la reconstrucción del modelo de recomendaciones", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        Map<Long, long[]> booksByUser = new HashMap<>(users.size() * 2);
+        users.forEach(user -> booksByUser.put(user.userId(), user.books()));
+        return new Model(booksByUser, accumulated.vectors, accumulated.readers);
+    }
+    
+    public record Related(long externalId, int coReservations, double score) {
+    }
+    
+    // books ordenado y sin repetidos
+    private record UserBooks(long userId, long[] books) {
+        
+        static UserBooks of(long userId, List<Long> books) {
+            long[] sorted = books.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            return new UserBooks(userId, sorted);
+        }
+    }
+    
+    private static final class Accumulator {
+        
+        private final Map<Long, CoOccurrenceVector> vectors = new HashMap<>();
+        private final CoOccurrenceVector readers = new CoOccurrenceVector();
+        
+        void add(UserBooks user, int maxBooksPerUser) {
+            long[] books = user.books();
+            for (long book : books) {
+                readers.increment(book);
+            }
+            if (books.length > maxBooksPerUser) {
+                return;
+            }
+            for (long book : books) {
+                CoOccurrenceVector vector = vectors.computeIfAbsent(book, key -> new CoOccurrenceVector());
+                for (long other : books) {
+                    if (other != book) {
+                        vector.increment(other);
+                    }
+                }
+            }
+        }
+        
+        void merge(Accumulator other) {
+            readers.addAll(other.readers);
+            other.vectors.forEach((book, vector) -> {
+                CoOccurrenceVector existing = vectors.putIfAbsent(book, vector);
+                if (existing != null) {
+                    existing.addAll(vector);
+                }
+            });
+        }
+    }
+    
+    // booksByUser guarda los libros de cada lector para saber, ante una reserva nueva, con qué libros se cruza
+    private record Model(Map<Long, long[]> booksByUser, Map<Long, CoOccurrenceVector> vectors,
+                         CoOccurrenceVector readers) {
+        
+        void add(long userId, long bookExternalId, int maxBooksPerUser) {
+            long[] books = booksByUser.getOrDefault(userId, new long[0]);
+            int position = Arrays.binarySearch(books, bookExternalId);
+            if (position >= 0) {
+                return;
+            }
+            readers.increment(bookExternalId);
+            if (books.length < maxBooksPerUser) {
+                CoOccurrenceVector vector = vectors.computeIfAbsent(bookExternalId, key -> new CoOccurrenceVector());
+                for (long other : books) {
+                    vector.increment(other);
+                    vectors.computeIfAbsent(other, key -> new CoOccurrenceVector()).increment(bookExternalId);
+                }
+            } else if (books.length == maxBooksPerUser) {
+                // Con este libro pasa el tope: como en la reconstrucción, deja de aportar también los pares que ya sumaba
+                for (long book : books) {
+                    for (long other : books) {
+                        if (other != book) {
+                            vectors.get(book).add(other, -1);
+                        }
+                    }
+                }
+            }
+            int insertAt = -position - 1;
+            long[] grown = new long[books.length + 1];
+            System.arraycopy(books, 0, grown, 0, insertAt);
+            grown[insertAt] = bookExternalId;
+            System.arraycopy(books, insertAt, grown, insertAt + 1, books.length - insertAt);
+            booksByUser.put(userId, grown);
+        }
+    }
+}
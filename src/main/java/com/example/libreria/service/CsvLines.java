@@ -0,0 +1,71 @@
+package com.example.libreria.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Lectura mínima de CSV para las cargas masivas: separador coma, campos entre comillas con "" como comilla
+// literal y un registro por línea (sin saltos de línea dentro de un campo)
+final class CsvLines {
+    
+    private CsvLines() {
+    }
+    
+    // Nombres de columna de la primera línea, en minúsculas y sin guiones bajos (phone_number -> phonenumber)
+    static List<String> readHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            throw new RuntimeException("El archivo CSV está vacío");
+        }
+        List<String> columns = split(header.replace("\uFEFF", ""));
+        if (columns == null) {
+            throw new RuntimeException("La cabecera del CSV tiene comillas sin cerrar");
+        }
+        return columns.stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT).replace("_", ""))
+                .toList();
+    }
+    
+    // null si quedó una comilla abierta
+    static List<String> split(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+    
+    // Campo recortado; null si la columna no existe, no vino o está vacía
+    static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+}
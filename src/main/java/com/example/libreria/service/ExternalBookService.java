@@ -1,6 +1,7 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.ExternalBookDTO;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
@@ -15,6 +16,7 @@ import java.util.List;
 
 @Service
 @Slf4j
+@Timed(value = "libreria.external.books", histogram = true)
 public class ExternalBookService {
     // TODO: completar llamada a la API externa (ver bien todo el proyecto...)
     
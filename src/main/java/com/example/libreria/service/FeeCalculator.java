@@ -0,0 +1,29 @@
+package com.example.libreria.service;
+
+import java.math.BigDecimal;
+
+// Tarifas de las reservas. Sin estado: lo usa ReservationService y el módulo de benchmarks lo mide sin armar el servicio
+public final class FeeCalculator {
+    
+    private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
+    
+    private FeeCalculator() {
+    }
+    
+    public static BigDecimal totalFee(BigDecimal dailyRate, Integer rentalDays) {
+        if (dailyRate == null || rentalDays == null || rentalDays <= 0) {
+            return BigDecimal.ZERO;
+        }
+        
+        return dailyRate.multiply(BigDecimal.valueOf(rentalDays));
+    }
+    
+    // 15% del precio del libro por cada día de demora
+    public static BigDecimal lateFee(BigDecimal bookPrice, long daysLate) {
+        if (bookPrice == null || daysLate <= 0) {
+            return BigDecimal.ZERO;
+        }
+        
+        return bookPrice.multiply(LATE_FEE_PERCENTAGE).multiply(BigDecimal.valueOf(daysLate));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.LeaseService;
+import com.example.libreria.dto.InventoryReconciliationReportDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryReconciliationJob {
+    
+    private static final String RECONCILIATION_LEASE = "inventory-reconciliation";
+    
+    private final InventoryReconciliationService inventoryReconciliationService;
+    private final LeaseService leaseService;
+    
+    @Value("${inventory.reconciliation.enabled:true}")
+    private boolean enabled;
+    
+    // La corrida programada puede limitarse a informar las diferencias sin corregirlas
+    @Value("${inventory.reconciliation.dry-run:false}")
+    private boolean scheduledDryRun;
+    
+    @Scheduled(cron = "${inventory.reconciliation.cron:0 15 4 * * *}")
+    public void runScheduled() {
+        if (enabled) {
+            reconcile(scheduledDryRun);
+        }
+    }
+    
+    // Las reservas futuras toman su copia el día que empiezan. No depende de enabled: no es una corrección sino
+    // parte del circuito de la reserva. Si se saltea, la conciliación completa la toma igual
+    @Scheduled(cron = "${inventory.reconciliation.start-cron:0 1 0 * * *}")
+    public void takeCopiesForStartingReservations() {
+        runUnderLease(() -> inventoryReconciliationService.reconcileStartingOn(LocalDate.now()));
+    }
+    
+    // Vacío si otra réplica (o un pedido anterior) ya está conciliando: dos corridas a la vez
+    // verían las mismas diferencias y la segunda solo sumaría conflictos de versión
+    public Optional<InventoryReconciliationReportDTO> reconcile(boolean dryRun) {
+        return runUnderLease(() -> inventoryReconciliationService.reconcile(dryRun));
+    }
+    
+    private Optional<InventoryReconciliationReportDTO> runUnderLease(Supplier<InventoryReconciliationReportDTO> run) {
+        if (!leaseService.tryAcquire(RECONCILIATION_LEASE)) {
+            log.info("Inventory reconciliation is already running on another node, skipping");
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(run.get());
+        } finally {
+            leaseService.release(RECONCILIATION_LEASE);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.dto.InventoryDriftDTO;
+import com.example.libreria.dto.InventoryReconciliationReportDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.model.Book;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Recalcula books.available_quantity como stock_quantity menos las reservas ACTIVE ya empezadas y las copias
+// apartadas para la lista de espera (entradas HELD); una reserva futura toma su copia el día que empieza, cuando
+// la corrección de su libro la marca copy_taken. Un solo conteo agrupado sobre las dos tablas, cruzado con books
+// en la base, devuelve solo los libros que no cuadran; se recorren en streaming y se corrigen en lotes de inventory.reconciliation.batch-size, cada uno en su transacción.
+// No se carga ninguna entidad: en memoria queda el lote actual y el reporte (con diferencias acotadas).
+@Service
+@Timed("libreria.service")
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryReconciliationService {
+    
+    // El primer parámetro es hoy: las reservas con start_date posterior todavía no tomaron su copia
+    private static final String DRIFT_SQL = "SELECT b.external_id, b.stock_quantity, b.available_quantity, b.version, "
+            + "COALESCE(t.active, 0) AS active, COALESCE(t.held, 0) AS held "
+            + "FROM books b LEFT JOIN ("
+            + "SELECT book_external_id, SUM(1 - is_hold) AS active, SUM(is_hold) AS held FROM ("
+            + "SELECT book_external_id, 0 AS is_hold FROM reservations WHERE status = 'ACTIVE' AND start_date <= ? "
+            + "UNION ALL SELECT book_external_id, 1 FROM waitlist_entries WHERE status = 'HELD') taken "
+            + "GROUP BY book_external_id) t ON t.book_external_id = b.external_id "
+            + "WHERE b.available_quantity <> GREATEST(b.stock_quantity - COALESCE(t.active, 0) - COALESCE(t.held, 0), 0) ";
+    
+    private static final String STARTING_ON_FILTER = "AND b.external_id IN (SELECT book_external_id FROM reservations "
+            + "WHERE status = 'ACTIVE' AND start_date = ?) ";
+    
+    private static final String ORDER_BY = "ORDER BY b.external_id";
+    
+    // Condicionado a la versión leída: una reserva o devolución posterior cambia la versión y el libro no se toca
+    private static final String UPDATE_SQL = "UPDATE books SET available_quantity = ?, version = version + 1 "
+            + "WHERE external_id = ? AND version = ?";
+    
+    // Las reservas ya empezadas de un libro corregido quedan con su copia tomada: la devolución la suma de vuelta.
+    // Sube la versión de la reserva para que una devolución en paralelo, que leyó copy_taken antes, choque y reintente
+    private static final String TAKE_COPIES_SQL = "UPDATE reservations SET copy_taken = TRUE, version = version + 1 "
+            + "WHERE book_external_id = ? AND status = 'ACTIVE' AND start_date <= ? AND copy_taken = FALSE";
+    
+    // Copias que la corrección libera y se apartan para la lista de espera (la fila ya está tomada por UPDATE_SQL)
+    private static final String HOLD_SQL = "UPDATE books SET available_quantity = available_quantity - ? WHERE external_id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final CacheInvalidationRecorder cacheInvalidationRecorder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WaitlistQueue waitlistQueue;
+    
+    @Value("${inventory.reconciliation.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${inventory.reconciliation.fetch-size:1000}")
+    private int fetchSize;
+    
+    @Value("${inventory.reconciliation.max-reported-drifts:1000}")
+    private int maxReportedDrifts;
+    
+    public InventoryReconciliationReportDTO reconcile(boolean dryRun) {
+        return reconcile(dryRun, null);
+    }
+    
+    // Solo los libros con reservas que empiezan ese día: es la corrida en la que esas reservas toman su copia
+    public InventoryReconciliationReportDTO reconcileStartingOn(LocalDate day) {
+        return reconcile(false, day);
+    }
+    
+    private InventoryReconciliationReportDTO reconcile(boolean dryRun, LocalDate startingOn) {
+        InventoryReconciliationReportDTO report = new InventoryReconciliationReportDTO();
+        report.setDryRun(dryRun);
+        List<Drift> batch = new ArrayList<>(batchSize);
+        LocalDate today = LocalDate.now();
+        
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    DRIFT_SQL + (startingOn != null ? STARTING_ON_FILTER : "") + ORDER_BY);
+            statement.setObject(1, today);
+            if (startingOn != null) {
+                statement.setObject(2, startingOn);
+            }
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            long active = resultSet.getLong("active");
+            long held = resultSet.getLong("held");
+            int stock = resultSet.getInt("stock_quantity");
+            Drift drift = new Drift(resultSet.getLong("external_id"), stock, resultSet.getInt("available_quantity"),
+                    active, held, (int) Math.max(stock - active - held, 0), resultSet.getLong("version"));
+            report.setDriftedBooks(report.getDriftedBooks() + 1);
+            if (active + held > stock) {
+                report.setOverbookedBooks(report.getOverbookedBooks() + 1);
+            }
+            if (dryRun) {
+                addDrift(report, drift, InventoryDriftDTO.Status.DETECTED);
+                return;
+            }
+            batch.add(drift);
+            if (batch.size() == batchSize) {
+                fixBatch(batch, today, report);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            fixBatch(batch, today, report);
+        }
+        
+        log.info("Inventory reconciliation{}{}: {} books drifted, {} fixed, {} changed concurrently, {} overbooked",
+                dryRun ? " (dry run)" : "", startingOn != null ? " for reservations starting on " + startingOn : "",
+                report.getDriftedBooks(), report.getFixedBooks(),
+                report.getChangedBooks(), report.getOverbookedBooks());
+        return report;
+    }
+    
+    private void fixBatch(List<Drift> batch, LocalDate today, InventoryReconciliationReportDTO report) {
+        Set<Long> fixed = transactionTemplate.execute(status -> update(batch, today));
+        for (Drift drift : batch) {
+            boolean wasFixed = fixed.contains(drift.externalId());
+            if (wasFixed) {
+                report.setFixedBooks(report.getFixedBooks() + 1);
+            } else {
+                report.setChangedBooks(report.getChangedBooks() + 1);
+            }
+            addDrift(report, drift, wasFixed ? InventoryDriftDTO.Status.FIXED : InventoryDriftDTO.Status.CHANGED);
+        }
+    }
+    
+    private Set<Long> update(List<Drift> batch, LocalDate today) {
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (statement, drift) -> {
+            statement.setInt(1, drift.expectedAvailable());
+            statement.setLong(2, drift.externalId());
+            statement.setLong(3, drift.version());
+        });
+        List<Drift> fixed = new ArrayList<>(batch.size());
+        int index = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                // SUCCESS_NO_INFO (-2) cuenta como aplicado
+                if (count != 0) {
+                    fixed.add(batch.get(index));
+                }
+                index++;
+            }
+        }
+        Set<Long> externalIds = fixed.stream().map(Drift::externalId).collect(Collectors.toSet());
+        if (externalIds.isEmpty()) {
+            return externalIds;
+        }
+        
+        jdbcTemplate.batchUpdate(TAKE_COPIES_SQL, fixed, fixed.size(), (statement, drift) -> {
+            statement.setLong(1, drift.externalId());
+            statement.setObject(2, today);
+        });
+        
+        // Igual que en StockBatchService: el UPDATE no pasa por Hibernate
+        cacheInvalidationRecorder.recordBulk(entityManager, Book.class, externalIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                externalIds.forEach(externalId -> entityManager.getEntityManagerFactory().getCache().evict(Book.class, externalId));
+            }
+        });
+        for (Drift drift : fixed) {
+            // Solo los libros que sí se corrigieron: si la versión cambió, nada se libera y no se aparta nada
+            int held = waitlistQueue.holdCopies(drift.externalId(), drift.expectedAvailable() - drift.available());
+            if (held > 0) {
+                jdbcTemplate.update(HOLD_SQL, held, drift.externalId());
+            }
+            eventPublisher.publishEvent(new BookStockChangedEvent(drift.externalId(), drift.stock(),
+                    drift.expectedAvailable() - held, drift.version() + 1, BookStockChangedEvent.Reason.RECONCILED));
+        }
+        return externalIds;
+    }
+    
+    private void addDrift(InventoryReconciliationReportDTO report, Drift drift, InventoryDriftDTO.Status status) {
+        if (report.getDrifts().size() < maxReportedDrifts) {
+            report.getDrifts().add(new InventoryDriftDTO(drift.externalId(), drift.stock(), drift.available(),
+                    drift.active(), drift.held(), drift.expectedAvailable(), status));
+        } else {
+            report.setDriftsTruncated(true);
+        }
+    }
+    
+    private record Drift(Long externalId, int stock, int available, long active, long held, int expectedAvailable,
+                         long version) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.InventorySnapshotDTO;
+import com.example.libreria.dto.JournalEntryDTO;
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.journal.EventJournal;
+import com.example.libreria.model.Reservation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Reconstruye estado a partir del journal, sin leer las tablas
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JournalReplayService {
+    
+    private static final int MAX_TAIL_LIMIT = 10_000;
+    
+    private final EventJournal eventJournal;
+    
+    public List<JournalEntryDTO> tail(long fromSequence, int limit) {
+        if (limit <= 0 || limit > MAX_TAIL_LIMIT) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_TAIL_LIMIT);
+        }
+        return eventJournal.read(fromSequence, limit);
+    }
+    
+    public long getLastSequence() {
+        return eventJournal.getLastSequence();
+    }
+    
+    public List<InventorySnapshotDTO> rebuildInventory() {
+        // Cada evento de stock lleva los valores absolutos resultantes. Las entradas se agregan después del commit,
+        // así que dos commits sobre el mismo libro pueden quedar invertidos en el journal: gana la versión más alta
+        // de la fila, no la última entrada (las entradas sin versión, anteriores a este campo, sí van por orden)
+        Map<Long, InventorySnapshotDTO> inventory = new TreeMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        eventJournal.replay(1, entry -> {
+            if (entry.getType() != JournalEntryDTO.EntryType.BOOK_STOCK_CHANGED) {
+                return;
+            }
+            Long seen = versions.get(entry.getBookExternalId());
+            if (seen != null && entry.getBookVersion() != null && entry.getBookVersion() < seen) {
+                return;
+            }
+            if (entry.getBookVersion() != null) {
+                versions.put(entry.getBookExternalId(), entry.getBookVersion());
+            }
+            inventory.put(entry.getBookExternalId(), new InventorySnapshotDTO(
+                    entry.getBookExternalId(), entry.getStockQuantity(),
+                    entry.getAvailableQuantity(), entry.getSequence()));
+        });
+        log.info("Rebuilt inventory for {} books from journal", inventory.size());
+        return new ArrayList<>(inventory.values());
+    }
+    
+    public List<UserReservationSummaryDTO> rebuildUserSummaries() {
+        Map<Long, UserReservationSummaryDTO> summaries = new TreeMap<>();
+        eventJournal.replay(1, entry -> {
+            if (entry.getType() == JournalEntryDTO.EntryType.BOOK_STOCK_CHANGED) {
+                return;
+            }
+            UserReservationSummaryDTO summary = summaries.computeIfAbsent(entry.getUserId(), id -> {
+                UserReservationSummaryDTO s = new UserReservationSummaryDTO();
+                s.setUserId(id);
+                return s;
+            });
+            if (entry.getType() == JournalEntryDTO.EntryType.RESERVATION_CREATED) {
+                summary.setTotalReservations(summary.getTotalReservations() + 1);
+                summary.setActiveReservations(summary.getActiveReservations() + 1);
+                summary.setTotalFees(summary.getTotalFees().add(nullToZero(entry.getTotalFee())));
+            } else {
+                summary.setActiveReservations(summary.getActiveReservations() - 1);
+                summary.setLateFees(summary.getLateFees().add(nullToZero(entry.getLateFee())));
+                if (entry.getStatus() == Reservation.ReservationStatus.OVERDUE) {
+                    summary.setOverdueReturns(summary.getOverdueReturns() + 1);
+                }
+            }
+        });
+        log.info("Rebuilt reservation summaries for {} users from journal", summaries.size());
+        return new ArrayList<>(summaries.values());
+    }
+    
+    private BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
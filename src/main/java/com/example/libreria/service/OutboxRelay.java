@@ -0,0 +1,219 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ChangeEventDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Publica por SSE los eventos del outbox, en lotes y en orden de offset.
+// El hilo del relay arma los lotes y los envíos corren en changeFeedSendExecutor, nunca más de uno por suscriptor:
+// cada suscriptor recibe los offsets sin huecos ni repetidos y un cliente trabado no retiene un hilo del scheduler.
+// Al suscriptor lento se lo da de baja acá y su emitter se cierra en sseCloseExecutor: complete() espera a que
+// el envío trabado suelte el lock del emitter, y ese envío falla al vencer el timeout de escritura de Tomcat.
+@Component
+@Slf4j
+public class OutboxRelay {
+    
+    private final OutboxService outboxService;
+    private final AsyncTaskExecutor sendExecutor;
+    private final AsyncTaskExecutor closeExecutor;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    
+    // Últimos eventos leídos: un suscriptor al día se sirve desde acá sin ir a la base
+    private final Deque<ChangeEventDTO> recent = new ArrayDeque<>();
+    
+    @Value("${outbox.relay.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${outbox.relay.buffer-size:5000}")
+    private int bufferSize;
+    
+    // Tiempo que se espera a que una transacción más lenta confirme un offset intermedio
+    @Value("${outbox.relay.gap-timeout-ms:5000}")
+    private long gapTimeoutMs;
+    
+    @Value("${outbox.sse.timeout-ms:1800000}")
+    private long sseTimeoutMs;
+    
+    // Un envío que tarda más que esto indica un cliente que no lee: se lo desconecta
+    @Value("${outbox.sse.slow-client-timeout-ms:10000}")
+    private long slowClientTimeoutMs;
+    
+    private Long cursor;
+    private long bufferFloor;
+    private long gapSince;
+    
+    public OutboxRelay(OutboxService outboxService, @Qualifier("changeFeedSendExecutor") AsyncTaskExecutor sendExecutor,
+                       @Qualifier("sseCloseExecutor") AsyncTaskExecutor closeExecutor) {
+        this.outboxService = outboxService;
+        this.sendExecutor = sendExecutor;
+        this.closeExecutor = closeExecutor;
+    }
+    
+    public SseEmitter subscribe(Long fromOffset) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        long start = fromOffset != null ? fromOffset : outboxService.getLatestOffset();
+        Subscriber subscriber = new Subscriber(emitter, start);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("Change feed subscriber registered from offset {}", start);
+        return emitter;
+    }
+    
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+    
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relay() {
+        if (subscribers.isEmpty()) {
+            // Sin suscriptores no se lee el outbox; el próximo que llegue vuelve a arrancar desde el último offset
+            // en vez de esperar a que un cursor viejo recorra todo lo que pasó mientras tanto
+            cursor = null;
+            recent.clear();
+            gapSince = 0;
+            return;
+        }
+        if (cursor == null) {
+            cursor = outboxService.getLatestOffset();
+            bufferFloor = cursor;
+        }
+        pollNewEvents();
+        
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.sending.get()) {
+                long started = subscriber.sendStartedAt;
+                if (started > 0 && now - started > slowClientTimeoutMs && subscribers.remove(subscriber)) {
+                    log.debug("Dropping slow change feed subscriber after {} ms", now - started);
+                    closeLater(subscriber);
+                }
+                continue;
+            }
+            if (subscriber.lastSentOffset >= cursor) {
+                continue;
+            }
+            List<ChangeEventDTO> batch = subscriber.lastSentOffset >= bufferFloor
+                    ? fromBuffer(subscriber.lastSentOffset)
+                    : outboxService.getChangesAfter(subscriber.lastSentOffset, batchSize);
+            // Un suscriptor atrasado no puede adelantarse al cursor (evita saltar huecos pendientes)
+            batch.removeIf(e -> e.getOffset() > cursor);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            subscriber.sending.set(true);
+            try {
+                sendExecutor.execute(() -> send(subscriber, batch));
+            } catch (RejectedExecutionException e) {
+                drop(subscriber, e);
+            }
+        }
+    }
+    
+    private void pollNewEvents() {
+        List<ChangeEventDTO> events = outboxService.getChangesAfter(cursor, batchSize);
+        for (ChangeEventDTO event : events) {
+            if (event.getOffset() != cursor + 1) {
+                // Hueco: otra transacción tomó ese ID y todavía no confirmó (o hizo rollback)
+                long now = System.currentTimeMillis();
+                if (gapSince == 0) {
+                    gapSince = now;
+                }
+                if (now - gapSince < gapTimeoutMs) {
+                    return;
+                }
+                log.warn("Skipping outbox offsets {}..{} after waiting {} ms", cursor + 1, event.getOffset() - 1, gapTimeoutMs);
+            }
+            gapSince = 0;
+            cursor = event.getOffset();
+            recent.addLast(event);
+            if (recent.size() > bufferSize) {
+                bufferFloor = recent.removeFirst().getOffset();
+            }
+        }
+    }
+    
+    private List<ChangeEventDTO> fromBuffer(long afterOffset) {
+        List<ChangeEventDTO> batch = new ArrayList<>(Math.min(batchSize, recent.size()));
+        for (ChangeEventDTO event : recent) {
+            if (event.getOffset() > afterOffset) {
+                batch.add(event);
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+    
+    private void send(Subscriber subscriber, List<ChangeEventDTO> batch) {
+        long lastOffset = batch.get(batch.size() - 1).getOffset();
+        subscriber.sendStartedAt = System.currentTimeMillis();
+        try {
+            subscriber.emitter.send(SseEmitter.event()
+                    .id(String.valueOf(lastOffset))
+                    .name("changes")
+                    .data(batch));
+            subscriber.lastSentOffset = lastOffset;
+        } catch (IOException | IllegalStateException e) {
+            drop(subscriber, e);
+        } finally {
+            subscriber.sendStartedAt = 0;
+            subscriber.sending.set(false);
+        }
+    }
+    
+    // Solo sin un envío en curso (falló o no llegó a salir): completeWithError no espera ningún lock
+    private void drop(Subscriber subscriber, Exception cause) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        log.debug("Dropping change feed subscriber: {}", cause.getMessage());
+        try {
+            subscriber.emitter.completeWithError(cause);
+        } catch (Exception ignored) {
+            // La conexión ya estaba cerrada
+        }
+    }
+    
+    private void closeLater(Subscriber subscriber) {
+        try {
+            closeExecutor.execute(() -> {
+                try {
+                    subscriber.emitter.complete();
+                } catch (Exception ignored) {
+                    // El envío trabado falló y ya la cerró
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Apagando: Tomcat cierra la conexión
+        }
+    }
+    
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long sendStartedAt;
+        private volatile long lastSentOffset;
+        
+        Subscriber(SseEmitter emitter, long lastSentOffset) {
+            this.emitter = emitter;
+            this.lastSentOffset = lastSentOffset;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ChangeEventDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.event.ReservationChangedEvent;
+import com.example.libreria.event.WaitlistChangedEvent;
+import com.example.libreria.mapper.OutboxEventMapper;
+import com.example.libreria.model.OutboxEvent;
+import com.example.libreria.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class OutboxService {
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final OutboxEventMapper outboxEventMapper;
+    
+    @Value("${outbox.retention-hours:72}")
+    private int retentionHours;
+    
+    @Value("${outbox.purge-batch-size:1000}")
+    private int purgeBatchSize;
+    
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper,
+                         OutboxEventMapper outboxEventMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper.copy().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.outboxEventMapper = outboxEventMapper;
+    }
+    
+    // Listener síncrono: se ejecuta dentro de la transacción que publicó el evento,
+    // así la fila del outbox se confirma (o se descarta) junto con el cambio de negocio
+    @EventListener
+    @Transactional
+    public void onBookStockChanged(BookStockChangedEvent event) {
+        save(OutboxEvent.AggregateType.BOOK, event.getExternalId(), "BOOK_" + event.getReason().name(), event);
+    }
+    
+    @EventListener
+    @Transactional
+    public void onReservationChanged(ReservationChangedEvent event) {
+        save(OutboxEvent.AggregateType.RESERVATION, event.getReservationId(), "RESERVATION_" + event.getType().name(), event);
+    }
+    
+    @EventListener
+    @Transactional
+    public void onWaitlistChanged(WaitlistChangedEvent event) {
+        save(OutboxEvent.AggregateType.WAITLIST, event.getEntryId(), "WAITLIST_" + event.getStatus().name(), event);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ChangeEventDTO> getChangesAfter(long offset, int limit) {
+        return outboxEventRepository.findByIdGreaterThanOrderByIdAsc(offset, PageRequest.of(0, limit)).stream()
+                .map(outboxEventMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+    
+    @Transactional(readOnly = true)
+    public long getLatestOffset() {
+        return outboxEventRepository.findMaxId();
+    }
+    
+    @Scheduled(cron = "${outbox.purge-cron:0 0 * * * *}")
+    @Transactional
+    public void purgeOldEvents() {
+        LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+        List<Long> ids = outboxEventRepository.findIdsCreatedBefore(before, PageRequest.of(0, purgeBatchSize));
+        if (!ids.isEmpty()) {
+            outboxEventRepository.deleteByIdIn(ids);
+            log.info("Purged {} outbox events older than {}", ids.size(), before);
+        }
+    }
+    
+    private void save(OutboxEvent.AggregateType aggregateType, Long aggregateId, String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(aggregateId);
+        event.setEventType(eventType);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error al serializar el evento para el outbox: " + e.getMessage(), e);
+        }
+        outboxEventRepository.save(event);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Objects;
+
+// "Quienes reservaron este libro también reservaron", desde CoReservationModel. Los títulos salen de la
+// caché de segundo nivel (findByExternalId resuelve por clave primaria)
+@Service
+@Timed("libreria.service")
+@RequiredArgsConstructor
+public class RecommendationService {
+    
+    private final CoReservationModel coReservationModel;
+    private final BookRepository bookRepository;
+    
+    @Transactional(readOnly = true)
+    public List<RelatedBookDTO> getRelatedBooks(Long externalId, int limit) {
+        if (bookRepository.findByExternalId(externalId).isEmpty()) {
+            throw new RuntimeException("Libro no encontrado con ID externo: " + externalId);
+        }
+        return coReservationModel.related(externalId, limit).stream()
+                .map(related -> bookRepository.findByExternalId(related.externalId())
+                        .map(book -> new RelatedBookDTO(book.getExternalId(), book.getTitle(),
+                                related.coReservations(), related.score()))
+                        .orElse(null))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.LeaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationArchiveJob {
+    
+    static final String ARCHIVE_LEASE = "reservation-archive";
+    
+    private final ReservationArchiveService reservationArchiveService;
+    private final LeaseService leaseService;
+    
+    @Value("${reservations.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${reservations.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${reservations.archive.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+    
+    @Scheduled(cron = "${reservations.archive.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        if (enabled) {
+            archiveClosedReservations();
+        }
+    }
+    
+    // Archiva en lotes, cada uno en su propia transacción, para no bloquear
+    // la tabla de reservas durante mucho tiempo. Se corta al llegar al máximo
+    // de lotes por corrida; lo que quede se mueve en la próxima ejecución.
+    // Con varias réplicas el cron dispara en todas: archiva solo la que consigue el lease.
+    public int archiveClosedReservations() {
+        if (!leaseService.tryAcquire(ARCHIVE_LEASE)) {
+            log.info("Reservation archive is already running on another node, skipping");
+            return 0;
+        }
+        try {
+            return archive();
+        } finally {
+            leaseService.release(ARCHIVE_LEASE);
+        }
+    }
+    
+    private int archive() {
+        LocalDate cutoff = reservationArchiveService.getArchiveCutoff();
+        log.info("Archiving closed reservations returned before {}", cutoff);
+        
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int archived = reservationArchiveService.archiveChunk(cutoff, batchSize);
+            total += archived;
+            if (archived < batchSize) {
+                break;
+            }
+        }
+        log.info("Archived {} reservations", total);
+        return total;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+// Export por línea de comandos, sin pasar por HTTP:
+//   java -jar libreria.jar --spring.main.web-application-type=none --reservations.export.output=reservas.lrx \
+//        --reservations.export.from=2025-01-01 --reservations.export.to=2025-12-31
+// Se escribe en un archivo temporal al lado del destino y se renombra al terminar: un export cortado
+// no deja un archivo a medias con el nombre final. Con reservations.export.exit (por defecto) la aplicación
+// termina después, antes de que arranquen los jobs de ApplicationReadyEvent
+@Component
+@ConditionalOnProperty(name = "reservations.export.output")
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationExportJob implements ApplicationRunner {
+    
+    private final ReservationExportService reservationExportService;
+    private final ConfigurableApplicationContext applicationContext;
+    
+    @Value("${reservations.export.output}")
+    private String output;
+    
+    // Fechas ISO (yyyy-MM-dd); vacío no limita
+    @Value("${reservations.export.from:}")
+    private String from;
+    
+    @Value("${reservations.export.to:}")
+    private String to;
+    
+    @Value("${reservations.export.exit:true}")
+    private boolean exitWhenDone;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path absolute = Path.of(output).toAbsolutePath();
+        Path partial = absolute.resolveSibling(absolute.getFileName() + ".part");
+        int exitCode = 0;
+        try {
+            long exported;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16)) {
+                exported = reservationExportService.export(date(from), date(to), out);
+            }
+            Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} reservations to {} ({} bytes)", exported, absolute, Files.size(absolute));
+        } catch (Exception e) {
+            Files.deleteIfExists(partial);
+            log.error("Reservation export to {} failed", absolute, e);
+            exitCode = 1;
+            if (!exitWhenDone) {
+                throw e;
+            }
+        }
+        if (exitWhenDone) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+    
+    private static LocalDate date(String value) {
+        return value.isBlank() ? null : LocalDate.parse(value);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.libreria.service;
+
+import com.example.libreria.export.ExportedReservation;
+import com.example.libreria.export.ReservationColumnarWriter;
+import com.example.libreria.model.Reservation;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Export del historial de reservas (archivo y tabla principal) en el formato de ReservationColumnarWriter.
+// Se lee con un cursor JDBC por tabla, en orden de ID, y cada fila va directo a las columnas del bloque:
+// no se arman entidades ni DTOs y la memoria queda acotada por reservations.export.block-rows sin importar
+// cuántas filas salgan. El rango filtra por start_date, como /api/reservations/history.
+// Las dos lecturas van en una transacción de solo lectura REPEATABLE READ: así el driver de PostgreSQL usa
+// un cursor del servidor (con autocommit trae todo el resultado) y una reserva archivada a mitad del export
+// no se pierde entre las dos tablas
+@Service
+@Timed("libreria.service")
+@Slf4j
+public class ReservationExportService {
+    
+    private static final String COLUMNS = "SELECT id, user_id, book_external_id, start_date, rental_days, "
+            + "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at FROM ";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    
+    // Filas por bloque: cada bloque se arma y se comprime entero en memoria (unos 100 bytes por fila)
+    @Value("${reservations.export.block-rows:65536}")
+    private int blockRows;
+    
+    @Value("${reservations.export.fetch-size:1000}")
+    private int fetchSize;
+    
+    public ReservationExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+    
+    // Extremos opcionales: null no limita. Las archivadas van primero (son las más viejas)
+    public long export(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        checkRange(from, to);
+        long started = System.nanoTime();
+        try (ReservationColumnarWriter writer = new ReservationColumnarWriter(out, blockRows)) {
+            snapshotTemplate.executeWithoutResult(status -> {
+                stream("reservations_archive", true, from, to, writer);
+                stream("reservations", false, from, to, writer);
+            });
+            writer.finish();
+            log.info("Exported {} reservations with start date between {} and {} in {} ms", writer.getWritten(),
+                    from, to, (System.nanoTime() - started) / 1_000_000);
+            return writer.getWritten();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    public void checkRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new RuntimeException("La fecha desde no puede ser posterior a la fecha hasta");
+        }
+    }
+    
+    private void stream(String table, boolean archived, LocalDate from, LocalDate to, ReservationColumnarWriter writer) {
+        StringBuilder sql = new StringBuilder(COLUMNS).append(table);
+        List<LocalDate> parameters = new ArrayList<>();
+        if (from != null) {
+            sql.append(parameters.isEmpty() ? " WHERE" : " AND").append(" start_date >= ?");
+            parameters.add(from);
+        }
+        if (to != null) {
+            sql.append(parameters.isEmpty() ? " WHERE" : " AND").append(" start_date <= ?");
+            parameters.add(to);
+        }
+        sql.append(" ORDER BY id");
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            Date actualReturnDate = resultSet.getDate("actual_return_date");
+            ExportedReservation reservation = new ExportedReservation(
+                    resultSet.getLong("id"),
+                    resultSet.getLong("user_id"),
+                    resultSet.getLong("book_external_id"),
+                    resultSet.getDate("start_date").toLocalDate(),
+                    resultSet.getInt("rental_days"),
+                    resultSet.getDate("expected_return_date").toLocalDate(),
+                    actualReturnDate != null ? actualReturnDate.toLocalDate() : null,
+                    resultSet.getBigDecimal("daily_rate"),
+                    resultSet.getBigDecimal("total_fee"),
+                    resultSet.getBigDecimal("late_fee"),
+                    Reservation.ReservationStatus.valueOf(resultSet.getString("status")),
+                    resultSet.getTimestamp("created_at").toLocalDateTime(),
+                    archived
+            );
+            try {
+                writer.write(reservation);
+            } catch (IOException e) {
+                // Cliente que cortó la descarga: se aborta la consulta
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -1,19 +1,26 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.AvailabilityWindowDTO;
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.ReservationChangedEvent;
+import com.example.libreria.mapper.ReservationMapper;
+import com.example.libreria.metrics.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
+import com.example.libreria.model.WaitlistEntry;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import com.example.libreria.retry.RetryOnConflict;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,19 +32,22 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("libreria.service")
 @RequiredArgsConstructor
 @Slf4j
 public class ReservationService {
     
-    private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
-    
     private final ReservationRepository reservationRepository;
     private final BookRepository bookRepository;
     private final BookService bookService;
     private final UserService userService;
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final ReservationMapper reservationMapper;
+    private final AvailabilityCalendar availabilityCalendar;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibreriaMetrics metrics;
     
+    @RetryOnConflict
     @Transactional
     public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
         // TODO: Implementar la creación de una reserva
@@ -59,9 +69,21 @@ public class ReservationService {
                 throw new RuntimeException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId());
             }
 
-            if(book.getAvailableQuantity()<=0){
+            // Una reserva que empieza hoy (o antes) se lleva una copia ahora; una futura solo ocupa sus días
+            // en el calendario y toma la copia el día que empieza (InventoryReconciliationJob marca copyTaken)
+            LocalDate startDate = requestDTO.getStartDate();
+            LocalDate endDate = startDate.plusDays(requestDTO.getRentalDays());
+            boolean startsNow = !startDate.isAfter(LocalDate.now());
+            if(startsNow && book.getAvailableQuantity()<=0){
+                metrics.reservationRejected(LibreriaMetrics.RejectionReason.STOCK_OUT);
                 throw new RuntimeException("No hay copias disponibles del libro con ID externo: " + requestDTO.getBookExternalId());
             }
+            if(!availabilityCalendar.tryBook(book.getExternalId(), startDate, endDate)){
+                metrics.reservationRejected(LibreriaMetrics.RejectionReason.STOCK_OUT);
+                throw new RuntimeException("No hay copias libres del libro con ID externo: " + book.getExternalId()
+                        + " entre el " + startDate + " y el " + endDate + "; primera fecha disponible: "
+                        + availabilityCalendar.firstAvailableDate(book.getExternalId(), startDate, requestDTO.getRentalDays()));
+            }
 
             Reservation reservation = new Reservation();
             reservation.setUser(userRepository.findById(userId).get());
@@ -69,29 +91,32 @@ public class ReservationService {
             reservation.setRentalDays(requestDTO.getRentalDays());
             reservation.setDailyRate(book.getPrice());
 
-            BigDecimal totalFee = calculateTotalFee(
+            BigDecimal totalFee = FeeCalculator.totalFee(
                     reservation.getDailyRate(),
                     reservation.getRentalDays()
             );
             reservation.setTotalFee(totalFee);
 
-            reservation.setStartDate(requestDTO.getStartDate());
-            reservation.setExpectedReturnDate(
-                    requestDTO.getStartDate().plusDays(requestDTO.getRentalDays())
-            );
+            reservation.setStartDate(startDate);
+            reservation.setExpectedReturnDate(endDate);
+            reservation.setCopyTaken(startsNow);
 
             // Crear la reserva
             Reservation res = reservationRepository.save(reservation);
 
             // Reducir la cantidad disponible
-            bookService.decreaseAvailableQuantity(book.getExternalId());
+            if(startsNow){
+                bookService.decreaseAvailableQuantity(book.getExternalId());
+            }
+            eventPublisher.publishEvent(ReservationChangedEvent.of(ReservationChangedEvent.Type.CREATED, res));
 
-            return modelMapper.map(res, ReservationResponseDTO.class);
+            return reservationMapper.toDTO(res);
         }catch (Exception e){
             throw new RuntimeException(e);
         }
     }
 
+    @RetryOnConflict
     @Transactional
     public ReservationResponseDTO returnBook(Long reservationId, ReturnBookRequestDTO returnRequest) {
 
@@ -99,23 +124,30 @@ public class ReservationService {
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + reservationId));
 
         if (reservation.getStatus() != Reservation.ReservationStatus.ACTIVE) {
+            metrics.reservationRejected(LibreriaMetrics.RejectionReason.ALREADY_RETURNED);
             throw new RuntimeException("La reserva ya fue devuelta");
         }
 
+        // Primero el calendario: bloquea y relee el libro, que se modifica más abajo
+        Long bookExternalId = reservation.getBook().getExternalId();
+        LocalDate expectedDate = reservation.getExpectedReturnDate();
+        if (expectedDate != null) {
+            availabilityCalendar.release(bookExternalId, reservation.getStartDate(), expectedDate);
+        }
+
         LocalDate returnDate = returnRequest.getReturnDate();
         if (returnDate == null) {
             returnDate = LocalDate.now();
         }
         reservation.setActualReturnDate(returnDate);
 
-        LocalDate expectedDate = reservation.getExpectedReturnDate();
         long daysLate = 0;
         if (expectedDate != null && returnDate.isAfter(expectedDate)) {
             daysLate = ChronoUnit.DAYS.between(expectedDate, returnDate);
         }
 
         // 15% del PRECIO DEL LIBRO por cada día de demora
-        BigDecimal lateFee = calculateLateFee(reservation.getBook().getPrice(), daysLate);
+        BigDecimal lateFee = FeeCalculator.lateFee(reservation.getBook().getPrice(), daysLate);
         reservation.setLateFee(lateFee);
 
         if (daysLate > 0) {
@@ -126,84 +158,90 @@ public class ReservationService {
 
         Reservation saved = reservationRepository.save(reservation);
 
-        // Aumentar la cantidad disponible
-        bookService.increaseAvailableQuantity(reservation.getBook().getExternalId());
+        // Aumentar la cantidad disponible solo si la reserva se llevó la copia: una futura la toma recién cuando
+        // InventoryReconciliationJob corre el día que empieza, y esa corrida puede no haber pasado todavía
+        if (reservation.isCopyTaken()) {
+            bookService.increaseAvailableQuantity(bookExternalId);
+        }
+        eventPublisher.publishEvent(ReservationChangedEvent.of(ReservationChangedEvent.Type.RETURNED, saved));
 
-        return modelMapper.map(saved, ReservationResponseDTO.class);
+        return reservationMapper.toDTO(saved);
+    }
+    
+    // Reserva de un hold de la lista de espera: la copia ya se descontó de los disponibles al apartarla, pero
+    // reservas futuras pueden tener completos días del alquiler pedido; se acorta hasta el primer día completo
+    @Transactional
+    public ReservationResponseDTO createReservationFromHold(WaitlistEntry entry, LocalDate startDate) {
+        Long bookExternalId = entry.getBook().getExternalId();
+        int rentalDays = availabilityCalendar.bookFreeDays(bookExternalId, startDate, entry.getRentalDays());
+        if (rentalDays == 0) {
+            metrics.reservationRejected(LibreriaMetrics.RejectionReason.STOCK_OUT);
+            throw new RuntimeException("No hay copias libres del libro con ID externo: " + bookExternalId
+                    + " el " + startDate + "; primera fecha disponible: "
+                    + availabilityCalendar.firstAvailableDate(bookExternalId, startDate, 1));
+        }
+        if (rentalDays < entry.getRentalDays()) {
+            log.info("Waitlist hold {} on book {} shortened from {} to {} days by future reservations",
+                    entry.getId(), bookExternalId, entry.getRentalDays(), rentalDays);
+        }
+        
+        Reservation reservation = new Reservation();
+        reservation.setUser(entry.getUser());
+        reservation.setBook(entry.getBook());
+        reservation.setRentalDays(rentalDays);
+        reservation.setDailyRate(entry.getBook().getPrice());
+        reservation.setTotalFee(FeeCalculator.totalFee(reservation.getDailyRate(), reservation.getRentalDays()));
+        reservation.setStartDate(startDate);
+        reservation.setExpectedReturnDate(startDate.plusDays(rentalDays));
+        reservation.setCopyTaken(true);
+        
+        Reservation saved = reservationRepository.save(reservation);
+        eventPublisher.publishEvent(ReservationChangedEvent.of(ReservationChangedEvent.Type.CREATED, saved));
+        return reservationMapper.toDTO(saved);
+    }
+    
+    // Consulta del calendario, sin tocar la base salvo la primera vez que se pide el libro
+    public AvailabilityWindowDTO checkAvailability(Long bookExternalId, LocalDate from, int days) {
+        if (days <= 0) {
+            throw new RuntimeException("Los días de alquiler deben ser positivos");
+        }
+        boolean available = availabilityCalendar.isAvailable(bookExternalId, from, days);
+        LocalDate firstAvailable = available ? from : availabilityCalendar.firstAvailableDate(bookExternalId, from, days);
+        return new AvailabilityWindowDTO(bookExternalId, from, days, available, firstAvailable);
     }
     
     @Transactional(readOnly = true)
     public ReservationResponseDTO getReservationById(Long id) {
         Reservation reservation = reservationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + id));
-        return convertToDTO(reservation);
+        return reservationMapper.toDTO(reservation);
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getAllReservations() {
         return reservationRepository.findAll().stream()
-                .map(this::convertToDTO)
+                .map(reservationMapper::toDTO)
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getReservationsByUserId(Long userId) {
         return reservationRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
+                .map(reservationMapper::toDTO)
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getActiveReservations() {
         return reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE).stream()
-                .map(this::convertToDTO)
+                .map(reservationMapper::toDTO)
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getOverdueReservations() {
         return reservationRepository.findOverdueReservations().stream()
-                .map(this::convertToDTO)
+                .map(reservationMapper::toDTO)
                 .collect(Collectors.toList());
     }
-    
-    private BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
-        if (dailyRate == null || rentalDays == null || rentalDays <= 0) {
-            return BigDecimal.ZERO;
-        }
-
-        return dailyRate.multiply(BigDecimal.valueOf(rentalDays));
-    }
-    
-    private BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
-        // 15% del precio del libro por cada día de demora
-        // TODO: Implementar el cálculo de la multa por demora
-
-        if (bookPrice == null || daysLate <= 0) {
-            return BigDecimal.ZERO;
-        }
-
-        BigDecimal dailyLateFee = bookPrice.multiply(new BigDecimal("0.15"));
-        return dailyLateFee.multiply(BigDecimal.valueOf(daysLate));
-    }
-    
-    private ReservationResponseDTO convertToDTO(Reservation reservation) {
-        ReservationResponseDTO dto = new ReservationResponseDTO();
-        dto.setId(reservation.getId());
-        dto.setUserId(reservation.getUser().getId());
-        dto.setUserName(reservation.getUser().getName());
-        dto.setBookExternalId(reservation.getBook().getExternalId());
-        dto.setBookTitle(reservation.getBook().getTitle());
-        dto.setRentalDays(reservation.getRentalDays());
-        dto.setStartDate(reservation.getStartDate());
-        dto.setExpectedReturnDate(reservation.getExpectedReturnDate());
-        dto.setActualReturnDate(reservation.getActualReturnDate());
-        dto.setDailyRate(reservation.getDailyRate());
-        dto.setTotalFee(reservation.getTotalFee());
-        dto.setLateFee(reservation.getLateFee());
-        dto.setStatus(reservation.getStatus());
-        dto.setCreatedAt(reservation.getCreatedAt());
-        return dto;
-    }
 }
-
@@ -0,0 +1,277 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.dto.StockBatchLineDTO;
+import com.example.libreria.dto.StockBatchReportDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.retry.RetryOnConflict;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Ajustes de stock en lote (recepciones de depósito). read() interpreta el archivo y apply() aplica todas las
+// líneas válidas en una sola transacción: una consulta por bloque de libros para stock, reservados y versión,
+// y un UPDATE por libro modificado en batches JDBC. Las copias que se liberan van primero a la lista de espera,
+// como en BookService.updateStock.
+@Service
+@Timed("libreria.service")
+@RequiredArgsConstructor
+@Slf4j
+public class StockBatchService {
+    
+    public enum Format { CSV, NDJSON }
+    
+    // Una línea del archivo: stockQuantity fija el stock, delta lo suma o resta. error viene del parseo
+    public record Entry(long line, Long externalId, Integer stockQuantity, Integer delta, String error) {
+    }
+    
+    private static final String UPDATE_SQL = "UPDATE books SET stock_quantity = ?, available_quantity = ?, "
+            + "version = version + 1 WHERE external_id = ? AND version = ?";
+    
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final CacheInvalidationRecorder cacheInvalidationRecorder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final WaitlistQueue waitlistQueue;
+    
+    @Value("${stock-batch.max-entries:100000}")
+    private int maxEntries;
+    
+    // Ids por consulta IN y sentencias por batch JDBC
+    @Value("${stock-batch.chunk-size:1000}")
+    private int chunkSize;
+    
+    public List<Entry> read(InputStream body, Format format) {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long line = 0;
+            int externalIdColumn = -1;
+            int stockColumn = -1;
+            int deltaColumn = -1;
+            if (format == Format.CSV) {
+                List<String> columns = CsvLines.readHeader(reader);
+                line = 1;
+                externalIdColumn = columns.indexOf("externalid");
+                stockColumn = columns.indexOf("stockquantity");
+                deltaColumn = columns.indexOf("delta");
+                if (externalIdColumn < 0 || (stockColumn < 0 && deltaColumn < 0)) {
+                    throw new RuntimeException("La cabecera del CSV debe incluir externalId y stockQuantity o delta");
+                }
+            }
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                if (entries.size() == maxEntries) {
+                    throw new RuntimeException("El lote no puede tener más de " + maxEntries + " líneas");
+                }
+                entries.add(format == Format.CSV
+                        ? csvEntry(line, text, externalIdColumn, stockColumn, deltaColumn)
+                        : ndjsonEntry(line, text));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo leer el lote de stock: " + e.getMessage(), e);
+        }
+        return entries;
+    }
+    
+    @RetryOnConflict
+    @Transactional
+    public StockBatchReportDTO apply(List<Entry> entries) {
+        Map<Long, BookRepository.StockLevel> levels = loadStockLevels(entries);
+        
+        // Estado de cada libro a medida que se aplican sus líneas, en orden de archivo
+        Map<Long, int[]> pending = new LinkedHashMap<>();
+        List<StockBatchLineDTO> lines = new ArrayList<>(entries.size());
+        int applied = 0;
+        for (Entry entry : entries) {
+            String error = entry.error() != null ? entry.error() : validateShape(entry);
+            BookRepository.StockLevel level = error == null ? levels.get(entry.externalId()) : null;
+            if (error == null && level == null) {
+                error = "Libro no encontrado con ID externo: " + entry.externalId();
+            }
+            int[] stock = null;
+            int newStock = 0;
+            if (error == null) {
+                stock = pending.computeIfAbsent(entry.externalId(), id -> new int[]{level.getStockQuantity()});
+                newStock = entry.stockQuantity() != null ? entry.stockQuantity() : stock[0] + entry.delta();
+                if (newStock < 0) {
+                    error = "El stock no puede ser negativo";
+                } else if (newStock < level.getReserved()) {
+                    error = "No se puede reducir el stock por debajo de los libros reservados: " + level.getReserved();
+                }
+            }
+            if (error != null) {
+                lines.add(new StockBatchLineDTO(entry.line(), entry.externalId(), StockBatchLineDTO.Status.REJECTED,
+                        null, null, error));
+                continue;
+            }
+            stock[0] = newStock;
+            applied++;
+            lines.add(new StockBatchLineDTO(entry.line(), entry.externalId(), StockBatchLineDTO.Status.APPLIED,
+                    newStock, newStock - level.getReserved(), null));
+        }
+        
+        List<Long> changed = pending.entrySet().stream()
+                .filter(book -> book.getValue()[0] != levels.get(book.getKey()).getStockQuantity())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!changed.isEmpty()) {
+            update(changed, pending, levels);
+        }
+        log.info("Applied {} of {} stock lines ({} books updated)", applied, entries.size(), changed.size());
+        return new StockBatchReportDTO(applied, entries.size() - applied, changed.size(), lines);
+    }
+    
+    private Map<Long, BookRepository.StockLevel> loadStockLevels(List<Entry> entries) {
+        Set<Long> externalIds = new LinkedHashSet<>();
+        entries.stream()
+                .filter(entry -> entry.error() == null && entry.externalId() != null)
+                .forEach(entry -> externalIds.add(entry.externalId()));
+        List<Long> ids = new ArrayList<>(externalIds);
+        Map<Long, BookRepository.StockLevel> levels = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            bookRepository.findStockLevels(ids.subList(from, Math.min(from + chunkSize, ids.size())))
+                    .forEach(level -> levels.put(level.getExternalId(), level));
+        }
+        return levels;
+    }
+    
+    private void update(List<Long> changed, Map<Long, int[]> pending, Map<Long, BookRepository.StockLevel> levels) {
+        // Disponibles finales: las copias nuevas (sobre los disponibles anteriores) pasan antes por la cola del libro.
+        // Si el UPDATE falla, la transacción entera vuelve atrás y los holds con ella
+        Map<Long, Integer> available = new HashMap<>(changed.size() * 2);
+        for (Long externalId : changed) {
+            BookRepository.StockLevel level = levels.get(externalId);
+            int newAvailable = pending.get(externalId)[0] - level.getReserved();
+            int freed = newAvailable - (level.getStockQuantity() - level.getReserved());
+            available.put(externalId, newAvailable - waitlistQueue.holdCopies(externalId, freed));
+        }
+        
+        // UPDATE condicionado a la versión leída: si otra transacción tocó el libro, se reintenta el lote entero
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, changed, chunkSize, (statement, externalId) -> {
+            statement.setInt(1, pending.get(externalId)[0]);
+            statement.setInt(2, available.get(externalId));
+            statement.setLong(3, externalId);
+            statement.setLong(4, levels.get(externalId).getVersion());
+        });
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // SUCCESS_NO_INFO (-2) cuenta como aplicado
+                if (count == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Book.class, changed.get(index));
+                }
+                index++;
+            }
+        }
+        
+        // El UPDATE no pasa por Hibernate: los demás nodos se enteran por cache_invalidations
+        // y este descarta las entradas cuando confirma
+        cacheInvalidationRecorder.recordBulk(entityManager, Book.class, changed);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changed.forEach(externalId -> entityManager.getEntityManagerFactory().getCache().evict(Book.class, externalId));
+            }
+        });
+        for (Long externalId : changed) {
+            eventPublisher.publishEvent(new BookStockChangedEvent(externalId, pending.get(externalId)[0],
+                    available.get(externalId), levels.get(externalId).getVersion() + 1,
+                    BookStockChangedEvent.Reason.STOCK_UPDATED));
+        }
+    }
+    
+    private static String validateShape(Entry entry) {
+        if (entry.externalId() == null) {
+            return "El ID externo del libro es obligatorio";
+        }
+        if ((entry.stockQuantity() == null) == (entry.delta() == null)) {
+            return "Indicar stockQuantity o delta (uno solo)";
+        }
+        return null;
+    }
+    
+    private Entry ndjsonEntry(long line, String text) {
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            if (!node.isObject()) {
+                return new Entry(line, null, null, null, "Se esperaba un objeto JSON");
+            }
+            return new Entry(line, longValue(node.get("externalId")), intValue(node.get("stockQuantity")),
+                    intValue(node.get("delta")), null);
+        } catch (JsonProcessingException e) {
+            return new Entry(line, null, null, null, "JSON inválido: " + e.getOriginalMessage());
+        } catch (NumberFormatException e) {
+            return new Entry(line, null, null, null, "Valor numérico inválido: " + e.getMessage());
+        }
+    }
+    
+    private static Entry csvEntry(long line, String text, int externalIdColumn, int stockColumn, int deltaColumn) {
+        List<String> fields = CsvLines.split(text);
+        if (fields == null) {
+            return new Entry(line, null, null, null, "Comillas sin cerrar");
+        }
+        try {
+            String externalId = CsvLines.field(fields, externalIdColumn);
+            String stock = CsvLines.field(fields, stockColumn);
+            String delta = CsvLines.field(fields, deltaColumn);
+            return new Entry(line,
+                    externalId != null ? Long.valueOf(externalId) : null,
+                    stock != null ? Integer.valueOf(stock) : null,
+                    delta != null ? Integer.valueOf(delta) : null,
+                    null);
+        } catch (NumberFormatException e) {
+            return new Entry(line, null, null, null, "Valor numérico inválido: " + e.getMessage());
+        }
+    }
+    
+    private static Long longValue(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (!node.isIntegralNumber() || !node.canConvertToLong()) {
+            throw new NumberFormatException(node.toString());
+        }
+        return node.longValue();
+    }
+    
+    private static Integer intValue(JsonNode node) {
+        Long value = longValue(node);
+        if (value != null && (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)) {
+            throw new NumberFormatException(node.toString());
+        }
+        return value != null ? value.intValue() : null;
+    }
+}
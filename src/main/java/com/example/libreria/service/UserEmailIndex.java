@@ -0,0 +1,101 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Índice email -> id en memoria para no ir a la base en cada alta o cambio de email.
+// Un email se "reserva" con putIfAbsent, así dos transacciones de este nodo no pueden tomar el mismo a la vez;
+// la reserva se confirma o se libera recién cuando termina la transacción.
+// Con varias réplicas el índice puede quedar atrasado: un id que ya no tiene ese email se verifica contra la base
+// y un email nuevo de otro nodo lo frena la restricción unique de users.email.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserEmailIndex {
+    
+    // Tomado por una transacción que todavía no terminó (sin id asignado)
+    private static final long PENDING = 0L;
+    
+    private final UserRepository userRepository;
+    
+    // Valores: id > 0 confirmado, PENDING, o -id cuando la transacción ya guardó el usuario pero no confirmó
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+    // ReentrantLock y no synchronized: la carga hace JDBC y no debe fijar el hilo virtual al carrier
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+    
+    // Devuelve false si el email ya es de otro usuario o lo está dando de alta otra transacción
+    public boolean claim(String email) {
+        ensureLoaded();
+        Long current = ids.putIfAbsent(email, PENDING);
+        if (current != null && current > 0 && !userRepository.existsByEmail(email)) {
+            // El usuario se borró o cambió de email en otra réplica
+            ids.remove(email, current);
+            current = ids.putIfAbsent(email, PENDING);
+        }
+        if (current != null) {
+            return false;
+        }
+        afterCompletion(committed -> ids.computeIfPresent(email, (key, value) -> {
+            if (value > 0) {
+                return value;
+            }
+            // Sin id asignado (o con rollback) no queda nada: la próxima consulta lo decide la base
+            return committed && value < 0 ? -value : null;
+        }));
+        return true;
+    }
+    
+    // Asocia el email reservado al id del usuario guardado; se vuelve visible al confirmar
+    public void assign(String email, Long id) {
+        ids.replace(email, PENDING, -id);
+    }
+    
+    // El email deja de ser del usuario (borrado o cambio de email) cuando la transacción confirma
+    public void release(String email, Long id) {
+        afterCompletion(committed -> {
+            if (committed) {
+                ids.remove(email, id);
+            }
+        });
+    }
+    
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (!loaded) {
+                userRepository.findAllEmailIds().forEach(row -> ids.putIfAbsent(row.getEmail(), row.getId()));
+                loaded = true;
+                log.info("Loaded email index with {} users", ids.size());
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+    
+    // Fuera de una transacción el cambio se aplica en el momento, como si hubiera confirmado
+    private void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.UserImportErrorDTO;
+import com.example.libreria.dto.UserImportReportDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.mapper.UserMapper;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Alta masiva de usuarios desde un CSV o NDJSON leído en streaming.
+// Las filas se validan con las mismas reglas que UserRequestDTO y se escriben en lotes de user-import.batch-size,
+// cada uno en su propia transacción: en memoria solo queda el lote actual y el reporte (con errores acotados).
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportService {
+    
+    public enum Format { CSV, NDJSON }
+    
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserEmailIndex userEmailIndex;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${user-import.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${user-import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+    
+    public UserImportReportDTO importUsers(InputStream body, Format format) {
+        UserImportReportDTO report = new UserImportReportDTO();
+        List<Row> chunk = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            RowReader rows = format == Format.CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+            Row row;
+            while ((row = rows.next()) != null) {
+                report.setTotalRows(report.getTotalRows() + 1);
+                String error = row.error() != null ? row.error() : validate(row.request());
+                if (error != null) {
+                    addError(report, row, error);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == batchSize) {
+                    writeChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(chunk, report);
+            }
+        } catch (IOException e) {
+            // Los lotes anteriores ya quedaron confirmados
+            throw new RuntimeException("No se pudo leer el archivo de importación después de "
+                    + report.getImported() + " usuarios importados: " + e.getMessage(), e);
+        }
+        log.info("Imported {} of {} users ({} rejected)", report.getImported(), report.getTotalRows(), report.getFailed());
+        return report;
+    }
+    
+    private void writeChunk(List<Row> chunk, UserImportReportDTO report) {
+        List<Row> accepted = new ArrayList<>(chunk.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(chunk, accepted, report));
+            report.setImported(report.getImported() + accepted.size());
+        } catch (DataIntegrityViolationException e) {
+            // Otra réplica dio de alta alguno de los emails entre la verificación y el INSERT y el lote se deshizo
+            // entero: sus filas se guardan de a una y solo se rechazan las que chocan
+            log.warn("User import batch rolled back, retrying its {} rows one by one: {}", accepted.size(),
+                    e.getMostSpecificCause().getMessage());
+            entityManager.clear();
+            accepted.forEach(row -> insertRow(row, report));
+        } finally {
+            // Con open-in-view el EntityManager vive todo el request: sin esto acumula todos los usuarios del archivo
+            entityManager.clear();
+        }
+    }
+    
+    private void insertChunk(List<Row> chunk, List<Row> accepted, UserImportReportDTO report) {
+        // Una consulta por lote para los emails ya registrados; los de lotes anteriores ya están confirmados
+        Set<String> existing = new HashSet<>(userRepository.findExistingEmails(
+                chunk.stream().map(row -> row.request().getEmail()).collect(Collectors.toSet())));
+        Set<String> seen = new HashSet<>();
+        List<User> users = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            String email = row.request().getEmail();
+            if (!seen.add(email)) {
+                addError(report, row, "El email está repetido en el archivo");
+            } else if (existing.contains(email) || !userEmailIndex.claim(email)) {
+                addError(report, row, "Ya existe un usuario con el email: " + email);
+            } else {
+                accepted.add(row);
+                users.add(userMapper.toEntity(row.request()));
+            }
+        }
+        // INSERT en batches JDBC de hibernate.jdbc.batch_size
+        userRepository.saveAll(users);
+        userRepository.flush();
+        users.forEach(user -> userEmailIndex.assign(user.getEmail(), user.getId()));
+    }
+    
+    private void insertRow(Row row, UserImportReportDTO report) {
+        String email = row.request().getEmail();
+        try {
+            Boolean inserted = transactionTemplate.execute(status -> {
+                if (!userEmailIndex.claim(email)) {
+                    return false;
+                }
+                User user = userRepository.saveAndFlush(userMapper.toEntity(row.request()));
+                userEmailIndex.assign(email, user.getId());
+                return true;
+            });
+            if (Boolean.TRUE.equals(inserted)) {
+                report.setImported(report.getImported() + 1);
+            } else {
+                addError(report, row, "Ya existe un usuario con el email: " + email);
+            }
+        } catch (DataIntegrityViolationException e) {
+            addError(report, row, "No se pudo guardar: el email se registró durante la importación");
+            // El usuario que no se pudo insertar no puede quedar para el flush de la fila siguiente
+            entityManager.clear();
+        }
+    }
+    
+    private String validate(UserRequestDTO request) {
+        Set<ConstraintViolation<UserRequestDTO>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+    
+    private void addError(UserImportReportDTO report, Row row, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            String email = row.request() != null ? row.request().getEmail() : null;
+            report.getErrors().add(new UserImportErrorDTO(row.line(), email, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+    
+    // request es null cuando la línea no se pudo interpretar (y error dice por qué)
+    private record Row(long line, UserRequestDTO request, String error) {
+    }
+    
+    private interface RowReader {
+        // null al terminar el archivo
+        Row next() throws IOException;
+    }
+    
+    private class NdjsonRowReader implements RowReader {
+        
+        private final BufferedReader reader;
+        private long line;
+        
+        NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            try {
+                return new Row(line, objectMapper.readValue(text, UserRequestDTO.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(line, null, "JSON inválido: " + e.getOriginalMessage());
+            }
+        }
+    }
+    
+    // CSV con cabecera (name, email y opcionalmente phoneNumber, en cualquier orden), ver CsvLines
+    private static class CsvRowReader implements RowReader {
+        
+        private final BufferedReader reader;
+        private final int nameColumn;
+        private final int emailColumn;
+        private final int phoneColumn;
+        private long line;
+        
+        CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> columns = CsvLines.readHeader(reader);
+            line = 1;
+            nameColumn = columns.indexOf("name");
+            emailColumn = columns.indexOf("email");
+            phoneColumn = columns.indexOf("phonenumber");
+            if (nameColumn < 0 || emailColumn < 0) {
+                throw new RuntimeException("La cabecera del CSV debe incluir las columnas name y email");
+            }
+        }
+        
+        @Override
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            List<String> fields = CsvLines.split(text);
+            if (fields == null) {
+                return new Row(line, null, "Comillas sin cerrar");
+            }
+            UserRequestDTO request = new UserRequestDTO(CsvLines.field(fields, nameColumn),
+                    CsvLines.field(fields, emailColumn), CsvLines.field(fields, phoneColumn));
+            return new Row(line, request, null);
+        }
+    }
+}
@@ -1,52 +1,75 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.dto.UserDeletionReportDTO;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.mapper.UserMapper;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import com.example.libreria.retry.RetryOnConflict;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("libreria.service")
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
     
     private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserEmailIndex userEmailIndex;
+    private final ReservationRepository reservationRepository;
+    private final BookService bookService;
+    private final WaitlistQueue waitlistQueue;
+    private final AvailabilityCalendar availabilityCalendar;
+    private final CacheInvalidationRecorder cacheInvalidationRecorder;
+    private final EntityManager entityManager;
     
     @Transactional
     public UserResponseDTO createUser(UserRequestDTO requestDTO) {
-        if (userRepository.existsByEmail(requestDTO.getEmail())) {
+        if (!userEmailIndex.claim(requestDTO.getEmail())) {
             throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
-        User user = new User();
-        user.setName(requestDTO.getName());
-        user.setEmail(requestDTO.getEmail());
-        user.setPhoneNumber(requestDTO.getPhoneNumber());
+        User user = userMapper.toEntity(requestDTO);
         
         User savedUser = userRepository.save(user);
+        userEmailIndex.assign(savedUser.getEmail(), savedUser.getId());
         log.info("Created user with id: {}", savedUser.getId());
-        return convertToDTO(savedUser);
+        return userMapper.toDTO(savedUser);
     }
     
     @Transactional(readOnly = true)
     public UserResponseDTO getUserById(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
-        return convertToDTO(user);
+        return userMapper.toDTO(user);
     }
     
+    // Página del directorio con id > afterId; query filtra por prefijo de nombre o email sin distinguir mayúsculas
     @Transactional(readOnly = true)
-    public List<UserResponseDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<UserResponseDTO> getUsers(long afterId, int limit, String query) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (query == null || query.isBlank()) {
+            return userRepository.findDirectoryPage(afterId, page);
+        }
+        return userRepository.searchDirectoryPage(afterId, likePrefix(query), page);
     }
     
     @Transactional
@@ -55,27 +78,64 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
         
         // Verificar si el email ya existe en otro usuario
-        if (!user.getEmail().equals(requestDTO.getEmail()) && 
-            userRepository.existsByEmail(requestDTO.getEmail())) {
+        String previousEmail = user.getEmail();
+        boolean emailChanged = !previousEmail.equals(requestDTO.getEmail());
+        if (emailChanged && !userEmailIndex.claim(requestDTO.getEmail())) {
             throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
-        user.setName(requestDTO.getName());
-        user.setEmail(requestDTO.getEmail());
-        user.setPhoneNumber(requestDTO.getPhoneNumber());
+        userMapper.updateEntity(requestDTO, user);
         
         User updatedUser = userRepository.save(user);
+        if (emailChanged) {
+            userEmailIndex.assign(updatedUser.getEmail(), updatedUser.getId());
+            userEmailIndex.release(previousEmail, updatedUser.getId());
+        }
         log.info("Updated user with id: {}", updatedUser.getId());
-        return convertToDTO(updatedUser);
+        return userMapper.toDTO(updatedUser);
     }
     
+    @RetryOnConflict
     @Transactional
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
+        UserDeletionReportDTO report = deleteUsers(List.of(id));
+        if (!report.getNotFound().isEmpty()) {
             throw new RuntimeException("Usuario no encontrado con ID: " + id);
         }
-        userRepository.deleteById(id);
-        log.info("Deleted user with id: {}", id);
+    }
+    
+    // Baja de usuarios sin cargar entidades: las copias de sus reservas activas vuelven al inventario
+    // (un UPDATE por libro) y reservas y usuarios se borran con un DELETE masivo cada uno.
+    // Los ids que no existen se informan en notFound
+    @RetryOnConflict
+    @Transactional
+    public UserDeletionReportDTO deleteUsers(Collection<Long> ids) {
+        List<UserRepository.EmailId> users = userRepository.findEmailIdsForUpdate(ids);
+        List<Long> userIds = users.stream().map(UserRepository.EmailId::getId).toList();
+        Set<Long> found = new HashSet<>(userIds);
+        List<Long> notFound = ids.stream().filter(id -> !found.contains(id)).distinct().toList();
+        if (userIds.isEmpty()) {
+            return new UserDeletionReportDTO(0, 0, 0, notFound);
+        }
+        
+        // Solo las reservas que se llevaron su copia la devuelven; las futuras ocupan únicamente el calendario
+        List<ReservationRepository.ActiveBooking> bookings = reservationRepository.findActiveBookingsForUpdate(userIds);
+        Map<Long, Integer> copiesByBook = bookings.stream()
+                .filter(ReservationRepository.ActiveBooking::getCopyTaken)
+                .collect(Collectors.toMap(ReservationRepository.ActiveBooking::getBookExternalId, booking -> 1, Integer::sum));
+        // Antes de liberar: las entradas de estos usuarios no deben recibir copias, y sus holds también se liberan
+        waitlistQueue.removeUsers(userIds).forEach(externalId -> copiesByBook.merge(externalId, 1, Integer::sum));
+        int releasedCopies = bookService.releaseCopies(copiesByBook);
+        
+        int deletedReservations = reservationRepository.deleteByUserIdIn(userIds);
+        availabilityCalendar.reload(bookings.stream().map(ReservationRepository.ActiveBooking::getBookExternalId)
+                .collect(Collectors.toSet()));
+        int deletedUsers = userRepository.deleteByIdIn(userIds);
+        cacheInvalidationRecorder.recordBulk(entityManager, User.class, userIds);
+        users.forEach(user -> userEmailIndex.release(user.getEmail(), user.getId()));
+        
+        log.info("Deleted {} users with {} reservations ({} copies released)", deletedUsers, deletedReservations, releasedCopies);
+        return new UserDeletionReportDTO(deletedUsers, deletedReservations, releasedCopies, notFound);
     }
     
     @Transactional(readOnly = true)
@@ -84,14 +144,11 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
     }
     
-    private UserResponseDTO convertToDTO(User user) {
-        UserResponseDTO dto = new UserResponseDTO();
-        dto.setId(user.getId());
-        dto.setName(user.getName());
-        dto.setEmail(user.getEmail());
-        dto.setPhoneNumber(user.getPhoneNumber());
-        dto.setCreatedAt(user.getCreatedAt());
-        return dto;
+    private static String likePrefix(String query) {
+        String escaped = query.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return escaped + "%";
     }
 }
-
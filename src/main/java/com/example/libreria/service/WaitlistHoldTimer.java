@@ -0,0 +1,74 @@
+package com.example.libreria.service;
+
+import com.example.libreria.event.WaitlistChangedEvent;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.repository.WaitlistEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+// Vencimiento de los holds con un timer por hold en el TaskScheduler, sin consultar la tabla periódicamente.
+// Se programa cuando confirma la transacción que apartó la copia y se cancela si el hold se confirma o se cancela.
+// Al arrancar se reprograman los holds pendientes (los ya vencidos corren enseguida); si varias réplicas
+// programan el mismo hold, solo la primera lo encuentra HELD
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WaitlistHoldTimer {
+    
+    private final TaskScheduler taskScheduler;
+    private final WaitlistService waitlistService;
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    
+    private final Map<Long, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePendingHolds() {
+        List<WaitlistEntryRepository.PendingHold> holds = waitlistEntryRepository.findAllHeld();
+        holds.forEach(hold -> schedule(hold.getId(), hold.getHoldExpiresAt()));
+        if (!holds.isEmpty()) {
+            log.info("Scheduled expiry of {} pending waitlist holds", holds.size());
+        }
+    }
+    
+    @TransactionalEventListener
+    public void onWaitlistChanged(WaitlistChangedEvent event) {
+        if (event.getStatus() == WaitlistEntry.Status.HELD) {
+            schedule(event.getEntryId(), event.getHoldExpiresAt());
+        } else {
+            ScheduledFuture<?> timer = timers.remove(event.getEntryId());
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+    
+    private void schedule(Long entryId, LocalDateTime expiresAt) {
+        timers.compute(entryId, (key, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return taskScheduler.schedule(() -> expire(entryId), expiresAt.atZone(ZoneId.systemDefault()).toInstant());
+        });
+    }
+    
+    private void expire(Long entryId) {
+        timers.remove(entryId);
+        try {
+            waitlistService.expireHold(entryId);
+        } catch (RuntimeException e) {
+            log.error("Could not expire waitlist hold {}: {}", entryId, e.getMessage(), e);
+        }
+    }
+}
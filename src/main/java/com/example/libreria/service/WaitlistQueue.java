@@ -0,0 +1,165 @@
+package com.example.libreria.service;
+
+import com.example.libreria.event.WaitlistChangedEvent;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.repository.WaitlistEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Colas FIFO de la lista de espera, una por libro, en memoria: devolver una copia de un libro sin cola
+// no consulta la base. La tabla waitlist_entries es la fuente de verdad; cada entrada de la cola se verifica
+// contra su fila al apartar la copia, y las altas y bajas se aplican a la cola recién cuando la transacción confirma.
+// Con varias réplicas cada nodo ve las entradas que cargó al arrancar y las suyas: una copia devuelta en otro nodo
+// queda disponible en vez de apartada, pero nunca se aparta dos veces (la fila tiene @Version).
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WaitlistQueue {
+    
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    // Libro -> ids de entradas WAITING en orden de llegada. Los cambios van dentro de compute();
+    // la lectura recorre la cola sin bloquear
+    private final Map<Long, Deque<Long>> waiting = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+    
+    @Value("${waitlist.hold-ms:1800000}")
+    private long holdMs;
+    
+    // Aparta hasta copies copias recién liberadas del libro para los primeros de la cola y devuelve cuántas apartó:
+    // quien libera las copias suma a availableQuantity solo el resto. Debe llamarse dentro de la transacción
+    // que libera las copias, así el hold y el cambio de disponibles se confirman juntos
+    public int holdCopies(Long bookExternalId, int copies) {
+        if (copies <= 0) {
+            return 0;
+        }
+        ensureLoaded();
+        Deque<Long> queue = waiting.get(bookExternalId);
+        if (queue == null) {
+            return 0;
+        }
+        int held = 0;
+        List<Long> dequeued = new ArrayList<>();
+        LocalDateTime expiresAt = LocalDateTime.now().plusNanos(holdMs * 1_000_000);
+        for (Long entryId : queue) {
+            if (held == copies) {
+                break;
+            }
+            // Cancelada, borrada o apartada por otra transacción de este mismo pedido: se descarta de la cola
+            dequeued.add(entryId);
+            WaitlistEntry entry = waitlistEntryRepository.findById(entryId).orElse(null);
+            if (entry == null || entry.getStatus() != WaitlistEntry.Status.WAITING) {
+                continue;
+            }
+            entry.setStatus(WaitlistEntry.Status.HELD);
+            entry.setHoldExpiresAt(expiresAt);
+            eventPublisher.publishEvent(WaitlistChangedEvent.of(entry));
+            held++;
+        }
+        if (!dequeued.isEmpty()) {
+            afterCommit(() -> dequeued.forEach(entryId -> remove(bookExternalId, entryId)));
+        }
+        if (held > 0) {
+            log.info("Held {} copies of book {} for the waitlist", held, bookExternalId);
+        }
+        return held;
+    }
+    
+    // La entrada guardada entra al final de la cola de su libro cuando la transacción confirma
+    public void enqueue(Long bookExternalId, Long entryId) {
+        ensureLoaded();
+        afterCommit(() -> waiting.compute(bookExternalId, (key, queue) -> {
+            Deque<Long> target = queue != null ? queue : new ConcurrentLinkedDeque<>();
+            target.addLast(entryId);
+            return target;
+        }));
+    }
+    
+    // Sale de la cola (cancelada o dada de baja) cuando la transacción confirma
+    public void dequeue(Long bookExternalId, Long entryId) {
+        afterCommit(() -> remove(bookExternalId, entryId));
+    }
+    
+    // Baja de usuarios: borra sus entradas y devuelve el libro de cada hold que tenían, cuya copia
+    // hay que volver a liberar (y puede pasar al siguiente de la cola)
+    public List<Long> removeUsers(Collection<Long> userIds) {
+        List<Long> heldBooks = waitlistEntryRepository.findHeldBookIdsByUserIds(userIds);
+        List<WaitlistEntryRepository.QueuedEntry> queued = waitlistEntryRepository.findWaitingByUserIds(userIds);
+        waitlistEntryRepository.deleteByUserIdIn(userIds);
+        queued.forEach(entry -> dequeue(entry.getBookExternalId(), entry.getId()));
+        return heldBooks;
+    }
+    
+    // Posición (desde 1) de una entrada WAITING en la cola de su libro, o null si no está
+    public Integer position(Long bookExternalId, Long entryId) {
+        ensureLoaded();
+        Deque<Long> queue = waiting.get(bookExternalId);
+        if (queue == null) {
+            return null;
+        }
+        int position = 0;
+        for (Long queued : queue) {
+            position++;
+            if (queued.equals(entryId)) {
+                return position;
+            }
+        }
+        return null;
+    }
+    
+    private void remove(Long bookExternalId, Long entryId) {
+        waiting.computeIfPresent(bookExternalId, (key, queue) -> {
+            queue.remove(entryId);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+    
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (!loaded) {
+                List<WaitlistEntryRepository.QueuedEntry> entries = waitlistEntryRepository.findAllWaiting();
+                entries.forEach(entry -> waiting.computeIfAbsent(entry.getBookExternalId(), key -> new ConcurrentLinkedDeque<>())
+                        .addLast(entry.getId()));
+                loaded = true;
+                log.info("Loaded waitlist with {} entries for {} books", entries.size(), waiting.size());
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+    
+    // Fuera de una transacción el cambio se aplica en el momento
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.dto.WaitlistRequestDTO;
+import com.example.libreria.event.WaitlistChangedEvent;
+import com.example.libreria.mapper.WaitlistEntryMapper;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.User;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.repository.WaitlistEntryRepository;
+import com.example.libreria.retry.RetryOnConflict;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Lista de espera de libros sin copias. Las copias que se liberan las aparta BookService con WaitlistQueue;
+// acá están el alta, la confirmación del hold (crea la reserva), la cancelación y el vencimiento
+@Service
+@Timed("libreria.service")
+@RequiredArgsConstructor
+@Slf4j
+public class WaitlistService {
+    
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final WaitlistQueue waitlistQueue;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final BookService bookService;
+    private final ReservationService reservationService;
+    private final WaitlistEntryMapper waitlistEntryMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    
+    @RetryOnConflict
+    @Transactional
+    public WaitlistEntryDTO join(WaitlistRequestDTO request) {
+        User user = userRepository.findById(request.getUserId())
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + request.getUserId()));
+        Book book = bookRepository.findByExternalId(request.getBookExternalId())
+                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + request.getBookExternalId()));
+        if (book.getAvailableQuantity() > 0) {
+            throw new RuntimeException("Hay copias disponibles del libro con ID externo: " + book.getExternalId()
+                    + "; la reserva puede crearse directamente");
+        }
+        if (waitlistEntryRepository.existsOpenEntry(request.getUserId(), book.getExternalId())) {
+            throw new RuntimeException("El usuario ya está en la lista de espera del libro con ID externo: "
+                    + book.getExternalId());
+        }
+        // Sube la versión del libro: una devolución en paralelo, que no ve esta entrada hasta que confirme,
+        // choca con el alta y el reintento encuentra la copia disponible
+        entityManager.lock(book, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setUser(user);
+        entry.setBook(book);
+        entry.setRentalDays(request.getRentalDays());
+        WaitlistEntry saved = waitlistEntryRepository.save(entry);
+        waitlistQueue.enqueue(book.getExternalId(), saved.getId());
+        eventPublisher.publishEvent(WaitlistChangedEvent.of(saved));
+        
+        return waitlistEntryMapper.toDTO(saved);
+    }
+    
+    @Transactional(readOnly = true)
+    public WaitlistEntryDTO getEntry(Long id) {
+        WaitlistEntry entry = findEntry(id);
+        WaitlistEntryDTO dto = waitlistEntryMapper.toDTO(entry);
+        if (entry.getStatus() == WaitlistEntry.Status.WAITING) {
+            dto.setPosition(waitlistQueue.position(entry.getBook().getExternalId(), entry.getId()));
+        }
+        return dto;
+    }
+    
+    // Convierte el hold en una reserva que empieza hoy, sobre la copia que ya estaba apartada
+    @RetryOnConflict
+    @Transactional
+    public ReservationResponseDTO confirmHold(Long id) {
+        WaitlistEntry entry = findEntry(id);
+        if (entry.getStatus() != WaitlistEntry.Status.HELD) {
+            throw new RuntimeException("La entrada de la lista de espera no tiene una copia apartada");
+        }
+        if (entry.getHoldExpiresAt().isBefore(LocalDateTime.now())) {
+            // El timer la pasa a EXPIRED y libera la copia
+            throw new RuntimeException("La copia apartada venció el " + entry.getHoldExpiresAt());
+        }
+        ReservationResponseDTO reservation = reservationService.createReservationFromHold(entry, LocalDate.now());
+        entry.setStatus(WaitlistEntry.Status.CONFIRMED);
+        entry.setReservationId(reservation.getId());
+        eventPublisher.publishEvent(WaitlistChangedEvent.of(entry));
+        return reservation;
+    }
+    
+    // Sale de la cola; si ya tenía una copia apartada, la copia pasa al siguiente
+    @RetryOnConflict
+    @Transactional
+    public void cancel(Long id) {
+        WaitlistEntry entry = findEntry(id);
+        WaitlistEntry.Status previous = entry.getStatus();
+        if (previous != WaitlistEntry.Status.WAITING && previous != WaitlistEntry.Status.HELD) {
+            throw new RuntimeException("La entrada de la lista de espera ya está cerrada: " + previous);
+        }
+        entry.setStatus(WaitlistEntry.Status.CANCELLED);
+        eventPublisher.publishEvent(WaitlistChangedEvent.of(entry));
+        if (previous == WaitlistEntry.Status.WAITING) {
+            waitlistQueue.dequeue(entry.getBook().getExternalId(), entry.getId());
+        } else {
+            bookService.increaseAvailableQuantity(entry.getBook().getExternalId());
+        }
+    }
+    
+    // Lo llama WaitlistHoldTimer al vencer el hold. Si ya se confirmó o canceló no hace nada
+    @RetryOnConflict
+    @Transactional
+    public void expireHold(Long id) {
+        WaitlistEntry entry = waitlistEntryRepository.findById(id).orElse(null);
+        if (entry == null || entry.getStatus() != WaitlistEntry.Status.HELD) {
+            return;
+        }
+        entry.setStatus(WaitlistEntry.Status.EXPIRED);
+        eventPublisher.publishEvent(WaitlistChangedEvent.of(entry));
+        bookService.increaseAvailableQuantity(entry.getBook().getExternalId());
+        log.info("Waitlist hold {} on book {} expired", id, entry.getBook().getExternalId());
+    }
+    
+    private WaitlistEntry findEntry(Long id) {
+        return waitlistEntryRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Entrada de lista de espera no encontrada con ID: " + id));
+    }
+}
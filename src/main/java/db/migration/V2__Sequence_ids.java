@@ -0,0 +1,37 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// users y reservations pasan de IDENTITY a secuencias con optimizador pooled (allocationSize = 50).
+// En Java y no en SQL porque el valor inicial depende de los datos: Hibernate toma el valor leído
+// como tope del bloque (usa valor - 49 .. valor), así que arranca en max(id) + 50.
+public class V2__Sequence_ids extends BaseJavaMigration {
+    
+    private static final int ALLOCATION_SIZE = 50;
+    
+    @Override
+    public void migrate(Context context) throws SQLException {
+        try (Statement statement = context.getConnection().createStatement()) {
+            createSequence(statement, "users_seq", "users");
+            // reservations_archive conserva los ids de las reservas archivadas: tampoco se pueden reutilizar
+            createSequence(statement, "reservations_seq", "reservations", "reservations_archive");
+        }
+    }
+    
+    private void createSequence(Statement statement, String sequence, String... tables) throws SQLException {
+        long maxId = 0;
+        for (String table : tables) {
+            try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                rs.next();
+                maxId = Math.max(maxId, rs.getLong(1));
+            }
+        }
+        statement.execute("CREATE SEQUENCE " + sequence + " START WITH " + (maxId + ALLOCATION_SIZE)
+                + " INCREMENT BY " + ALLOCATION_SIZE);
+    }
+}
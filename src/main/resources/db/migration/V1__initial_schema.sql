@@ -0,0 +1,91 @@
+-- Esquema inicial (perfil prod). SQL común a H2 y PostgreSQL: los enums se guardan como
+-- varchar con CHECK y las claves autogeneradas usan identity.
+
+CREATE TABLE users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    email        VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255),
+    created_at   TIMESTAMP(6) NOT NULL,
+    -- existsByEmail / búsqueda por email
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+-- findByExternalId usa la clave primaria
+CREATE TABLE books (
+    external_id        BIGINT PRIMARY KEY,
+    title              VARCHAR(255) NOT NULL,
+    first_publish_year INTEGER,
+    edition_count      INTEGER,
+    has_fulltext       BOOLEAN,
+    price              NUMERIC(10, 2) NOT NULL,
+    stock_quantity     INTEGER NOT NULL,
+    available_quantity INTEGER NOT NULL
+);
+
+CREATE TABLE book_authors (
+    book_id     BIGINT NOT NULL,
+    author_name VARCHAR(255),
+    CONSTRAINT fk_book_authors_book FOREIGN KEY (book_id) REFERENCES books (external_id)
+);
+
+CREATE INDEX idx_book_authors_book_id ON book_authors (book_id);
+
+CREATE TABLE reservations (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id              BIGINT NOT NULL,
+    book_external_id     BIGINT NOT NULL,
+    rental_days          INTEGER NOT NULL,
+    start_date           DATE NOT NULL,
+    expected_return_date DATE NOT NULL,
+    actual_return_date   DATE,
+    daily_rate           NUMERIC(10, 2) NOT NULL,
+    total_fee            NUMERIC(10, 2),
+    late_fee             NUMERIC(10, 2),
+    status               VARCHAR(20) NOT NULL,
+    created_at           TIMESTAMP(6) NOT NULL,
+    CONSTRAINT ck_reservations_status CHECK (status IN ('ACTIVE', 'RETURNED', 'OVERDUE')),
+    CONSTRAINT fk_reservations_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_reservations_book FOREIGN KEY (book_external_id) REFERENCES books (external_id)
+);
+
+-- findByUserId
+CREATE INDEX idx_reservations_user_id ON reservations (user_id);
+-- Joins y borrados por libro
+CREATE INDEX idx_reservations_book_external_id ON reservations (book_external_id);
+-- findByStatus y el job de archivo (status + fecha de devolución)
+CREATE INDEX idx_reservations_status_return_date ON reservations (status, actual_return_date);
+
+CREATE TABLE reservations_archive (
+    id                   BIGINT PRIMARY KEY,
+    user_id              BIGINT NOT NULL,
+    user_name            VARCHAR(255),
+    book_external_id     BIGINT NOT NULL,
+    book_title           VARCHAR(255),
+    rental_days          INTEGER NOT NULL,
+    start_date           DATE NOT NULL,
+    expected_return_date DATE NOT NULL,
+    actual_return_date   DATE,
+    daily_rate           NUMERIC(10, 2) NOT NULL,
+    total_fee            NUMERIC(10, 2),
+    late_fee             NUMERIC(10, 2),
+    status               VARCHAR(20) NOT NULL,
+    created_at           TIMESTAMP(6) NOT NULL,
+    archived_at          TIMESTAMP(6) NOT NULL,
+    CONSTRAINT ck_reservations_archive_status CHECK (status IN ('ACTIVE', 'RETURNED', 'OVERDUE'))
+);
+
+CREATE INDEX idx_reservations_archive_start_date ON reservations_archive (start_date);
+CREATE INDEX idx_reservations_archive_user ON reservations_archive (user_id);
+
+CREATE TABLE outbox_events (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    aggregate_type VARCHAR(20) NOT NULL,
+    aggregate_id   BIGINT NOT NULL,
+    event_type     VARCHAR(40) NOT NULL,
+    payload        VARCHAR(4000) NOT NULL,
+    created_at     TIMESTAMP(6) NOT NULL,
+    CONSTRAINT ck_outbox_events_aggregate_type CHECK (aggregate_type IN ('BOOK', 'RESERVATION'))
+);
+
+CREATE INDEX idx_outbox_events_created_at ON outbox_events (created_at);
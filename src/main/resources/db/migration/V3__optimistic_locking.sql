@@ -0,0 +1,6 @@
+-- Columnas de versión para el bloqueo optimista de libros y reservas (@Version).
+-- Las filas existentes arrancan en 0.
+
+ALTER TABLE books ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE reservations ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,19 @@
+-- Coordinación entre nodos: leases de tareas exclusivas e invalidaciones de la caché de segundo nivel.
+
+CREATE TABLE node_leases (
+    name        VARCHAR(100) PRIMARY KEY,
+    holder      VARCHAR(200) NOT NULL,
+    acquired_at TIMESTAMP(6) NOT NULL,
+    expires_at  TIMESTAMP(6) NOT NULL
+);
+
+-- Cada nodo lee las filas nuevas por id; las viejas se purgan por fecha
+CREATE TABLE cache_invalidations (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    node_id    VARCHAR(200) NOT NULL,
+    cache_role VARCHAR(255) NOT NULL,
+    entity_id  BIGINT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_cache_invalidations_created_at ON cache_invalidations (created_at);
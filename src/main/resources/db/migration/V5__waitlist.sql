@@ -0,0 +1,26 @@
+-- Lista de espera de libros sin copias: FIFO por id, con holds que vencen en hold_expires_at.
+-- Sus cambios también se publican en el outbox.
+
+CREATE TABLE waitlist_entries (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id          BIGINT NOT NULL,
+    book_external_id BIGINT NOT NULL,
+    rental_days      INTEGER NOT NULL,
+    status           VARCHAR(20) NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL,
+    hold_expires_at  TIMESTAMP(6),
+    reservation_id   BIGINT,
+    version          BIGINT NOT NULL,
+    CONSTRAINT ck_waitlist_entries_status CHECK (status IN ('WAITING', 'HELD', 'CONFIRMED', 'EXPIRED', 'CANCELLED')),
+    CONSTRAINT fk_waitlist_entries_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_waitlist_entries_book FOREIGN KEY (book_external_id) REFERENCES books (external_id)
+);
+
+-- Cola de un libro y holds pendientes
+CREATE INDEX idx_waitlist_entries_book_status ON waitlist_entries (book_external_id, status);
+-- Baja de usuarios
+CREATE INDEX idx_waitlist_entries_user_id ON waitlist_entries (user_id);
+
+ALTER TABLE outbox_events DROP CONSTRAINT ck_outbox_events_aggregate_type;
+ALTER TABLE outbox_events ADD CONSTRAINT ck_outbox_events_aggregate_type
+    CHECK (aggregate_type IN ('BOOK', 'RESERVATION', 'WAITLIST'));
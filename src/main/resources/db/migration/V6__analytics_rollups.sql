@@ -0,0 +1,25 @@
+-- Acumulados diarios para /api/analytics: una fila por día y libro y otra por día y usuario.
+-- Las reservas cuentan el día en que se crean; las devoluciones, el día de actual_return_date.
+-- Sin FKs: el historial se mantiene aunque el libro o el usuario dejen de existir
+
+CREATE TABLE daily_book_stats (
+    stat_date        DATE NOT NULL,
+    book_external_id BIGINT NOT NULL,
+    reservations     BIGINT NOT NULL,
+    revenue          NUMERIC(14, 2) NOT NULL,
+    returns          BIGINT NOT NULL,
+    late_returns     BIGINT NOT NULL,
+    late_fees        NUMERIC(14, 2) NOT NULL,
+    CONSTRAINT pk_daily_book_stats PRIMARY KEY (stat_date, book_external_id)
+);
+
+CREATE TABLE daily_user_stats (
+    stat_date    DATE NOT NULL,
+    user_id      BIGINT NOT NULL,
+    reservations BIGINT NOT NULL,
+    revenue      NUMERIC(14, 2) NOT NULL,
+    returns      BIGINT NOT NULL,
+    late_returns BIGINT NOT NULL,
+    late_fees    NUMERIC(14, 2) NOT NULL,
+    CONSTRAINT pk_daily_user_stats PRIMARY KEY (stat_date, user_id)
+);
@@ -0,0 +1,7 @@
+-- Si cada reserva ya se llevó su copia del inventario. Las futuras la toman cuando la conciliación corre el día
+-- que empiezan, así que la fecha de inicio no alcanza para saber si una devolución tiene que sumar la copia.
+-- Las reservas activas ya empezadas la tomaron con la regla anterior
+
+ALTER TABLE reservations ADD COLUMN copy_taken BOOLEAN DEFAULT FALSE NOT NULL;
+
+UPDATE reservations SET copy_taken = TRUE WHERE status = 'ACTIVE' AND start_date <= CURRENT_DATE;
@@ -0,0 +1,168 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.AnalyticsBackfillReportDTO;
+import com.example.libreria.dto.DailyRevenueDTO;
+import com.example.libreria.dto.LateFeeSummaryDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.TopBookDTO;
+import com.example.libreria.dto.TopUserDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.service.AnalyticsBackfillService;
+import com.example.libreria.service.AnalyticsService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Acumulados diarios: actualización con cada reserva y devolución, recálculo desde reservas
+// y archivo, y consultas de /api/analytics.
+class AnalyticsTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private AnalyticsService analyticsService;
+    
+    @Autowired
+    private AnalyticsBackfillService analyticsBackfillService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Test
+    void testRollupsFollowReservationsAndReturns() {
+        saveBook(970001L, "Rayuela", "20.00", 5);
+        saveBook(970002L, "Bestiario", "10.00", 5);
+        Long first = createUser("primero@acumulados.com");
+        Long second = createUser("segundo@acumulados.com");
+        LocalDate today = LocalDate.now();
+        // La base es compartida: los totales del día se comparan contra lo que ya tenían
+        DailyRevenueDTO revenueBefore = analyticsService.getRevenueByDay(today, today).get(0);
+        LateFeeSummaryDTO lateFeesBefore = analyticsService.getLateFees(today, today);
+        
+        // 970001: dos reservas de 5 días (tarifa 20 * 5 = 100 c/u); 970002: una de 3 días (30)
+        ReservationResponseDTO late = reservationService.createReservation(
+                new ReservationRequestDTO(first, 970001L, 5, today.minusDays(8)));
+        reservationService.createReservation(new ReservationRequestDTO(second, 970001L, 5, today));
+        ReservationResponseDTO onTime = reservationService.createReservation(
+                new ReservationRequestDTO(second, 970002L, 3, today));
+        // Tres días tarde: 20 * 0.15 * 3 = 9
+        reservationService.returnBook(late.getId(), new ReturnBookRequestDTO(today));
+        reservationService.returnBook(onTime.getId(), new ReturnBookRequestDTO(today));
+        
+        // Ventana de hoy: el otro test carga historia hasta ayer
+        List<TopBookDTO> topBooks = analyticsService.getTopBooks(1, 10_000).stream()
+                .filter(book -> book.getExternalId() == 970001L || book.getExternalId() == 970002L)
+                .toList();
+        assertEquals(List.of(970001L, 970002L), topBooks.stream().map(TopBookDTO::getExternalId).toList());
+        assertEquals(2, topBooks.get(0).getReservations());
+        assertEquals(0, new BigDecimal("200.00").compareTo(topBooks.get(0).getRevenue()));
+        assertEquals("Rayuela", topBooks.get(0).getTitle());
+        assertEquals(1, analyticsService.getTopBooks(1, 1).size());
+        
+        // El primero gastó 100 + 9; el segundo, 100 + 30
+        List<TopUserDTO> topUsers = analyticsService.getTopUsers(1, 10_000).stream()
+                .filter(user -> user.getUserId().equals(first) || user.getUserId().equals(second))
+                .toList();
+        assertEquals(List.of(second, first), topUsers.stream().map(TopUserDTO::getUserId).toList());
+        assertEquals(0, new BigDecimal("109.00").compareTo(topUsers.get(1).getSpent()));
+        
+        List<DailyRevenueDTO> revenue = analyticsService.getRevenueByDay(today, today.plusDays(2));
+        assertEquals(3, revenue.size());
+        assertEquals(3, revenue.get(0).getReservations() - revenueBefore.getReservations());
+        assertEquals(0, new BigDecimal("239.00").compareTo(revenue.get(0).getTotal().subtract(revenueBefore.getTotal())));
+        assertEquals(0, revenue.get(2).getReservations());
+        
+        LateFeeSummaryDTO lateFees = analyticsService.getLateFees(today, today);
+        assertEquals(2, lateFees.getReturns() - lateFeesBefore.getReturns());
+        assertEquals(1, lateFees.getLateReturns() - lateFeesBefore.getLateReturns());
+        assertEquals(0, new BigDecimal("9.00").compareTo(lateFees.getLateFees().subtract(lateFeesBefore.getLateFees())));
+        
+        assertThrows(RuntimeException.class, () -> analyticsService.getRevenueByDay(today, today.minusDays(1)));
+        assertThrows(RuntimeException.class, () -> analyticsService.getTopBooks(0, 10));
+    }
+    
+    @Test
+    void testBackfillMatchesGroupedSumsInDatabase() {
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version) "
+                + "SELECT 9700000 + x, 'Libro ' || x, 10.00, 100, 100, 0 FROM SYSTEM_RANGE(1, 40)");
+        // 5000 reservas repartidas en los últimos 60 días, la mitad devueltas (algunas con recargo), y 1000 archivadas
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, version) "
+                + "SELECT 73000000 + x, MOD(x, 5) + 1, 9700000 + MOD(x * 7, 40) + 1, 3, CURRENT_DATE - 60, CURRENT_DATE - 57, "
+                + "CASE WHEN MOD(x, 2) = 0 THEN CURRENT_DATE - MOD(x, 50) - 1 END, 1.00, 3.00, "
+                + "CASE WHEN MOD(x, 4) = 0 THEN 1.50 ELSE 0 END, 'RETURNED', "
+                + "DATEADD('DAY', -MOD(x, 60) - 1, CURRENT_TIMESTAMP), 0 FROM SYSTEM_RANGE(1, 5000)");
+        jdbcTemplate.update("INSERT INTO reservations_archive (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, archived_at) "
+                + "SELECT 74000000 + x, MOD(x, 5) + 1, 9700000 + MOD(x, 40) + 1, 3, CURRENT_DATE - 400, CURRENT_DATE - 397, "
+                + "CURRENT_DATE - 390, 1.00, 3.00, 2.00, 'RETURNED', DATEADD('DAY', -400, CURRENT_TIMESTAMP), "
+                + "CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, 1000)");
+        // Un acumulado sin reservas detrás: el recálculo lo lleva a cero y lo borra
+        jdbcTemplate.update("INSERT INTO daily_book_stats (stat_date, book_external_id, reservations, revenue, returns, "
+                + "late_returns, late_fees) VALUES (CURRENT_DATE - 3, 9700041, 7, 70.00, 0, 0, 0)");
+        
+        AnalyticsBackfillReportDTO report = analyticsBackfillService.backfill(LocalDate.now());
+        assertTrue(report.getScannedReservations() >= 6000);
+        
+        Map<String, Object> expected = jdbcTemplate.queryForMap("SELECT COUNT(*) AS reservations, SUM(total_fee) AS revenue "
+                + "FROM (SELECT total_fee, book_external_id FROM reservations UNION ALL "
+                + "SELECT total_fee, book_external_id FROM reservations_archive) r WHERE book_external_id BETWEEN 9700001 AND 9700040");
+        Map<String, Object> actual = jdbcTemplate.queryForMap("SELECT SUM(reservations) AS reservations, SUM(revenue) AS revenue "
+                + "FROM daily_book_stats WHERE book_external_id BETWEEN 9700001 AND 9700040");
+        assertEquals(((Number) expected.get("RESERVATIONS")).longValue(), ((Number) actual.get("RESERVATIONS")).longValue());
+        assertEquals(0, ((BigDecimal) expected.get("REVENUE")).compareTo((BigDecimal) actual.get("REVENUE")));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM daily_book_stats WHERE book_external_id = 9700041",
+                Integer.class));
+        
+        // Un día puntual por libro contra el agrupado directo sobre reservations
+        LocalDate day = LocalDate.now().minusDays(11);
+        List<Map<String, Object>> expectedDay = jdbcTemplate.queryForList("SELECT book_external_id, COUNT(*) AS returns, "
+                + "SUM(late_fee) AS late_fees FROM reservations WHERE actual_return_date = ? "
+                + "GROUP BY book_external_id ORDER BY book_external_id", day);
+        List<Map<String, Object>> actualDay = jdbcTemplate.queryForList("SELECT book_external_id, returns, late_fees "
+                + "FROM daily_book_stats WHERE stat_date = ? AND returns > 0 ORDER BY book_external_id", day);
+        assertFalse(expectedDay.isEmpty());
+        assertEquals(expectedDay.size(), actualDay.size());
+        for (int i = 0; i < expectedDay.size(); i++) {
+            assertEquals(expectedDay.get(i).get("BOOK_EXTERNAL_ID"), actualDay.get(i).get("BOOK_EXTERNAL_ID"));
+            assertEquals(((Number) expectedDay.get(i).get("RETURNS")).longValue(), ((Number) actualDay.get(i).get("RETURNS")).longValue());
+            assertEquals(0, ((BigDecimal) expectedDay.get(i).get("LATE_FEES")).compareTo((BigDecimal) actualDay.get(i).get("LATE_FEES")));
+        }
+        
+        // Volver a correrlo no suma dos veces
+        analyticsBackfillService.backfill(LocalDate.now());
+        assertEquals(((Number) expected.get("RESERVATIONS")).longValue(), jdbcTemplate.queryForObject(
+                "SELECT SUM(reservations) FROM daily_book_stats WHERE book_external_id BETWEEN 9700001 AND 9700040", Long.class));
+        
+        // El archivo también cuenta: a un año, la ventana de 30 días no lo ve pero la de 500 sí
+        long recent = backfilledBookReservations(30);
+        long withArchive = backfilledBookReservations(500);
+        assertEquals(1000, withArchive - backfilledBookReservations(399));
+        assertTrue(recent < withArchive);
+    }
+    
+    private long backfilledBookReservations(int days) {
+        return analyticsService.getTopBooks(days, 10_000).stream()
+                .filter(book -> book.getExternalId() > 9700000L && book.getExternalId() <= 9700040L)
+                .mapToLong(TopBookDTO::getReservations)
+                .sum();
+    }
+    
+    private Long createUser(String email) {
+        UserRequestDTO request = new UserRequestDTO();
+        request.setName("Lector " + email);
+        request.setEmail(email);
+        return userService.createUser(request).getId();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.AvailabilityWindowDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.AvailabilityCalendar;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.InventoryReconciliationService;
+import com.example.libreria.service.ReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Reservas con fecha de inicio futura contra el calendario de disponibilidad.
+class AvailabilityCalendarTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private AvailabilityCalendar availabilityCalendar;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private InventoryReconciliationService inventoryReconciliationService;
+    
+    @Test
+    void testFutureReservationsBookDaysWithoutTakingCopies() {
+        saveBook(980001L, 1);
+        LocalDate today = LocalDate.now();
+        
+        ReservationResponseDTO future = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 980001L, 5, today.plusDays(10)));
+        // La copia sigue en el estante hasta el día 10
+        assertEquals(1, bookService.getBookByExternalId(980001L).getAvailableQuantity());
+        
+        // Se superpone con los días 10 a 14
+        RuntimeException overlap = assertThrows(RuntimeException.class, () -> reservationService.createReservation(
+                new ReservationRequestDTO(2L, 980001L, 3, today.plusDays(12))));
+        assertTrue(overlap.getMessage().contains("primera fecha disponible: " + today.plusDays(15)));
+        // Hoy por 7 días entra antes de la reserva futura y sí se lleva la copia
+        reservationService.createReservation(new ReservationRequestDTO(2L, 980001L, 7, today));
+        assertEquals(0, bookService.getBookByExternalId(980001L).getAvailableQuantity());
+        assertThrows(RuntimeException.class, () -> reservationService.createReservation(
+                new ReservationRequestDTO(3L, 980001L, 10, today.plusDays(5))));
+        
+        AvailabilityWindowDTO busy = reservationService.checkAvailability(980001L, today.plusDays(3), 4);
+        assertFalse(busy.isAvailable());
+        assertEquals(today.plusDays(15), busy.getFirstAvailableDate());
+        // Entre las dos reservas quedan libres los días 7, 8 y 9
+        AvailabilityWindowDTO gap = reservationService.checkAvailability(980001L, today.plusDays(7), 3);
+        assertTrue(gap.isAvailable());
+        assertEquals(today.plusDays(7), gap.getFirstAvailableDate());
+        
+        // Cancelar la reserva futura libera sus días pero no suma una copia que nunca tomó
+        reservationService.returnBook(future.getId(), new ReturnBookRequestDTO(today));
+        assertEquals(0, bookService.getBookByExternalId(980001L).getAvailableQuantity());
+        assertTrue(reservationService.checkAvailability(980001L, today.plusDays(10), 5).isAvailable());
+        assertFalse(hasDrift(980001L));
+    }
+    
+    @Test
+    void testReservationTakesItsCopyOnStartDay() {
+        saveBook(980002L, 2);
+        LocalDate today = LocalDate.now();
+        ReservationResponseDTO reservation = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 980002L, 4, today.plusDays(3)));
+        assertEquals(2, bookService.getBookByExternalId(980002L).getAvailableQuantity());
+        
+        // Pasan los días: la reserva empieza hoy
+        jdbcTemplate.update("UPDATE reservations SET start_date = ?, expected_return_date = ? WHERE id = ?",
+                today, today.plusDays(4), reservation.getId());
+        assertEquals(1, inventoryReconciliationService.reconcileStartingOn(today).getFixedBooks());
+        assertEquals(1, bookService.getBookByExternalId(980002L).getAvailableQuantity());
+        
+        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(today));
+        assertEquals(2, bookService.getBookByExternalId(980002L).getAvailableQuantity());
+    }
+    
+    @Test
+    void testRebuildFromDatabaseAndStockChanges() {
+        saveBook(980003L, 2);
+        LocalDate today = LocalDate.now();
+        // Dos reservas futuras cargadas sin pasar por el servicio: el calendario las ve recién al reconstruirse
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, daily_rate, late_fee, status, created_at, version) "
+                + "SELECT 60000000 + x, x, 980003, 10, ?, ?, 1.00, 0, 'ACTIVE', CURRENT_TIMESTAMP, 0 "
+                + "FROM SYSTEM_RANGE(1, 2)", today.plusDays(20), today.plusDays(30));
+        
+        availabilityCalendar.rebuild();
+        
+        assertFalse(availabilityCalendar.isAvailable(980003L, today.plusDays(25), 1));
+        assertTrue(availabilityCalendar.isAvailable(980003L, today.plusDays(10), 10));
+        assertEquals(today.plusDays(30), availabilityCalendar.firstAvailableDate(980003L, today.plusDays(15), 7));
+        
+        // Más stock: los días completos dejan de estarlo
+        bookService.updateStock(980003L, 3);
+        assertTrue(availabilityCalendar.isAvailable(980003L, today.plusDays(25), 1));
+        reservationService.createReservation(new ReservationRequestDTO(3L, 980003L, 5, today.plusDays(22)));
+        assertFalse(availabilityCalendar.isAvailable(980003L, today.plusDays(25), 1));
+    }
+    
+    @Test
+    void testBookingOfAnotherNodeIsSeenBeforeDeciding() {
+        saveBook(980004L, 1);
+        LocalDate today = LocalDate.now();
+        assertTrue(reservationService.checkAvailability(980004L, today.plusDays(10), 5).isAvailable());
+        
+        // Otro nodo reserva la única copia para los días 10 a 14: inserta la reserva y sube la versión del libro,
+        // sin que este nodo se entere por su calendario
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, daily_rate, late_fee, status, created_at, version) "
+                + "VALUES (60000010, 1, 980004, 5, ?, ?, 1.00, 0, 'ACTIVE', CURRENT_TIMESTAMP, 0)",
+                today.plusDays(10), today.plusDays(15));
+        jdbcTemplate.update("UPDATE books SET version = version + 1 WHERE external_id = 980004");
+        
+        RuntimeException overlap = assertThrows(RuntimeException.class, () -> reservationService.createReservation(
+                new ReservationRequestDTO(2L, 980004L, 5, today.plusDays(12))));
+        assertTrue(overlap.getMessage().contains("primera fecha disponible: " + today.plusDays(15)));
+        reservationService.createReservation(new ReservationRequestDTO(2L, 980004L, 5, today.plusDays(15)));
+        assertFalse(reservationService.checkAvailability(980004L, today.plusDays(17), 1).isAvailable());
+    }
+    
+    @Test
+    void testReturnBeforeTheCopyIsTakenDoesNotAddIt() {
+        saveBook(980005L, 1);
+        LocalDate today = LocalDate.now();
+        ReservationResponseDTO reservation = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 980005L, 4, today.plusDays(3)));
+        
+        // Empieza hoy pero la corrida que le da la copia todavía no pasó: la copia sigue en el estante
+        jdbcTemplate.update("UPDATE reservations SET start_date = ?, expected_return_date = ? WHERE id = ?",
+                today, today.plusDays(4), reservation.getId());
+        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(today));
+        
+        assertEquals(1, bookService.getBookByExternalId(980005L).getAvailableQuantity());
+        assertFalse(hasDrift(980005L));
+    }
+    
+    // La conciliación recorre toda la base compartida: solo interesa el libro del test
+    private boolean hasDrift(Long externalId) {
+        return inventoryReconciliationService.reconcile(true).getDrifts().stream()
+                .anyMatch(drift -> drift.getExternalId().equals(externalId));
+    }
+}
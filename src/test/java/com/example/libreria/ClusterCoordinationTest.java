@@ -0,0 +1,143 @@
+package com.example.libreria;
+
+import com.example.libreria.cluster.CacheInvalidationPoller;
+import com.example.libreria.cluster.ClusterNode;
+import com.example.libreria.cluster.LeaseService;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.CacheInvalidation;
+import com.example.libreria.repository.CacheInvalidationRepository;
+import com.example.libreria.repository.NodeLeaseRepository;
+import com.example.libreria.service.BookService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Coordinación entre réplicas sobre la misma base. El "otro nodo" se simula con un segundo LeaseService,
+// filas de invalidación con otro node_id y UPDATE por JDBC que no pasan por la caché local.
+class ClusterCoordinationTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private LeaseService leaseService;
+    
+    @Autowired
+    private NodeLeaseRepository nodeLeaseRepository;
+    
+    @Autowired
+    private CacheInvalidationRepository cacheInvalidationRepository;
+    
+    @Autowired
+    private CacheInvalidationPoller cacheInvalidationPoller;
+    
+    @Autowired
+    private ClusterNode clusterNode;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    private SessionFactory sessionFactory;
+    
+    @BeforeEach
+    void setUp() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        // Primera lectura: ubica el cursor al final de la tabla
+        cacheInvalidationPoller.poll();
+    }
+    
+    @Test
+    void testLeaseIsExclusiveAcrossNodesUntilReleasedOrExpired() throws InterruptedException {
+        LeaseService otherNode = otherNodeLeaseService(Duration.ofMillis(200));
+        
+        assertTrue(leaseService.tryAcquire("test-exclusive"));
+        assertFalse(otherNode.tryAcquire("test-exclusive"));
+        // Tampoco dos veces en el mismo nodo
+        assertFalse(leaseService.tryAcquire("test-exclusive"));
+        
+        leaseService.release("test-exclusive");
+        assertTrue(otherNode.tryAcquire("test-exclusive"));
+        assertFalse(leaseService.tryAcquire("test-exclusive"));
+        
+        // El otro nodo "muere" sin liberarlo: al vencer se puede tomar
+        Thread.sleep(300);
+        assertTrue(leaseService.tryAcquire("test-exclusive"));
+        assertEquals(clusterNode.getId(), nodeLeaseRepository.findById("test-exclusive").orElseThrow().getHolder());
+        leaseService.release("test-exclusive");
+    }
+    
+    @Test
+    void testCachedWritesAreRecordedInTheSameTransaction() {
+        saveBook(930001L, 5);
+        long before = cacheInvalidationRepository.findMaxId();
+        
+        bookService.updateStock(930001L, 8);
+        
+        List<CacheInvalidation> recorded = cacheInvalidationRepository.findAll().stream()
+                .filter(invalidation -> invalidation.getId() > before)
+                .toList();
+        assertTrue(recorded.stream().anyMatch(invalidation ->
+                invalidation.getCacheRole().equals(Book.class.getName())
+                        && invalidation.getEntityId() == 930001L
+                        && invalidation.getNodeId().equals(clusterNode.getId())));
+        
+        // Un cambio que se deshace no deja invalidaciones
+        long afterCommit = cacheInvalidationRepository.findMaxId();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Book book = bookRepository.findByExternalId(930001L).orElseThrow();
+            book.setStockQuantity(20);
+            bookRepository.flush();
+            status.setRollbackOnly();
+        });
+        assertEquals(afterCommit, cacheInvalidationRepository.findMaxId());
+    }
+    
+    @Test
+    void testInvalidationsFromOtherNodesEvictLocalEntries() {
+        saveBook(930002L, 5);
+        bookService.getBookByExternalId(930002L);
+        assertTrue(sessionFactory.getCache().containsEntity(Book.class, 930002L));
+        
+        cacheInvalidationRepository.save(new CacheInvalidation(null, "otro-nodo", Book.class.getName(), 930002L, LocalDateTime.now()));
+        cacheInvalidationPoller.poll();
+        
+        assertFalse(sessionFactory.getCache().containsEntity(Book.class, 930002L));
+    }
+    
+    @Test
+    void testStaleCachedBookIsEvictedAndRetriedAfterRemoteChange() {
+        saveBook(930003L, 5);
+        bookService.getBookByExternalId(930003L);
+        
+        // Otro nodo tomó una copia: la base tiene otra versión y la caché local todavía no se enteró
+        jdbcTemplate.update("UPDATE books SET available_quantity = available_quantity - 1, version = version + 1 " +
+                "WHERE external_id = ?", 930003L);
+        assertTrue(sessionFactory.getCache().containsEntity(Book.class, 930003L));
+        
+        // El UPDATE falla por versión; con READ_WRITE la entrada queda bloqueada al deshacerse
+        // y el reintento lee la fila de la base
+        bookService.decreaseAvailableQuantity(930003L);
+        
+        assertEquals(3, bookService.getBookByExternalId(930003L).getAvailableQuantity());
+    }
+    
+    private LeaseService otherNodeLeaseService(Duration ttl) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return new LeaseService(nodeLeaseRepository, transactionTemplate, new ClusterNode("otro-nodo"), ttl);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.libreria;
+
+import com.example.libreria.cluster.LeaseService;
+import com.example.libreria.dto.InventoryDriftDTO;
+import com.example.libreria.dto.InventoryReconciliationReportDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.InventoryReconciliationJob;
+import com.example.libreria.service.InventoryReconciliationService;
+import com.example.libreria.service.ReservationService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Conciliación de disponibles contra reservas activas, con diferencias armadas por JDBC.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:inventory_reconciliation_test",
+        "inventory.reconciliation.enabled=false",
+        "inventory.reconciliation.batch-size=50",
+        "inventory.reconciliation.max-reported-drifts=100"
+})
+class InventoryReconciliationTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private InventoryReconciliationService inventoryReconciliationService;
+    
+    @Autowired
+    private InventoryReconciliationJob inventoryReconciliationJob;
+    
+    @Autowired
+    private LeaseService leaseService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @BeforeEach
+    void setUp() {
+        // Cada test arranca con el inventario cuadrado
+        inventoryReconciliationService.reconcile(false);
+    }
+    
+    @Test
+    void testDryRunReportsAndRealRunFixesDrift() {
+        saveBook(960001L, 5);
+        saveBook(960002L, 3);
+        saveBook(960003L, 4);
+        reservationService.createReservation(new ReservationRequestDTO(1L, 960001L, 5, LocalDate.now()));
+        reservationService.createReservation(new ReservationRequestDTO(2L, 960001L, 5, LocalDate.now()));
+        for (long userId = 1; userId <= 3; userId++) {
+            reservationService.createReservation(new ReservationRequestDTO(userId, 960003L, 5, LocalDate.now()));
+        }
+        // Queda en la caché de segundo nivel con 3 disponibles
+        assertEquals(3, bookService.getBookByExternalId(960001L).getAvailableQuantity());
+        
+        // Copias "perdidas" o "fantasma" que no pasan por Hibernate, y un stock menor a las reservas activas
+        jdbcTemplate.update("UPDATE books SET available_quantity = 5 WHERE external_id = 960001");
+        jdbcTemplate.update("UPDATE books SET available_quantity = 1 WHERE external_id = 960002");
+        jdbcTemplate.update("UPDATE books SET stock_quantity = 2 WHERE external_id = 960003");
+        
+        InventoryReconciliationReportDTO dryRun = inventoryReconciliationJob.reconcile(true).orElseThrow();
+        assertTrue(dryRun.isDryRun());
+        assertEquals(3, dryRun.getDriftedBooks());
+        assertEquals(0, dryRun.getFixedBooks());
+        assertEquals(1, dryRun.getOverbookedBooks());
+        Map<Long, InventoryDriftDTO> detected = byExternalId(dryRun);
+        assertEquals(new InventoryDriftDTO(960001L, 5, 5, 2, 0, 3, InventoryDriftDTO.Status.DETECTED), detected.get(960001L));
+        assertEquals(new InventoryDriftDTO(960002L, 3, 1, 0, 0, 3, InventoryDriftDTO.Status.DETECTED), detected.get(960002L));
+        assertEquals(new InventoryDriftDTO(960003L, 2, 1, 3, 0, 0, InventoryDriftDTO.Status.DETECTED), detected.get(960003L));
+        assertEquals(5, availableInDatabase(960001L));
+        
+        InventoryReconciliationReportDTO fixed = inventoryReconciliationJob.reconcile(false).orElseThrow();
+        assertEquals(3, fixed.getFixedBooks());
+        assertEquals(0, fixed.getChangedBooks());
+        assertTrue(fixed.getDrifts().stream().allMatch(drift -> drift.getStatus() == InventoryDriftDTO.Status.FIXED));
+        assertEquals(3, availableInDatabase(960001L));
+        assertEquals(3, availableInDatabase(960002L));
+        assertEquals(0, availableInDatabase(960003L));
+        // La entrada cacheada se descartó y los suscriptores del outbox se enteran
+        assertFalse(entityManagerFactory.unwrap(SessionFactory.class).getCache().containsEntity(Book.class, 960001L));
+        assertEquals(3, bookService.getBookByExternalId(960001L).getAvailableQuantity());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events WHERE event_type = 'BOOK_RECONCILED' "
+                + "AND aggregate_id IN (960001, 960002, 960003)", Integer.class));
+        
+        // El UPDATE subió la versión: una reserva posterior no choca con una versión vieja
+        reservationService.createReservation(new ReservationRequestDTO(4L, 960002L, 5, LocalDate.now()));
+        assertEquals(2, availableInDatabase(960002L));
+        assertEquals(0, inventoryReconciliationService.reconcile(true).getDriftedBooks());
+    }
+    
+    @Test
+    void testGroupedCountOverManyReservationsLoadsNoEntities() {
+        // 2000 libros con 15 reservas activas y 15 devueltas cada uno; uno de cada cinco desfasado
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version) "
+                + "SELECT 9700000 + x, 'Libro ' || x, 10.00, 100, CASE WHEN MOD(x, 5) = 0 THEN 82 ELSE 85 END, 0 "
+                + "FROM SYSTEM_RANGE(1, 2000)");
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, daily_rate, late_fee, status, created_at, version) "
+                + "SELECT 50000000 + x, MOD(x, 5) + 1, 9700000 + MOD(x, 2000) + 1, 7, CURRENT_DATE, CURRENT_DATE + 7, "
+                + "1.00, 0, CASE WHEN x < 30000 THEN 'ACTIVE' ELSE 'RETURNED' END, CURRENT_TIMESTAMP, 0 "
+                + "FROM SYSTEM_RANGE(0, 59999)");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        InventoryReconciliationReportDTO report = inventoryReconciliationService.reconcile(false);
+        
+        assertEquals(400, report.getDriftedBooks());
+        assertEquals(400, report.getFixedBooks());
+        assertEquals(100, report.getDrifts().size());
+        assertTrue(report.isDriftsTruncated());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE external_id > 9700000 "
+                + "AND available_quantity <> 85", Integer.class));
+        assertEquals(0, statistics.getEntityStatistics(Book.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getLoadCount());
+    }
+    
+    @Test
+    void testRunIsSkippedWhileAnotherHoldsTheLease() {
+        assertTrue(leaseService.tryAcquire("inventory-reconciliation"));
+        try {
+            assertTrue(inventoryReconciliationJob.reconcile(true).isEmpty());
+        } finally {
+            leaseService.release("inventory-reconciliation");
+        }
+        assertTrue(inventoryReconciliationJob.reconcile(true).isPresent());
+    }
+    
+    private Map<Long, InventoryDriftDTO> byExternalId(InventoryReconciliationReportDTO report) {
+        return report.getDrifts().stream()
+                .collect(Collectors.toMap(InventoryDriftDTO::getExternalId, drift -> drift));
+    }
+    
+    private int availableInDatabase(Long externalId) {
+        return jdbcTemplate.queryForObject("SELECT available_quantity FROM books WHERE external_id = ?",
+                Integer.class, externalId);
+    }
+}
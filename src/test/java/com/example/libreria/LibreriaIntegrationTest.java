@@ -0,0 +1,52 @@
+package com.example.libreria;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// Base de los tests de integración. Todos comparten un contexto y su H2 (data.sql se carga una vez): cada test
+// usa sus propios external_id, usuarios e IDs de reserva y compara solo contra sus filas, no contra totales.
+// El que necesita otras properties redeclara @SpringBootTest con ellas y con su propia spring.datasource.url,
+// porque data.sql no puede cargarse dos veces en la misma H2
+@SpringBootTest
+abstract class LibreriaIntegrationTest {
+    
+    @Autowired
+    protected BookRepository bookRepository;
+    
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+    
+    protected Book saveBook(Long externalId, int stock) {
+        return saveBook(externalId, "Libro " + externalId, "12.00", stock);
+    }
+    
+    protected Book saveBook(Long externalId, String title, String price, int stock) {
+        return bookRepository.save(book(externalId, title, price, stock));
+    }
+    
+    protected List<Book> saveBooks(List<Long> externalIds, int stock) {
+        List<Book> books = new ArrayList<>();
+        for (Long externalId : externalIds) {
+            books.add(book(externalId, "Libro " + externalId, "12.00", stock));
+        }
+        return bookRepository.saveAll(books);
+    }
+    
+    private static Book book(Long externalId, String title, String price, int stock) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle(title);
+        book.setAuthorName(List.of("Julio Cortázar"));
+        book.setPrice(new BigDecimal(price));
+        book.setStockQuantity(stock);
+        book.setAvailableQuantity(stock);
+        return book;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ReservationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cientos de hilos reservando y devolviendo el mismo libro o cambiando su stock: con @Version y reintentos
+// ninguna actualización de availableQuantity se pierde. Las reservas y devoluciones además se ordenan con el
+// bloqueo de la fila del libro que toma AvailabilityCalendar.
+class OptimisticLockingTest extends LibreriaIntegrationTest {
+    
+    private static final int THREADS = 200;
+    private static final int STOCK = 40;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ReservationRepository reservationRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Test
+    void testConcurrentReservationsAndReturnsKeepExactCounts() throws Exception {
+        long externalId = 920001L;
+        saveBook(externalId, STOCK);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger returned = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            long userId = 1 + (i % 5);
+            boolean giveBack = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ReservationResponseDTO reservation;
+                try {
+                    reservation = reservationService.createReservation(
+                            new ReservationRequestDTO(userId, externalId, 3, LocalDate.now()));
+                } catch (RuntimeException e) {
+                    // Sin copias disponibles o reintentos agotados: la transacción se deshizo entera
+                    return null;
+                }
+                reserved.incrementAndGet();
+                if (giveBack) {
+                    try {
+                        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+                        returned.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // La reserva sigue activa y la copia sigue tomada
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        
+        long active = reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE).stream()
+                .filter(reservation -> reservation.getBook().getExternalId() == externalId)
+                .count();
+        int available = bookService.getBookByExternalId(externalId).getAvailableQuantity();
+        
+        assertTrue(reserved.get() > 0);
+        assertEquals(reserved.get() - returned.get(), active);
+        assertEquals(STOCK - active, available);
+        assertTrue(available >= 0);
+    }
+    
+    @Test
+    void testStaleStockUpdateIsRetriedInsteadOfOverwritten() throws Exception {
+        long externalId = 920002L;
+        saveBook(externalId, 100);
+        double conflictsBefore = meterRegistry.counter("libreria.optimistic.lock.conflicts").count();
+        
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean restock = i % 10 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    if (restock) {
+                        // Vuelve a fijar el mismo stock: no puede deshacer las copias tomadas mientras tanto
+                        bookService.updateStock(externalId, 100);
+                    } else {
+                        bookService.decreaseAvailableQuantity(externalId);
+                        taken.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    // Reintentos agotados: no cambió nada
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        
+        assertEquals(100 - taken.get(), bookService.getBookByExternalId(externalId).getAvailableQuantity());
+        assertEquals(100, bookService.getBookByExternalId(externalId).getStockQuantity());
+        // Con tantos hilos sobre la misma fila tiene que haber habido choques (y reintentos)
+        assertTrue(meterRegistry.counter("libreria.optimistic.lock.conflicts").count() > conflictsBefore);
+    }
+}
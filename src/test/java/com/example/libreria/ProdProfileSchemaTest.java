@@ -0,0 +1,104 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationArchiveRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.ReservationArchiveService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Perfil prod contra una H2 en archivo nueva: Flyway crea el esquema y Hibernate lo valida al arrancar
+@SpringBootTest
+@ActiveProfiles("prod")
+class ProdProfileSchemaTest {
+    
+    @TempDir
+    static Path dataDir;
+    
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("LIBRERIA_DATA_DIR", dataDir::toString);
+        registry.add("journal.directory", () -> dataDir.resolve("journal").toString());
+    }
+    
+    @Autowired
+    private Flyway flyway;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private ReservationArchiveService reservationArchiveService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ReservationRepository reservationRepository;
+    
+    @Autowired
+    private ReservationArchiveRepository reservationArchiveRepository;
+    
+    @Test
+    void testMigrationsAppliedAndRepositoriesWork() {
+        assertEquals("7", flyway.info().current().getVersion().getVersion());
+        // data.sql no se carga en prod
+        assertEquals(0, userRepository.count());
+        
+        UserResponseDTO user = userService.createUser(new UserRequestDTO("Juan Pérez", "juan@example.com", null));
+        assertTrue(userRepository.existsByEmail("juan@example.com"));
+        
+        Book book = new Book();
+        book.setExternalId(258027L);
+        book.setTitle("The Lord of the Rings");
+        book.setAuthorName(List.of("J. R. R. Tolkien"));
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(3);
+        book.setAvailableQuantity(3);
+        bookRepository.save(book);
+        assertTrue(bookRepository.findByExternalId(258027L).isPresent());
+        
+        LocalDate start = LocalDate.now().minusYears(2);
+        ReservationResponseDTO reservation = reservationService.createReservation(
+                new ReservationRequestDTO(user.getId(), 258027L, 7, start));
+        assertEquals(1, reservationRepository.findByUserId(user.getId()).size());
+        assertEquals(1, reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE).size());
+        
+        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(start.plusDays(7)));
+        
+        // El INSERT ... SELECT nativo del archivo también tiene que correr sobre este esquema
+        int archived = reservationArchiveService.archiveChunk(LocalDate.now().minusDays(180), 100);
+        assertEquals(1, archived);
+        assertEquals(1, reservationArchiveRepository.count());
+        assertEquals(0, reservationRepository.count());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.RelatedBookDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.service.CoReservationModel;
+import com.example.libreria.service.RecommendationService;
+import com.example.libreria.service.ReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Recomendaciones por co-reservas: reconstrucción desde reservas y archivo, actualización incremental
+// y comparación contra el conteo en SQL.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recommendation_test",
+        "recommendations.build-parallelism=4"
+})
+class RecommendationTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private CoReservationModel coReservationModel;
+    
+    @Autowired
+    private RecommendationService recommendationService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Test
+    void testRelatedBooksFromHistoryAndNewReservations() {
+        for (long externalId = 990001L; externalId <= 990004L; externalId++) {
+            saveBook(externalId, "Libro " + externalId, "11.00", 5);
+        }
+        // A = 990001, B = 990002, C = 990003, D = 990004. El 1 leyó A, B y C; el 2, A y B (A dos veces);
+        // el 3, A y C (C ya archivada); el 4, D; el 5, A, B y D
+        insertReservation(71000001L, 1L, 990001L);
+        insertReservation(71000002L, 1L, 990002L);
+        insertReservation(71000003L, 1L, 990003L);
+        insertReservation(71000004L, 2L, 990001L);
+        insertReservation(71000005L, 2L, 990001L);
+        insertReservation(71000006L, 2L, 990002L);
+        insertReservation(71000007L, 3L, 990001L);
+        insertArchivedReservation(71000008L, 3L, 990003L);
+        insertReservation(71000009L, 4L, 990004L);
+        insertReservation(71000010L, 5L, 990001L);
+        insertReservation(71000011L, 5L, 990002L);
+        insertReservation(71000012L, 5L, 990004L);
+        
+        coReservationModel.rebuild();
+        
+        // Lectores: A 4, B 3, C 2, D 2
+        List<RelatedBookDTO> related = recommendationService.getRelatedBooks(990001L, 10);
+        assertEquals(List.of(990002L, 990003L, 990004L), related.stream().map(RelatedBookDTO::getExternalId).toList());
+        assertEquals(3, related.get(0).getCoReservations());
+        assertEquals(3 / Math.sqrt(12), related.get(0).getScore(), 1e-9);
+        assertEquals(2 / Math.sqrt(8), related.get(1).getScore(), 1e-9);
+        assertEquals("Libro 990002", related.get(0).getTitle());
+        assertEquals(2, recommendationService.getRelatedBooks(990001L, 2).size());
+        // D comparte un lector con A y otro con B: B tiene menos lectores y queda primero
+        assertEquals(List.of(990002L, 990001L), recommendationService.getRelatedBooks(990004L, 10).stream()
+                .map(RelatedBookDTO::getExternalId).toList());
+        
+        // El 4 reserva C: D pasa a cruzarse con C (3 lectores, empata con B y desempata el ID)
+        reservationService.createReservation(new ReservationRequestDTO(4L, 990003L, 5, LocalDate.now()));
+        List<RelatedBookDTO> afterReservation = recommendationService.getRelatedBooks(990004L, 10);
+        assertEquals(List.of(990002L, 990003L, 990001L), afterReservation.stream().map(RelatedBookDTO::getExternalId).toList());
+        assertEquals(1 / Math.sqrt(6), afterReservation.get(1).getScore(), 1e-9);
+        assertEquals(1, afterReservation.get(1).getCoReservations());
+        
+        assertThrows(RuntimeException.class, () -> recommendationService.getRelatedBooks(999999L, 10));
+    }
+    
+    @Test
+    void testParallelBuildMatchesGroupedCountInDatabase() {
+        // 3000 lectores sobre 50 libros, con repeticiones
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version) "
+                + "SELECT 9800000 + x, 'Libro ' || x, 10.00, 100, 100, 0 FROM SYSTEM_RANGE(1, 50)");
+        jdbcTemplate.update("INSERT INTO users (id, name, email, created_at) "
+                + "SELECT 8000000 + x, 'Lector ' || x, 'lector' || x || '@co.com', CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, 3000)");
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, daily_rate, late_fee, status, created_at, version) "
+                + "SELECT 72000000 + x, 8000000 + MOD(x, 3000) + 1, 9800000 + MOD(x * 7 + x / 3000, 50) + 1, 7, "
+                + "CURRENT_DATE, CURRENT_DATE + 7, 1.00, 0, 'RETURNED', CURRENT_TIMESTAMP, 0 FROM SYSTEM_RANGE(0, 23999)");
+        
+        coReservationModel.rebuild();
+        
+        Map<Long, Integer> expected = jdbcTemplate.queryForList("SELECT b.book_external_id AS book, COUNT(*) AS co FROM "
+                + "(SELECT DISTINCT user_id, book_external_id FROM reservations) a "
+                + "JOIN (SELECT DISTINCT user_id, book_external_id FROM reservations) b "
+                + "ON a.user_id = b.user_id AND a.book_external_id <> b.book_external_id "
+                + "WHERE a.book_external_id = 9800001 GROUP BY b.book_external_id").stream()
+                .collect(Collectors.toMap(row -> ((Number) row.get("BOOK")).longValue(),
+                        row -> ((Number) row.get("CO")).intValue()));
+        Map<Long, Integer> actual = coReservationModel.related(9800001L, 50).stream()
+                .collect(Collectors.toMap(CoReservationModel.Related::externalId, CoReservationModel.Related::coReservations));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+    
+    @Test
+    void testReaderCrossingTheLimitIncrementallyMatchesRebuild() {
+        for (long externalId = 990011L; externalId <= 990014L; externalId++) {
+            saveBook(externalId, 5);
+        }
+        jdbcTemplate.update("INSERT INTO users (id, name, email, created_at) VALUES "
+                + "(8100001, 'Lector Tope', 'lector.tope@co.com', CURRENT_TIMESTAMP), "
+                + "(8100002, 'Lector Par', 'lector.par@co.com', CURRENT_TIMESTAMP)");
+        // El 8100001 leyó E, F y G (justo el tope); el 8100002, E y F
+        insertReservation(71000101L, 8100001L, 990011L);
+        insertReservation(71000102L, 8100001L, 990012L);
+        insertReservation(71000103L, 8100001L, 990013L);
+        insertReservation(71000104L, 8100002L, 990011L);
+        insertReservation(71000105L, 8100002L, 990012L);
+        
+        ReflectionTestUtils.setField(coReservationModel, "maxBooksPerUser", 3);
+        try {
+            coReservationModel.rebuild();
+            assertEquals(Map.of(990012L, 2, 990013L, 1), coReservations(990011L));
+            
+            // Con H pasa el tope: sus pares con E, F y G se restan y queda solo lo del 8100002
+            reservationService.createReservation(new ReservationRequestDTO(8100001L, 990014L, 5, LocalDate.now()));
+            Map<Long, Integer> incremental = coReservations(990011L);
+            assertEquals(Map.of(990012L, 1), incremental);
+            assertEquals(Map.of(), coReservations(990013L));
+            assertEquals(Map.of(), coReservations(990014L));
+            
+            coReservationModel.rebuild();
+            assertEquals(incremental, coReservations(990011L));
+            assertEquals(Map.of(), coReservations(990013L));
+        } finally {
+            ReflectionTestUtils.setField(coReservationModel, "maxBooksPerUser", 200);
+        }
+    }
+    
+    private Map<Long, Integer> coReservations(long bookExternalId) {
+        return coReservationModel.related(bookExternalId, 10).stream()
+                .collect(Collectors.toMap(CoReservationModel.Related::externalId, CoReservationModel.Related::coReservations));
+    }
+    
+    private void insertReservation(Long id, Long userId, Long bookExternalId) {
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, late_fee, status, created_at, version) "
+                + "VALUES (?, ?, ?, 7, CURRENT_DATE - 30, CURRENT_DATE - 23, CURRENT_DATE - 23, 1.00, 0, 'RETURNED', "
+                + "CURRENT_TIMESTAMP, 0)", id, userId, bookExternalId);
+    }
+    
+    private void insertArchivedReservation(Long id, Long userId, Long bookExternalId) {
+        jdbcTemplate.update("INSERT INTO reservations_archive (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, status, created_at, archived_at) "
+                + "VALUES (?, ?, ?, 7, CURRENT_DATE - 400, CURRENT_DATE - 393, CURRENT_DATE - 393, 1.00, 'RETURNED', "
+                + "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", id, userId, bookExternalId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.libreria;
+
+import com.example.libreria.export.ExportedReservation;
+import com.example.libreria.export.ReservationColumnarReader;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.service.ReservationExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Export columnar del historial: ida y vuelta contra lo que hay en la base, filtro por fechas y archivo cortado.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation_export_test",
+        "reservations.export.block-rows=500"
+})
+class ReservationExportTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private ReservationExportService reservationExportService;
+    
+    @Test
+    void testExportRoundTripsEveryColumnAndFiltersByStartDate() throws IOException {
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, version) "
+                + "SELECT 9600000 + x, 'Libro ' || x, 10.00, 100, 100, 0 FROM SYSTEM_RANGE(1, 30)");
+        // 3000 reservas (un tercio sin devolver y sin recargo, algunas sin tarifa) y 800 archivadas
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, version) "
+                + "SELECT 75000000 + x, MOD(x, 5) + 1, 9600000 + MOD(x * 7, 30) + 1, MOD(x, 9) + 1, "
+                + "CURRENT_DATE - MOD(x, 200), CURRENT_DATE - MOD(x, 200) + MOD(x, 9) + 1, "
+                + "CASE WHEN MOD(x, 3) = 0 THEN NULL ELSE CURRENT_DATE - MOD(x, 200) + MOD(x, 11) END, "
+                + "1.25, CASE WHEN MOD(x, 17) = 0 THEN NULL ELSE 1.25 * (MOD(x, 9) + 1) END, "
+                + "CASE WHEN MOD(x, 3) = 0 THEN NULL ELSE MOD(x, 4) * 0.75 END, "
+                + "CASE WHEN MOD(x, 3) = 0 THEN 'ACTIVE' WHEN MOD(x, 7) = 0 THEN 'OVERDUE' ELSE 'RETURNED' END, "
+                + "DATEADD('SECOND', -x * 37, CURRENT_TIMESTAMP), 0 FROM SYSTEM_RANGE(1, 3000)");
+        jdbcTemplate.update("INSERT INTO reservations_archive (id, user_id, book_external_id, rental_days, start_date, "
+                + "expected_return_date, actual_return_date, daily_rate, total_fee, late_fee, status, created_at, archived_at) "
+                + "SELECT 74000000 + x, MOD(x, 5) + 1, 9600000 + MOD(x, 30) + 1, 7, CURRENT_DATE - 400 - MOD(x, 100), "
+                + "CURRENT_DATE - 393 - MOD(x, 100), CURRENT_DATE - 390 - MOD(x, 100), 2.00, 14.00, 4.50, 'RETURNED', "
+                + "DATEADD('DAY', -400 - MOD(x, 100), CURRENT_TIMESTAMP), CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, 800)");
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3800, reservationExportService.export(null, null, out));
+        List<ExportedReservation> exported = read(out.toByteArray());
+        assertEquals(expected(null, null), exported);
+        assertEquals(800, exported.stream().filter(ExportedReservation::archived).count());
+        // Diccionarios, deltas y Deflate: bastante menos que los 13 campos en binario plano
+        assertTrue(out.size() < 3800 * 12, "export de " + out.size() + " bytes");
+        
+        LocalDate from = LocalDate.now().minusDays(450);
+        LocalDate to = LocalDate.now().minusDays(100);
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        long count = reservationExportService.export(from, to, filtered);
+        List<ExportedReservation> filteredRows = read(filtered.toByteArray());
+        assertEquals(expected(from, to), filteredRows);
+        assertEquals(count, filteredRows.size());
+        assertTrue(filteredRows.stream().anyMatch(ExportedReservation::archived));
+        assertTrue(filteredRows.stream().anyMatch(reservation -> !reservation.archived()));
+        
+        assertThrows(RuntimeException.class, () -> reservationExportService.export(to, from, new ByteArrayOutputStream()));
+    }
+    
+    @Test
+    void testTruncatedExportFailsInsteadOfEndingEarly() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reservationExportService.export(null, null, out);
+        byte[] bytes = out.toByteArray();
+        // Sin la marca de fin
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 4);
+        assertThrows(IOException.class, () -> read(truncated));
+        assertThrows(RuntimeException.class, () -> read(new byte[] {1, 2, 3, 4, 5}));
+    }
+    
+    private List<ExportedReservation> read(byte[] bytes) throws IOException {
+        List<ExportedReservation> rows = new ArrayList<>();
+        try (ReservationColumnarReader reader = new ReservationColumnarReader(new ByteArrayInputStream(bytes))) {
+            ExportedReservation reservation;
+            while ((reservation = reader.next()) != null) {
+                rows.add(reservation);
+            }
+        }
+        return rows;
+    }
+    
+    private List<ExportedReservation> expected(LocalDate from, LocalDate to) {
+        List<ExportedReservation> rows = new ArrayList<>();
+        for (String table : List.of("reservations_archive", "reservations")) {
+            String filter = from != null ? " WHERE start_date BETWEEN ? AND ?" : "";
+            Object[] parameters = from != null ? new Object[] {from, to} : new Object[0];
+            rows.addAll(jdbcTemplate.query("SELECT * FROM " + table + filter + " ORDER BY id", (resultSet, rowNum) -> {
+                Date actual = resultSet.getDate("actual_return_date");
+                return new ExportedReservation(
+                        resultSet.getLong("id"),
+                        resultSet.getLong("user_id"),
+                        resultSet.getLong("book_external_id"),
+                        resultSet.getDate("start_date").toLocalDate(),
+                        resultSet.getInt("rental_days"),
+                        resultSet.getDate("expected_return_date").toLocalDate(),
+                        actual != null ? actual.toLocalDate() : null,
+                        resultSet.getBigDecimal("daily_rate"),
+                        resultSet.getBigDecimal("total_fee"),
+                        resultSet.getBigDecimal("late_fee"),
+                        Reservation.ReservationStatus.valueOf(resultSet.getString("status")),
+                        resultSet.getTimestamp("created_at").toLocalDateTime(),
+                        table.equals("reservations_archive"));
+            }, parameters));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.ReservationArchiveRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ExternalBookService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+// La caché de segundo nivel tiene que evitar la base en lecturas repetidas y seguir coherente
+// después de la sincronización y de los cambios de stock.
+// El relay del outbox y el poller de invalidaciones se espacian para que no sumen sentencias a las mediciones
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:second_level_cache_test",
+        "outbox.relay.interval-ms=3600000",
+        "cluster.cache-invalidation.poll-interval-ms=3600000"
+})
+class SecondLevelCacheTest extends LibreriaIntegrationTest {
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ReservationArchiveRepository reservationArchiveRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        sessionFactory.getCache().evictAllRegions();
+    }
+    
+    @Test
+    void testBookReadsHitCacheAndSeeStockUpdates() {
+        saveBook(910001L, "Rayuela", "12.50", 5);
+        bookService.getBookByExternalId(910001L);
+        
+        statistics.clear();
+        assertEquals(5, bookService.getBookByExternalId(910001L).getAvailableQuantity());
+        assertEquals(List.of("Julio Cortázar"), bookService.getBookByExternalId(910001L).getAuthorName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getDomainDataRegionStatistics("books").getHitCount());
+        
+        bookService.updateStock(910001L, 20);
+        statistics.clear();
+        assertEquals(20, bookService.getBookByExternalId(910001L).getStockQuantity());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+    
+    @Test
+    void testSyncUpdatesCachedBooksAndInvalidatesQueries() {
+        saveBook(910002L, "Ficciones", "12.50", 3);
+        bookService.getAllBooks();
+        statistics.clear();
+        bookService.getAllBooks();
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        
+        ExternalBookDTO updated = externalBook(910002L, "Ficciones (edición revisada)");
+        ExternalBookDTO created = externalBook(910003L, "El Aleph");
+        when(externalBookService.fetchAllBooks()).thenReturn(List.of(updated, created));
+        bookService.syncBooksFromExternalApi();
+        
+        assertEquals("Ficciones (edición revisada)", bookService.getBookByExternalId(910002L).getTitle());
+        assertTrue(bookService.getAllBooks().stream().anyMatch(book -> book.getExternalId() == 910003L));
+    }
+    
+    @Test
+    void testNativeArchiveInsertKeepsEntityRegions() {
+        saveBook(910004L, "Pedro Páramo", "12.50", 2);
+        bookService.getBookByExternalId(910004L);
+        assertTrue(sessionFactory.getCache().containsEntity(Book.class, 910004L));
+        
+        transactionTemplate.executeWithoutResult(status -> reservationArchiveRepository.copyFromReservations(List.of(-1L)));
+        
+        assertTrue(sessionFactory.getCache().containsEntity(Book.class, 910004L));
+    }
+    
+    private ExternalBookDTO externalBook(Long id, String title) {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthorName(List.of("Jorge Luis Borges"));
+        book.setPrice(new BigDecimal("9.99"));
+        return book;
+    }
+}
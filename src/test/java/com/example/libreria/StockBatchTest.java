@@ -0,0 +1,133 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.StockBatchLineDTO;
+import com.example.libreria.dto.StockBatchReportDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.CacheInvalidation;
+import com.example.libreria.repository.CacheInvalidationRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.StockBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Ajustes de stock en lote sobre libros cacheados y con reservas activas.
+class StockBatchTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private StockBatchService stockBatchService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private CacheInvalidationRepository cacheInvalidationRepository;
+    
+    @Test
+    void testLinesAreValidatedAgainstReservedCopiesAndAppliedInOrder() {
+        saveBooks(List.of(950001L, 950002L), 10);
+        reservationService.createReservation(new ReservationRequestDTO(1L, 950001L, 5, LocalDate.now()));
+        reservationService.createReservation(new ReservationRequestDTO(2L, 950001L, 5, LocalDate.now()));
+        // Queda en la caché de segundo nivel con el stock anterior
+        assertEquals(8, bookService.getBookByExternalId(950001L).getAvailableQuantity());
+        long invalidationsBefore = cacheInvalidationRepository.findMaxId();
+        
+        String csv = """
+                externalId,stockQuantity,delta
+                950001,20,
+                950001,,-5
+                950001,1,
+                950002,,3
+                999999,5,
+                950002,4,2
+                abc,4,
+                """;
+        StockBatchReportDTO report = stockBatchService.apply(stockBatchService.read(stream(csv), StockBatchService.Format.CSV));
+        
+        assertEquals(3, report.getApplied());
+        assertEquals(4, report.getRejected());
+        assertEquals(2, report.getUpdatedBooks());
+        List<StockBatchLineDTO> lines = report.getLines();
+        assertLine(lines.get(0), StockBatchLineDTO.Status.APPLIED, 20, 18);
+        assertLine(lines.get(1), StockBatchLineDTO.Status.APPLIED, 15, 13);
+        assertEquals("No se puede reducir el stock por debajo de los libros reservados: 2", lines.get(2).getMessage());
+        assertLine(lines.get(3), StockBatchLineDTO.Status.APPLIED, 13, 13);
+        assertEquals("Libro no encontrado con ID externo: 999999", lines.get(4).getMessage());
+        assertEquals("Indicar stockQuantity o delta (uno solo)", lines.get(5).getMessage());
+        assertTrue(lines.get(6).getMessage().startsWith("Valor numérico inválido"));
+        assertEquals(8L, lines.get(6).getLine());
+        
+        // La caché local se descartó y los demás nodos reciben la invalidación
+        assertEquals(15, bookService.getBookByExternalId(950001L).getStockQuantity());
+        assertEquals(13, bookService.getBookByExternalId(950001L).getAvailableQuantity());
+        assertEquals(13, bookService.getBookByExternalId(950002L).getStockQuantity());
+        List<Long> invalidated = cacheInvalidationRepository.findAll().stream()
+                .filter(invalidation -> invalidation.getId() > invalidationsBefore)
+                .filter(invalidation -> invalidation.getCacheRole().equals(Book.class.getName()))
+                .map(CacheInvalidation::getEntityId)
+                .toList();
+        assertTrue(invalidated.containsAll(List.of(950001L, 950002L)));
+        
+        // La versión avanzó: una escritura posterior por JPA no choca con el UPDATE por JDBC
+        bookService.decreaseAvailableQuantity(950001L);
+        assertEquals(12, bookService.getBookByExternalId(950001L).getAvailableQuantity());
+    }
+    
+    @Test
+    void testNdjsonRejectsMalformedLines() {
+        saveBooks(List.of(950101L), 3);
+        String ndjson = """
+                {"externalId":950101,"delta":2}
+                {"externalId":950101,"stockQuantity":"siete"}
+                {"externalId":950101
+                """;
+        
+        StockBatchReportDTO report = stockBatchService.apply(stockBatchService.read(stream(ndjson), StockBatchService.Format.NDJSON));
+        
+        assertEquals(1, report.getApplied());
+        assertTrue(report.getLines().get(1).getMessage().startsWith("Valor numérico inválido"));
+        assertTrue(report.getLines().get(2).getMessage().startsWith("JSON inválido"));
+        assertEquals(5, bookService.getBookByExternalId(950101L).getStockQuantity());
+    }
+    
+    @Test
+    void testWarehouseFileIsAppliedInSeconds() {
+        List<Long> ids = LongStream.rangeClosed(960001L, 965000L).boxed().toList();
+        saveBooks(ids, 1);
+        String csv = "externalId,delta\n" + ids.stream().map(id -> id + ",4").collect(Collectors.joining("\n"));
+        
+        StockBatchReportDTO report = assertTimeout(Duration.ofSeconds(30),
+                () -> stockBatchService.apply(stockBatchService.read(stream(csv), StockBatchService.Format.CSV)));
+        
+        assertEquals(ids.size(), report.getApplied());
+        assertEquals(ids.size(), report.getUpdatedBooks());
+        assertEquals(ids.size(), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM books WHERE external_id BETWEEN 960001 AND 965000 AND stock_quantity = 5 AND available_quantity = 5",
+                Long.class));
+    }
+    
+    private void assertLine(StockBatchLineDTO line, StockBatchLineDTO.Status status, int stock, int available) {
+        assertEquals(status, line.getStatus(), line.getMessage());
+        assertEquals(stock, line.getStockQuantity());
+        assertEquals(available, line.getAvailableQuantity());
+    }
+    
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserDeletionReportDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.CacheInvalidation;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.CacheInvalidationRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Baja de usuarios con reservas: el inventario se repone y las reservas se borran sin cargarlas.
+class UserDeletionTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private CacheInvalidationRepository cacheInvalidationRepository;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void testDeletingUsersReturnsActiveCopiesToInventory() {
+        saveBook(940001L, 10);
+        saveBook(940002L, 10);
+        Long first = createUser("primera@baja.com");
+        Long second = createUser("segunda@baja.com");
+        reserve(first, 940001L);
+        reserve(first, 940001L);
+        reserve(second, 940001L);
+        reserve(second, 940002L);
+        ReservationResponseDTO returned = reserve(second, 940002L);
+        reservationService.returnBook(returned.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+        assertEquals(7, bookService.getBookByExternalId(940001L).getAvailableQuantity());
+        assertEquals(9, bookService.getBookByExternalId(940002L).getAvailableQuantity());
+        long invalidationsBefore = cacheInvalidationRepository.findMaxId();
+        
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        UserDeletionReportDTO report = userService.deleteUsers(List.of(first, second, 999999L));
+        
+        assertEquals(2, report.getDeletedUsers());
+        assertEquals(5, report.getDeletedReservations());
+        assertEquals(4, report.getReleasedCopies());
+        assertEquals(List.of(999999L), report.getNotFound());
+        // Ni usuarios ni reservas pasan por el contexto de persistencia
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getDeleteCount());
+        
+        assertEquals(10, bookService.getBookByExternalId(940001L).getAvailableQuantity());
+        assertEquals(10, bookService.getBookByExternalId(940002L).getAvailableQuantity());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE user_id IN (?, ?)", Long.class, first, second));
+        assertThrows(RuntimeException.class, () -> userService.getUserById(first));
+        // Los demás nodos se enteran del DELETE masivo
+        List<Long> invalidated = cacheInvalidationRepository.findAll().stream()
+                .filter(invalidation -> invalidation.getId() > invalidationsBefore)
+                .filter(invalidation -> invalidation.getCacheRole().equals(User.class.getName()))
+                .map(CacheInvalidation::getEntityId)
+                .toList();
+        assertTrue(invalidated.containsAll(List.of(first, second)));
+        // El email vuelve a estar libre
+        assertDoesNotThrow(() -> createUser("primera@baja.com"));
+    }
+    
+    @Test
+    void testDeleteUserRejectsUnknownId() {
+        assertThrows(RuntimeException.class, () -> userService.deleteUser(999998L));
+    }
+    
+    private Long createUser(String email) {
+        UserRequestDTO request = new UserRequestDTO();
+        request.setName("Usuario " + email);
+        request.setEmail(email);
+        return userService.createUser(request).getId();
+    }
+    
+    private ReservationResponseDTO reserve(Long userId, Long externalId) {
+        return reservationService.createReservation(new ReservationRequestDTO(userId, externalId, 7, LocalDate.now()));
+    }
+}
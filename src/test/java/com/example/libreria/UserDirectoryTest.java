@@ -0,0 +1,145 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.service.UserEmailIndex;
+import com.example.libreria.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Directorio de usuarios paginado y el índice de emails en memoria bajo altas concurrentes.
+class UserDirectoryTest extends LibreriaIntegrationTest {
+    
+    private static final int THREADS = 32;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private UserEmailIndex userEmailIndex;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void testKeysetPagesCoverDirectoryWithoutLoadingReservations() {
+        for (int i = 0; i < 7; i++) {
+            userService.createUser(request("Lectora " + i, "lectora" + i + "@directorio.com"));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        Set<Long> seen = new HashSet<>();
+        long afterId = 0;
+        List<UserResponseDTO> page;
+        do {
+            page = userService.getUsers(afterId, 3, null);
+            for (UserResponseDTO user : page) {
+                assertTrue(user.getId() > afterId);
+                assertTrue(seen.add(user.getId()));
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 3);
+        
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class), seen.size());
+        // Proyección: ni usuarios ni reservas pasan por el contexto de persistencia
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getLoadCount());
+    }
+    
+    @Test
+    void testSearchByNameOrEmailPrefix() {
+        userService.createUser(request("Macedonio Fernández", "museo@novela.com"));
+        userService.createUser(request("Silvina Ocampo", "macedonio_fan@novela.com"));
+        userService.createUser(request("Xul Solar", "macedonioxfan@novela.com"));
+        
+        List<String> byPrefix = userService.getUsers(0, 50, "MACEDONIO").stream().map(UserResponseDTO::getName).toList();
+        assertEquals(List.of("Macedonio Fernández", "Silvina Ocampo", "Xul Solar"), byPrefix);
+        
+        // El _ del usuario es literal, no comodín de LIKE
+        List<String> literal = userService.getUsers(0, 50, "macedonio_").stream().map(UserResponseDTO::getName).toList();
+        assertEquals(List.of("Silvina Ocampo"), literal);
+    }
+    
+    @Test
+    void testConcurrentCreatesWithSameEmailKeepOnlyOne() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    userService.createUser(request("Concurrente " + n, "mismo@carrera.com"));
+                    created.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // Email tomado
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        
+        assertEquals(1, created.get());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Long.class, "mismo@carrera.com"));
+    }
+    
+    @Test
+    void testIndexFollowsRollbacksUpdatesAndRemoteDeletes() {
+        // Una transacción deshecha libera el email
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.createUser(request("Deshecha", "deshecha@indice.com"));
+            status.setRollbackOnly();
+        });
+        UserResponseDTO user = userService.createUser(request("Confirmada", "deshecha@indice.com"));
+        
+        // Cambio de email: el anterior queda libre y el nuevo tomado
+        userService.updateUser(user.getId(), request("Confirmada", "nueva@indice.com"));
+        assertDoesNotThrow(() -> userService.createUser(request("Otra", "deshecha@indice.com")));
+        assertThrows(RuntimeException.class, () -> userService.createUser(request("Repetida", "nueva@indice.com")));
+        
+        // Otra réplica borró al usuario: el índice lo tiene, la base no
+        jdbcTemplate.update("DELETE FROM users WHERE email = ?", "nueva@indice.com");
+        // Lo que hace CacheInvalidationPoller al leer la invalidación de ese nodo
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        assertDoesNotThrow(() -> userService.createUser(request("Recuperada", "nueva@indice.com")));
+    }
+    
+    private UserRequestDTO request(String name, String email) {
+        UserRequestDTO request = new UserRequestDTO();
+        request.setName(name);
+        request.setEmail(email);
+        request.setPhoneNumber("1155550000");
+        return request;
+    }
+}
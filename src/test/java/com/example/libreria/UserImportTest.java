@@ -0,0 +1,178 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.UserImportErrorDTO;
+import com.example.libreria.dto.UserImportReportDTO;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.UserImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+// Importación masiva con lotes chicos para que los duplicados caigan dentro de un lote y entre lotes.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:user_import_test",
+        "user-import.batch-size=4",
+        "user-import.max-reported-errors=10"
+})
+class UserImportTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private UserImportService userImportService;
+    
+    @MockitoSpyBean
+    private UserRepository userRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void testCsvRowsAreValidatedAndDeduplicated() {
+        String csv = """
+                email,name,phone_number
+                borges@import.com,"Borges, Jorge Luis",1100000001
+                no-es-un-email,Sin Email,
+                ,,
+                borges@import.com,Repetido en el lote,
+                
+                juan.perez@example.com,Ya existe en la base,
+                "cortazar@import.com","Julio ""Cronopio"" Cortázar",
+                pizarnik@import.com,Alejandra Pizarnik,
+                storni@import.com,Alfonsina Storni,
+                borges@import.com,Repetido en otro lote,
+                "abierta@import.com,Comillas sin cerrar
+                """;
+        
+        UserImportReportDTO report = userImportService.importUsers(stream(csv), UserImportService.Format.CSV);
+        
+        assertEquals(10, report.getTotalRows());
+        assertEquals(4, report.getImported());
+        assertEquals(6, report.getFailed());
+        Map<Long, String> errors = report.getErrors().stream()
+                .collect(Collectors.toMap(UserImportErrorDTO::getLine, UserImportErrorDTO::getMessage));
+        assertEquals("El email debe ser válido", errors.get(3L));
+        assertEquals("El email es obligatorio; El nombre es obligatorio", errors.get(4L));
+        assertEquals("El email está repetido en el archivo", errors.get(5L));
+        assertEquals("Ya existe un usuario con el email: juan.perez@example.com", errors.get(7L));
+        assertEquals("Ya existe un usuario con el email: borges@import.com", errors.get(11L));
+        assertEquals("Comillas sin cerrar", errors.get(12L));
+        
+        assertEquals("Borges, Jorge Luis", jdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE email = ?", String.class, "borges@import.com"));
+        assertEquals("Julio \"Cronopio\" Cortázar", jdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE email = ?", String.class, "cortazar@import.com"));
+    }
+    
+    @Test
+    void testNdjsonRowsReportInvalidJson() {
+        String ndjson = """
+                {"name":"Victoria Ocampo","email":"ocampo@import.com","phoneNumber":"1100000002"}
+                {"name":"Roberto Arlt","email":
+                {"name":"Roberto Arlt","email":"arlt@import.com"}
+                """;
+        
+        UserImportReportDTO report = userImportService.importUsers(stream(ndjson), UserImportService.Format.NDJSON);
+        
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(2L, report.getErrors().get(0).getLine());
+        assertTrue(report.getErrors().get(0).getMessage().startsWith("JSON inválido"));
+        assertEquals("1100000002", jdbcTemplate.queryForObject(
+                "SELECT phone_number FROM users WHERE email = ?", String.class, "ocampo@import.com"));
+    }
+    
+    @Test
+    void testLargeFileIsStreamedWithBoundedErrorReport() {
+        int rows = 1200;
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            int next = 0;
+            
+            @Override
+            public boolean hasMoreElements() {
+                return next <= rows;
+            }
+            
+            @Override
+            public InputStream nextElement() {
+                int n = next++;
+                if (n == 0) {
+                    return stream("name,email\n");
+                }
+                // Uno de cada 100 sin email válido
+                String email = n % 100 == 0 ? "invalido-" + n : "lector" + n + "@masivo.com";
+                return stream("Lector " + n + "," + email + "\n");
+            }
+        };
+        
+        UserImportReportDTO report = userImportService.importUsers(new SequenceInputStream(lines), UserImportService.Format.CSV);
+        
+        assertEquals(rows, report.getTotalRows());
+        assertEquals(rows - 12, report.getImported());
+        assertEquals(12, report.getFailed());
+        assertEquals(10, report.getErrors().size());
+        assertTrue(report.isErrorsTruncated());
+        assertEquals(rows - 12, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE email LIKE '%@masivo.com'", Long.class));
+        
+        // Los emails importados quedan en el índice: volver a importarlos no crea nada
+        String again = "name,email\n" + List.of(1, 2, 3).stream()
+                .map(n -> "Lector " + n + ",lector" + n + "@masivo.com")
+                .collect(Collectors.joining("\n"));
+        assertEquals(0, userImportService.importUsers(stream(again), UserImportService.Format.CSV).getImported());
+    }
+    
+    @Test
+    void testEmailRegisteredByAnotherNodeMidBatchRejectsOnlyItsRow() {
+        // Con el índice ya cargado, el alta de la otra réplica solo la frena la restricción unique
+        userImportService.importUsers(stream("name,email\nPrevia,previa@carrera.com\n"), UserImportService.Format.CSV);
+        AtomicBoolean raced = new AtomicBoolean();
+        // Ninguno de los emails del lote existe al verificarlo; otra réplica confirma uno justo después
+        doAnswer(invocation -> {
+            if (raced.compareAndSet(false, true)) {
+                TransactionTemplate otherNode = new TransactionTemplate(transactionManager);
+                otherNode.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                otherNode.executeWithoutResult(status -> jdbcTemplate.update("INSERT INTO users (id, name, email, "
+                        + "created_at) VALUES (9000001, 'Otra réplica', 'sabato@carrera.com', CURRENT_TIMESTAMP)"));
+            }
+            return List.of();
+        }).when(userRepository).findExistingEmails(any());
+        String csv = """
+                name,email
+                Ernesto Sabato,sabato@carrera.com
+                Manuel Puig,puig@carrera.com
+                Silvina Bullrich,bullrich@carrera.com
+                """;
+        
+        UserImportReportDTO report = userImportService.importUsers(stream(csv), UserImportService.Format.CSV);
+        
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2L, report.getErrors().get(0).getLine());
+        assertEquals("No se pudo guardar: el email se registró durante la importación", report.getErrors().get(0).getMessage());
+        assertEquals("Otra réplica", jdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE email = ?", String.class, "sabato@carrera.com"));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE email IN ('puig@carrera.com', 'bullrich@carrera.com')", Long.class));
+    }
+    
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.libreria;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.StockBatchReportDTO;
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.dto.WaitlistRequestDTO;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.InventoryReconciliationService;
+import com.example.libreria.service.ReservationService;
+import com.example.libreria.service.StockBatchService;
+import com.example.libreria.service.UserService;
+import com.example.libreria.service.WaitlistService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Lista de espera: copias liberadas por devolución, stock nuevo (también en lote y por conciliación), cancelación, vencimiento y baja de usuarios.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:waitlist_test",
+        "waitlist.hold-ms=400"
+})
+class WaitlistTest extends LibreriaIntegrationTest {
+    
+    @Autowired
+    private WaitlistService waitlistService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private InventoryReconciliationService inventoryReconciliationService;
+    
+    @Autowired
+    private StockBatchService stockBatchService;
+    
+    @Test
+    void testReturnedCopyIsHeldForHeadOfQueueAndConfirmed() {
+        saveBook(970001L, 1);
+        ReservationResponseDTO taken = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 970001L, 5, LocalDate.now()));
+        
+        WaitlistEntryDTO first = waitlistService.join(new WaitlistRequestDTO(2L, 970001L, 7));
+        WaitlistEntryDTO second = waitlistService.join(new WaitlistRequestDTO(3L, 970001L, 7));
+        assertEquals(WaitlistEntry.Status.WAITING, first.getStatus());
+        assertEquals(1, waitlistService.getEntry(first.getId()).getPosition());
+        assertEquals(2, waitlistService.getEntry(second.getId()).getPosition());
+        assertThrows(RuntimeException.class, () -> waitlistService.join(new WaitlistRequestDTO(2L, 970001L, 7)));
+        
+        reservationService.returnBook(taken.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+        
+        // La copia devuelta no vuelve a los disponibles: queda apartada para el primero
+        assertEquals(0, bookService.getBookByExternalId(970001L).getAvailableQuantity());
+        WaitlistEntryDTO held = waitlistService.getEntry(first.getId());
+        assertEquals(WaitlistEntry.Status.HELD, held.getStatus());
+        assertNotNull(held.getHoldExpiresAt());
+        assertEquals(1, waitlistService.getEntry(second.getId()).getPosition());
+        // La conciliación cuenta la copia apartada como ocupada
+        assertEquals(0, inventoryReconciliationService.reconcile(true).getDriftedBooks());
+        
+        ReservationResponseDTO confirmed = waitlistService.confirmHold(first.getId());
+        assertEquals(Reservation.ReservationStatus.ACTIVE, confirmed.getStatus());
+        assertEquals(2L, confirmed.getUserId());
+        assertEquals(7, confirmed.getRentalDays());
+        assertEquals(0, bookService.getBookByExternalId(970001L).getAvailableQuantity());
+        WaitlistEntryDTO closed = waitlistService.getEntry(first.getId());
+        assertEquals(WaitlistEntry.Status.CONFIRMED, closed.getStatus());
+        assertEquals(confirmed.getId(), closed.getReservationId());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events WHERE event_type = 'WAITLIST_HELD' "
+                + "AND aggregate_id = ?", Integer.class, first.getId()));
+    }
+    
+    @Test
+    void testJoinIsRejectedWhileCopiesAreAvailable() {
+        saveBook(970002L, 2);
+        
+        assertThrows(RuntimeException.class, () -> waitlistService.join(new WaitlistRequestDTO(1L, 970002L, 7)));
+    }
+    
+    @Test
+    void testNewStockIsHeldInArrivalOrder() {
+        saveBook(970003L, 1);
+        reservationService.createReservation(new ReservationRequestDTO(1L, 970003L, 5, LocalDate.now()));
+        WaitlistEntryDTO first = waitlistService.join(new WaitlistRequestDTO(2L, 970003L, 7));
+        WaitlistEntryDTO second = waitlistService.join(new WaitlistRequestDTO(3L, 970003L, 7));
+        WaitlistEntryDTO third = waitlistService.join(new WaitlistRequestDTO(4L, 970003L, 7));
+        // El segundo se baja: la segunda copia nueva es para el tercero
+        waitlistService.cancel(second.getId());
+        
+        bookService.updateStock(970003L, 4);
+        
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(first.getId()).getStatus());
+        assertEquals(WaitlistEntry.Status.CANCELLED, waitlistService.getEntry(second.getId()).getStatus());
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(third.getId()).getStatus());
+        assertEquals(1, bookService.getBookByExternalId(970003L).getAvailableQuantity());
+    }
+    
+    @Test
+    void testCopiesFreedByStockBatchAndReconciliationAreHeld() {
+        saveBook(970006L, 1);
+        reservationService.createReservation(new ReservationRequestDTO(1L, 970006L, 5, LocalDate.now()));
+        WaitlistEntryDTO first = waitlistService.join(new WaitlistRequestDTO(2L, 970006L, 7));
+        WaitlistEntryDTO second = waitlistService.join(new WaitlistRequestDTO(3L, 970006L, 7));
+        
+        StockBatchReportDTO report = stockBatchService.apply(List.of(
+                new StockBatchService.Entry(1, 970006L, null, 1, null)));
+        assertEquals(1, report.getApplied());
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(first.getId()).getStatus());
+        assertEquals(0, bookService.getBookByExternalId(970006L).getAvailableQuantity());
+        
+        // Una copia que aparece por fuera de la aplicación: la conciliación la libera y va al siguiente
+        jdbcTemplate.update("UPDATE books SET stock_quantity = 3 WHERE external_id = ?", 970006L);
+        assertEquals(1, inventoryReconciliationService.reconcile(false).getFixedBooks());
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(second.getId()).getStatus());
+        assertEquals(0, bookService.getBookByExternalId(970006L).getAvailableQuantity());
+        assertEquals(0, inventoryReconciliationService.reconcile(true).getDriftedBooks());
+    }
+    
+    @Test
+    void testExpiredHoldPassesCopyToNextInQueue() throws InterruptedException {
+        saveBook(970004L, 1);
+        ReservationResponseDTO taken = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 970004L, 5, LocalDate.now()));
+        WaitlistEntryDTO first = waitlistService.join(new WaitlistRequestDTO(2L, 970004L, 7));
+        WaitlistEntryDTO second = waitlistService.join(new WaitlistRequestDTO(3L, 970004L, 7));
+        
+        reservationService.returnBook(taken.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(first.getId()).getStatus());
+        
+        // El timer vence el primer hold (400 ms) y aparta la copia para el segundo; después vence ese también
+        awaitStatus(first.getId(), WaitlistEntry.Status.EXPIRED);
+        awaitStatus(second.getId(), WaitlistEntry.Status.EXPIRED);
+        assertThrows(RuntimeException.class, () -> waitlistService.confirmHold(first.getId()));
+        assertEquals(1, bookService.getBookByExternalId(970004L).getAvailableQuantity());
+    }
+    
+    @Test
+    void testDeletingHolderPassesCopyToNextInQueue() {
+        saveBook(970005L, 1);
+        ReservationResponseDTO taken = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 970005L, 5, LocalDate.now()));
+        Long holder = userService.createUser(new UserRequestDTO(
+                "Rayuela Lectora", "rayuela@espera.com", null)).getId();
+        WaitlistEntryDTO first = waitlistService.join(new WaitlistRequestDTO(holder, 970005L, 7));
+        WaitlistEntryDTO second = waitlistService.join(new WaitlistRequestDTO(2L, 970005L, 7));
+        reservationService.returnBook(taken.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+        
+        userService.deleteUsers(List.of(holder));
+        
+        assertThrows(RuntimeException.class, () -> waitlistService.getEntry(first.getId()));
+        assertEquals(WaitlistEntry.Status.HELD, waitlistService.getEntry(second.getId()).getStatus());
+        assertEquals(0, bookService.getBookByExternalId(970005L).getAvailableQuantity());
+    }
+    
+    @Test
+    void testHoldIsShortenedBeforeDaysBookedByFutureReservations() {
+        saveBook(970007L, 1);
+        LocalDate today = LocalDate.now();
+        ReservationResponseDTO taken = reservationService.createReservation(
+                new ReservationRequestDTO(1L, 970007L, 5, today));
+        // La única copia ya está reservada desde el día 10
+        reservationService.createReservation(new ReservationRequestDTO(3L, 970007L, 5, today.plusDays(10)));
+        WaitlistEntryDTO entry = waitlistService.join(new WaitlistRequestDTO(2L, 970007L, 30));
+        
+        reservationService.returnBook(taken.getId(), new ReturnBookRequestDTO(today));
+        ReservationResponseDTO confirmed = waitlistService.confirmHold(entry.getId());
+        
+        assertEquals(10, confirmed.getRentalDays());
+        assertEquals(today.plusDays(10), confirmed.getExpectedReturnDate());
+        assertFalse(reservationService.checkAvailability(970007L, today, 1).isAvailable());
+    }
+    
+    private void awaitStatus(Long entryId, WaitlistEntry.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (waitlistService.getEntry(entryId).getStatus() != status) {
+            assertTrue(System.currentTimeMillis() < deadline, "La entrada " + entryId + " no pasó a " + status);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.libreria.jdbc;
+
+import com.example.libreria.dto.QueryShapeStatsDTO;
+import com.example.libreria.dto.SlowQueryDTO;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatisticsTest {
+    
+    @Test
+    void testNormalize_ReplacesLiteralsAndCollapsesInLists() {
+        String shape = QueryStatistics.normalize(
+                "select b1_0.external_id from books b1_0\n  where b1_0.title = 'It''s' and b1_0.price > 10.5"
+                        + " and b1_0.external_id in (?, ?, ?)");
+        
+        assertEquals("select b1_0.external_id from books b1_0 where b1_0.title = ? and b1_0.price > ?"
+                + " and b1_0.external_id in (?...)", shape);
+    }
+    
+    @Test
+    void testGetTopShapes_AggregatesByShapeAndSorts() {
+        QueryStatistics statistics = new QueryStatistics(100, 10, 5, 0);
+        statistics.record("select * from users where id in (?, ?)", 1_000_000);
+        statistics.record("select * from users where id in (?)", 3_000_000);
+        statistics.record("select * from books where external_id = ?", 10_000_000);
+        
+        List<QueryShapeStatsDTO> byTotal = statistics.getTopShapes(10, "total");
+        assertEquals(2, byTotal.size());
+        assertEquals("select * from books where external_id = ?", byTotal.get(0).getShape());
+        
+        List<QueryShapeStatsDTO> byCount = statistics.getTopShapes(1, "count");
+        assertEquals(1, byCount.size());
+        assertEquals("select * from users where id in (?...)", byCount.get(0).getShape());
+        assertEquals(2, byCount.get(0).getCount());
+        assertEquals(4.0, byCount.get(0).getTotalMs(), 0.001);
+        assertEquals(3.0, byCount.get(0).getMaxMs(), 0.001);
+    }
+    
+    @Test
+    void testRecord_GroupsShapesBeyondLimit() {
+        QueryStatistics statistics = new QueryStatistics(100, 2, 5, 0);
+        statistics.record("select a from t1", 1);
+        statistics.record("select a from t2", 1);
+        statistics.record("select a from t3", 1);
+        statistics.record("select a from t4", 1);
+        
+        List<QueryShapeStatsDTO> top = statistics.getTopShapes(10, "count");
+        assertEquals(3, top.size());
+        assertEquals(QueryStatistics.OTHER_SHAPE, top.get(0).getShape());
+        assertEquals(2, top.get(0).getCount());
+    }
+    
+    @Test
+    void testRecordSlow_KeepsNewestSamplesWithParameters() throws Exception {
+        QueryStatistics statistics = new QueryStatistics(100, 10, 2, 0);
+        assertTrue(statistics.isSlow(100_000_000));
+        assertFalse(statistics.isSlow(99_000_000));
+        
+        statistics.recordSlow("select 1", 150_000_000, List.of(List.of(set(1, "a"))), null);
+        statistics.recordSlow("select 2", 150_000_000, List.of(List.of(set(2, 7), set(1, "b"), setNull(3))), "GET /api/books");
+        statistics.recordSlow("select 3", 150_000_000, List.of(), null);
+        
+        List<SlowQueryDTO> slow = statistics.getSlowQueries();
+        assertEquals(2, slow.size());
+        assertEquals("select 3", slow.get(0).getQuery());
+        assertEquals("select 2", slow.get(1).getQuery());
+        assertEquals(List.of("[b, 7, NULL]"), slow.get(1).getParameters());
+        assertEquals("GET /api/books", slow.get(1).getRequest());
+    }
+    
+    private static ParameterSetOperation set(int index, Object value) throws NoSuchMethodException {
+        return new ParameterSetOperation(PreparedStatement.class.getMethod("setObject", int.class, Object.class),
+                new Object[]{index, value});
+    }
+    
+    private static ParameterSetOperation setNull(int index) throws NoSuchMethodException {
+        return new ParameterSetOperation(PreparedStatement.class.getMethod("setNull", int.class, int.class),
+                new Object[]{index, Types.VARCHAR});
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.dto.JournalEntryDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventJournalTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    @Test
+    void testAppendAndRead() throws Exception {
+        try (EventJournal journal = newJournal(1024 * 1024)) {
+            appendAll(journal, 5);
+            
+            List<JournalEntryDTO> entries = journal.read(3, 10);
+            
+            assertEquals(3, entries.size());
+            assertEquals(3L, entries.get(0).getSequence());
+            assertEquals(5L, entries.get(2).getSequence());
+            assertEquals(LocalDate.of(2024, 1, 15), entries.get(0).getStartDate());
+        }
+    }
+    
+    @Test
+    void testRotatesSegmentsAndReadsAcrossThem() throws Exception {
+        try (EventJournal journal = newJournal(512)) {
+            appendAll(journal, 50);
+            
+            assertTrue(countSegments() > 1, "Debe haber más de un segmento");
+            List<JournalEntryDTO> entries = journal.read(1, 100);
+            assertEquals(50, entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(i + 1L, entries.get(i).getSequence());
+            }
+        }
+    }
+    
+    @Test
+    void testReopenContinuesSequenceAndDropsTornTail() throws Exception {
+        try (EventJournal journal = newJournal(1024 * 1024)) {
+            appendAll(journal, 3);
+        }
+        
+        // Simula una escritura cortada a mitad de línea
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.writeString(segment, "{\"sequence\":4,\"ty", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        
+        try (EventJournal journal = newJournal(1024 * 1024)) {
+            assertEquals(3L, journal.getLastSequence());
+            appendAll(journal, 1);
+            
+            List<JournalEntryDTO> entries = journal.read(1, 10);
+            assertEquals(4, entries.size());
+            assertEquals(4L, entries.get(3).getSequence());
+        }
+    }
+    
+    @Test
+    void testReadIgnoresLineBeingWritten() throws Exception {
+        try (EventJournal journal = newJournal(1024 * 1024)) {
+            appendAll(journal, 3);
+            
+            // Lo que ve un lector mientras el escritor está a mitad de una línea
+            Path segment;
+            try (Stream<Path> files = Files.list(directory)) {
+                segment = files.findFirst().orElseThrow();
+            }
+            Files.writeString(segment, "{\"sequence\":4,\"ty", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            
+            List<JournalEntryDTO> entries = journal.read(1, 10);
+            assertEquals(3, entries.size());
+            assertEquals(3L, entries.get(2).getSequence());
+        }
+    }
+    
+    @Test
+    void testReplayVisitsEverything() throws Exception {
+        try (EventJournal journal = newJournal(256)) {
+            appendAll(journal, 20);
+            
+            List<Long> sequences = new ArrayList<>();
+            journal.replay(1, entry -> sequences.add(entry.getSequence()));
+            
+            assertEquals(20, sequences.size());
+        }
+    }
+    
+    private EventJournal newJournal(long segmentSize) throws Exception {
+        EventJournal journal = new EventJournal(directory, segmentSize, 16, true, objectMapper);
+        journal.open();
+        return journal;
+    }
+    
+    private void appendAll(EventJournal journal, int count) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            JournalEntryDTO entry = new JournalEntryDTO();
+            entry.setType(JournalEntryDTO.EntryType.RESERVATION_CREATED);
+            entry.setReservationId((long) i);
+            entry.setUserId(1L);
+            entry.setBookExternalId(258027L);
+            entry.setStartDate(LocalDate.of(2024, 1, 15));
+            entry.setTotalFee(new BigDecimal("111.93"));
+            futures.add(journal.append(entry));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+    
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
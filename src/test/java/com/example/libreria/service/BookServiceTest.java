@@ -2,22 +2,32 @@ package com.example.libreria.service;
 
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.event.BookStockChangedEvent;
+import com.example.libreria.mapper.BookMapper;
+import com.example.libreria.metrics.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +39,18 @@ class BookServiceTest {
     @Mock
     private ExternalBookService externalBookService;
     
+    @Spy
+    private BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private LibreriaMetrics metrics;
+    
+    @Mock
+    private WaitlistQueue waitlistQueue;
+    
     @InjectMocks
     private BookService bookService;
     
@@ -53,23 +75,48 @@ class BookServiceTest {
     @Test
     void testSyncBooksFromExternalApi_NewBook() {
         when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.findAllWithAuthorsByExternalIdIn(List.of(258027L))).thenReturn(List.of());
         
         bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).saveAll(argThat(books -> books.iterator().next().isNew()));
+        verify(bookRepository, never()).findByExternalId(any());
+        verify(metrics).recordSync(1, 1, 0);
     }
     
     @Test
     void testSyncBooksFromExternalApi_ExistingBook() {
         when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.findAllWithAuthorsByExternalIdIn(List.of(258027L))).thenReturn(List.of(testBook));
         
         bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).saveAll(List.of(testBook));
+        verify(metrics).recordSync(1, 0, 1);
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ChunksLookupsAndPublishesAfterFlush() {
+        List<ExternalBookDTO> catalog = new ArrayList<>();
+        for (long id = 1; id <= 120; id++) {
+            ExternalBookDTO book = new ExternalBookDTO();
+            book.setId(id);
+            book.setTitle("Libro " + id);
+            book.setPrice(BigDecimal.TEN);
+            catalog.add(book);
+        }
+        when(externalBookService.fetchAllBooks()).thenReturn(catalog);
+        when(bookRepository.findAllWithAuthorsByExternalIdIn(anyList())).thenReturn(List.of());
+        
+        bookService.syncBooksFromExternalApi();
+        
+        // 120 libros en bloques de 50: tres consultas y tres flush, no una por libro
+        verify(bookRepository, times(3)).findAllWithAuthorsByExternalIdIn(anyList());
+        verify(bookRepository, times(3)).flush();
+        InOrder inOrder = inOrder(bookRepository, eventPublisher);
+        inOrder.verify(bookRepository).flush();
+        inOrder.verify(eventPublisher, times(50)).publishEvent(any(BookStockChangedEvent.class));
+        verify(eventPublisher, times(120)).publishEvent(any(BookStockChangedEvent.class));
     }
     
     @Test
@@ -129,6 +176,29 @@ class BookServiceTest {
         });
     }
     
+    @Test
+    void testUpdateStock_NewCopiesGoToWaitlistFirst() {
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(waitlistQueue.holdCopies(258027L, 3)).thenReturn(2);
+        
+        BookResponseDTO result = bookService.updateStock(258027L, 13);
+        
+        // 5 reservados, 3 copias nuevas y 2 de ellas apartadas para la lista de espera
+        assertEquals(13, result.getStockQuantity());
+        assertEquals(6, result.getAvailableQuantity());
+    }
+    
+    @Test
+    void testIncreaseAvailableQuantity_HeldForWaitlist() {
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(waitlistQueue.holdCopies(258027L, 1)).thenReturn(1);
+        
+        bookService.increaseAvailableQuantity(258027L);
+        
+        assertEquals(5, testBook.getAvailableQuantity());
+        verify(bookRepository).save(testBook);
+    }
+    
     @Test
     void testDecreaseAvailableQuantity_Success() {
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
@@ -148,6 +218,8 @@ class BookServiceTest {
         assertThrows(RuntimeException.class, () -> {
             bookService.decreaseAvailableQuantity(258027L);
         });
+        
+        verify(metrics).reservationRejected(LibreriaMetrics.RejectionReason.STOCK_CONFLICT);
     }
 }
 
@@ -0,0 +1,74 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.InventorySnapshotDTO;
+import com.example.libreria.dto.JournalEntryDTO;
+import com.example.libreria.journal.EventJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalReplayServiceTest {
+    
+    @TempDir
+    Path directory;
+    
+    private EventJournal eventJournal;
+    private JournalReplayService journalReplayService;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        eventJournal = new EventJournal(directory, 1024 * 1024, 16, false, new ObjectMapper().registerModule(new JavaTimeModule()));
+        eventJournal.open();
+        journalReplayService = new JournalReplayService(eventJournal);
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        eventJournal.close();
+    }
+    
+    @Test
+    void testRebuildInventory_KeepsHighestVersionPerBook() {
+        // El commit de la versión 8 llegó al journal antes que el de la 7
+        append(258027L, 10, 4, 8L);
+        append(258027L, 10, 5, 7L);
+        append(1L, 3, 3, 2L);
+        
+        List<InventorySnapshotDTO> inventory = journalReplayService.rebuildInventory();
+        
+        assertEquals(2, inventory.size());
+        assertEquals(1L, inventory.get(0).getBookExternalId());
+        assertEquals(258027L, inventory.get(1).getBookExternalId());
+        assertEquals(4, inventory.get(1).getAvailableQuantity());
+        assertEquals(1L, inventory.get(1).getLastSequence());
+    }
+    
+    @Test
+    void testRebuildInventory_EntriesWithoutVersionKeepJournalOrder() {
+        append(258027L, 10, 4, null);
+        append(258027L, 10, 6, null);
+        
+        List<InventorySnapshotDTO> inventory = journalReplayService.rebuildInventory();
+        
+        assertEquals(6, inventory.get(0).getAvailableQuantity());
+    }
+    
+    private void append(Long externalId, int stock, int available, Long version) {
+        JournalEntryDTO entry = new JournalEntryDTO();
+        entry.setType(JournalEntryDTO.EntryType.BOOK_STOCK_CHANGED);
+        entry.setReason("STOCK_UPDATED");
+        entry.setBookExternalId(externalId);
+        entry.setStockQuantity(stock);
+        entry.setAvailableQuantity(available);
+        entry.setBookVersion(version);
+        eventJournal.append(entry).join();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.mapper.ReservationMapper;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.ReservationArchive;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.ReservationArchiveRepository;
+import com.example.libreria.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationArchiveServiceTest {
+    
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private ReservationArchiveRepository reservationArchiveRepository;
+    
+    @Spy
+    private ReservationMapper reservationMapper = Mappers.getMapper(ReservationMapper.class);
+    
+    @InjectMocks
+    private ReservationArchiveService reservationArchiveService;
+    
+    private Reservation testReservation;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationArchiveService, "retentionDays", 30);
+        
+        User user = new User();
+        user.setId(1L);
+        user.setName("Juan Pérez");
+        
+        Book book = new Book();
+        book.setExternalId(258027L);
+        book.setTitle("The Lord of the Rings");
+        
+        testReservation = new Reservation();
+        testReservation.setId(10L);
+        testReservation.setUser(user);
+        testReservation.setBook(book);
+        testReservation.setRentalDays(7);
+        testReservation.setStartDate(LocalDate.now().minusDays(5));
+        testReservation.setExpectedReturnDate(LocalDate.now().plusDays(2));
+        testReservation.setDailyRate(new BigDecimal("15.99"));
+        testReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        testReservation.setCreatedAt(LocalDateTime.now());
+    }
+    
+    @Test
+    void testArchiveChunk_MovesClosedReservations() {
+        LocalDate cutoff = LocalDate.now().minusDays(30);
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(reservationRepository.findClosedIdsReturnedBefore(eq(cutoff), any(Pageable.class))).thenReturn(ids);
+        when(reservationArchiveRepository.copyFromReservations(ids)).thenReturn(3);
+        
+        int archived = reservationArchiveService.archiveChunk(cutoff, 100);
+        
+        assertEquals(3, archived);
+        verify(reservationRepository).deleteByIdIn(ids);
+    }
+    
+    @Test
+    void testArchiveChunk_NothingToArchive() {
+        LocalDate cutoff = LocalDate.now().minusDays(30);
+        when(reservationRepository.findClosedIdsReturnedBefore(eq(cutoff), any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+        
+        assertEquals(0, reservationArchiveService.archiveChunk(cutoff, 100));
+        
+        verify(reservationArchiveRepository, never()).copyFromReservations(any());
+        verify(reservationRepository, never()).deleteByIdIn(any());
+    }
+    
+    @Test
+    void testArchiveChunk_PartialCopyFails() {
+        LocalDate cutoff = LocalDate.now().minusDays(30);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(reservationRepository.findClosedIdsReturnedBefore(eq(cutoff), any(Pageable.class))).thenReturn(ids);
+        when(reservationArchiveRepository.copyFromReservations(ids)).thenReturn(1);
+        
+        assertThrows(RuntimeException.class, () -> reservationArchiveService.archiveChunk(cutoff, 100));
+        
+        verify(reservationRepository, never()).deleteByIdIn(any());
+    }
+    
+    @Test
+    void testGetReservationHistory_RecentRangeSkipsArchive() {
+        LocalDate from = LocalDate.now().minusDays(10);
+        LocalDate to = LocalDate.now();
+        when(reservationRepository.findByStartDateBetween(from, to)).thenReturn(List.of(testReservation));
+        
+        List<ReservationResponseDTO> result = reservationArchiveService.getReservationHistory(from, to, null);
+        
+        assertEquals(1, result.size());
+        verifyNoInteractions(reservationArchiveRepository);
+    }
+    
+    @Test
+    void testGetReservationHistory_OldRangeQueriesArchive() {
+        LocalDate from = LocalDate.now().minusDays(90);
+        LocalDate to = LocalDate.now();
+        
+        ReservationArchive archived = new ReservationArchive();
+        archived.setId(2L);
+        archived.setUserId(1L);
+        archived.setBookExternalId(258027L);
+        archived.setStartDate(LocalDate.now().minusDays(80));
+        archived.setStatus(Reservation.ReservationStatus.RETURNED);
+        
+        when(reservationRepository.findByStartDateBetween(from, to)).thenReturn(List.of(testReservation));
+        when(reservationArchiveRepository.findByStartDateBetweenOrderByStartDate(from, to)).thenReturn(List.of(archived));
+        
+        List<ReservationResponseDTO> result = reservationArchiveService.getReservationHistory(from, to, null);
+        
+        assertEquals(2, result.size());
+        assertEquals(2L, result.get(0).getId());
+        assertEquals(10L, result.get(1).getId());
+    }
+    
+    @Test
+    void testGetReservationHistory_InvalidRange() {
+        assertThrows(RuntimeException.class, () -> reservationArchiveService.getReservationHistory(
+                LocalDate.now(), LocalDate.now().minusDays(1), null));
+    }
+}
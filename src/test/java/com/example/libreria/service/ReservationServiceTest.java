@@ -5,6 +5,8 @@ import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.mapper.ReservationMapper;
+import com.example.libreria.metrics.LibreriaMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
@@ -14,10 +16,12 @@ import com.example.libreria.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -46,8 +50,17 @@ class ReservationServiceTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private ReservationMapper reservationMapper = Mappers.getMapper(ReservationMapper.class);
+    
+    @Mock
+    private AvailabilityCalendar availabilityCalendar;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
     @Mock
-    private ModelMapper modelMapper;
+    private LibreriaMetrics metrics;
     
     @InjectMocks
     private ReservationService reservationService;
@@ -83,6 +96,7 @@ class ReservationServiceTest {
         testReservation.setDailyRate(new BigDecimal("15.99"));
         testReservation.setTotalFee(new BigDecimal("111.93"));
         testReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        testReservation.setCopyTaken(true);
         testReservation.setCreatedAt(LocalDateTime.now());
     }
     
@@ -114,6 +128,9 @@ class ReservationServiceTest {
         when(bookService.getBookByExternalId(testBook.getExternalId()))
                 .thenReturn(bookDto);
 
+        when(availabilityCalendar.tryBook(testBook.getExternalId(), LocalDate.now(), LocalDate.now().plusDays(2)))
+                .thenReturn(true);
+
         // ---- mock repositorios: devolver entidades reales ----
         when(userRepository.findById(testUser.getId()))
                 .thenReturn(Optional.of(testUser));
@@ -130,23 +147,6 @@ class ReservationServiceTest {
                     return r;
                 });
 
-        // ---- mock ModelMapper -> ReservationResponseDTO ----
-        when(modelMapper.map(any(Reservation.class), eq(ReservationResponseDTO.class)))
-                .thenAnswer(invocation -> {
-                    Reservation r = invocation.getArgument(0);
-                    ReservationResponseDTO dto = new ReservationResponseDTO();
-                    dto.setId(r.getId());
-                    dto.setUserId(r.getUser().getId());
-                    dto.setBookExternalId(r.getBook().getExternalId());
-                    dto.setRentalDays(r.getRentalDays());
-                    dto.setStartDate(r.getStartDate());
-                    dto.setExpectedReturnDate(r.getExpectedReturnDate());
-                    dto.setDailyRate(r.getDailyRate());
-                    dto.setTotalFee(r.getTotalFee());
-                    dto.setStatus(r.getStatus());
-                    return dto;
-                });
-
         // Act
         ReservationResponseDTO result = reservationService.createReservation(requestDTO);
 
@@ -196,6 +196,7 @@ class ReservationServiceTest {
         // No debe guardar nada ni decrementar stock
         verify(reservationRepository, never()).save(any());
         verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(metrics).reservationRejected(LibreriaMetrics.RejectionReason.STOCK_OUT);
     }
 
     @Test
@@ -203,6 +204,7 @@ class ReservationServiceTest {
         // Arrange: la reserva vence hoy y está activa
         testReservation.setExpectedReturnDate(LocalDate.now());
         testReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        testReservation.setCopyTaken(true);
         testReservation.setLateFee(BigDecimal.ZERO);
 
         // Mock: encuentra la reserva
@@ -213,18 +215,6 @@ class ReservationServiceTest {
         when(reservationRepository.save(any(Reservation.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
-        // Mock ModelMapper: convertir Reservation -> ReservationResponseDTO
-        when(modelMapper.map(any(Reservation.class), eq(ReservationResponseDTO.class)))
-                .thenAnswer(invocation -> {
-                    Reservation r = invocation.getArgument(0);
-                    ReservationResponseDTO dto = new ReservationResponseDTO();
-                    dto.setId(r.getId());
-                    dto.setStatus(r.getStatus());
-                    dto.setLateFee(r.getLateFee());
-                    dto.setActualReturnDate(r.getActualReturnDate());
-                    return dto;
-                });
-
         // Request de devolución en fecha
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
         returnRequest.setReturnDate(LocalDate.now());
@@ -248,6 +238,7 @@ class ReservationServiceTest {
         testBook.setPrice(new BigDecimal("100.00")); // para que el cálculo sea sencillo
         testReservation.setExpectedReturnDate(LocalDate.now().minusDays(3));
         testReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        testReservation.setCopyTaken(true);
 
         when(reservationRepository.findById(1L))
                 .thenReturn(Optional.of(testReservation));
@@ -255,17 +246,6 @@ class ReservationServiceTest {
         when(reservationRepository.save(any(Reservation.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
-        when(modelMapper.map(any(Reservation.class), eq(ReservationResponseDTO.class)))
-                .thenAnswer(invocation -> {
-                    Reservation r = invocation.getArgument(0);
-                    ReservationResponseDTO dto = new ReservationResponseDTO();
-                    dto.setId(r.getId());
-                    dto.setStatus(r.getStatus());
-                    dto.setLateFee(r.getLateFee());
-                    dto.setActualReturnDate(r.getActualReturnDate());
-                    return dto;
-                });
-
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
         returnRequest.setReturnDate(LocalDate.now()); // devuelve hoy (3 días tarde)
 
@@ -1,23 +1,35 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cluster.CacheInvalidationRecorder;
+import com.example.libreria.dto.UserDeletionReportDTO;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.mapper.UserMapper;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -27,6 +39,30 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Spy
+    private UserMapper userMapper = Mappers.getMapper(UserMapper.class);
+    
+    @Mock
+    private UserEmailIndex userEmailIndex;
+    
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private BookService bookService;
+    
+    @Mock
+    private WaitlistQueue waitlistQueue;
+    
+    @Mock
+    private AvailabilityCalendar availabilityCalendar;
+    
+    @Mock
+    private CacheInvalidationRecorder cacheInvalidationRecorder;
+    
+    @Mock
+    private EntityManager entityManager;
+    
     @InjectMocks
     private UserService userService;
     
@@ -50,7 +86,7 @@ class UserServiceTest {
     
     @Test
     void testCreateUser_Success() {
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
+        when(userEmailIndex.claim("juan@example.com")).thenReturn(true);
         when(userRepository.save(any(User.class))).thenReturn(testUser);
         
         UserResponseDTO result = userService.createUser(userRequestDTO);
@@ -60,11 +96,14 @@ class UserServiceTest {
         assertEquals(testUser.getName(), result.getName());
         assertEquals(testUser.getEmail(), result.getEmail());
         verify(userRepository, times(1)).save(any(User.class));
+        verify(userEmailIndex).assign("juan@example.com", 1L);
+        // El índice responde sin consultar la base
+        verify(userRepository, never()).existsByEmail(anyString());
     }
     
     @Test
     void testCreateUser_EmailAlreadyExists() {
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(userEmailIndex.claim(anyString())).thenReturn(false);
         
         assertThrows(RuntimeException.class, () -> {
             userService.createUser(userRequestDTO);
@@ -94,18 +133,54 @@ class UserServiceTest {
     }
     
     @Test
-    void testGetAllUsers() {
-        User user2 = new User();
-        user2.setId(2L);
-        user2.setName("María García");
-        user2.setEmail("maria@example.com");
+    void testGetUsers() {
+        UserResponseDTO user1 = new UserResponseDTO(2L, "Juan Pérez", "juan@example.com", "123456789", LocalDateTime.now());
+        UserResponseDTO user2 = new UserResponseDTO(3L, "María García", "maria@example.com", null, LocalDateTime.now());
         
-        when(userRepository.findAll()).thenReturn(Arrays.asList(testUser, user2));
+        when(userRepository.findDirectoryPage(1L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(user1, user2));
         
-        List<UserResponseDTO> result = userService.getAllUsers();
+        List<UserResponseDTO> result = userService.getUsers(1L, 2, null);
         
         assertNotNull(result);
         assertEquals(2, result.size());
+        verify(userRepository, never()).findAll();
+    }
+    
+    @Test
+    void testGetUsers_SearchEscapesWildcards() {
+        when(userRepository.searchDirectoryPage(0L, "50\\%\\_m%", PageRequest.of(0, 10))).thenReturn(List.of());
+        
+        List<UserResponseDTO> result = userService.getUsers(0L, 10, " 50%_M ");
+        
+        assertTrue(result.isEmpty());
+    }
+    
+    @Test
+    void testUpdateUser_EmailChanged() {
+        userRequestDTO.setEmail("juan.perez@example.com");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userEmailIndex.claim("juan.perez@example.com")).thenReturn(true);
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        
+        UserResponseDTO result = userService.updateUser(1L, userRequestDTO);
+        
+        assertEquals("juan.perez@example.com", result.getEmail());
+        verify(userEmailIndex).assign("juan.perez@example.com", 1L);
+        verify(userEmailIndex).release("juan@example.com", 1L);
+    }
+    
+    @Test
+    void testUpdateUser_EmailTaken() {
+        userRequestDTO.setEmail("maria@example.com");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userEmailIndex.claim("maria@example.com")).thenReturn(false);
+        
+        assertThrows(RuntimeException.class, () -> {
+            userService.updateUser(1L, userRequestDTO);
+        });
+        
+        verify(userRepository, never()).save(any(User.class));
+        assertEquals("juan@example.com", testUser.getEmail());
     }
     
 //    @Test
@@ -122,22 +197,76 @@ class UserServiceTest {
     
     @Test
     void testDeleteUser_Success() {
-        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.findEmailIdsForUpdate(List.of(1L))).thenReturn(List.of(emailId(1L, "juan@example.com")));
+        when(reservationRepository.findActiveBookingsForUpdate(List.of(1L))).thenReturn(List.of());
         
         userService.deleteUser(1L);
         
-        verify(userRepository, times(1)).deleteById(1L);
+        verify(reservationRepository, times(1)).deleteByUserIdIn(List.of(1L));
+        verify(userRepository, times(1)).deleteByIdIn(List.of(1L));
+        verify(userRepository, never()).findById(anyLong());
+        verify(userEmailIndex).release("juan@example.com", 1L);
     }
     
     @Test
     void testDeleteUser_NotFound() {
-        when(userRepository.existsById(1L)).thenReturn(false);
+        when(userRepository.findEmailIdsForUpdate(List.of(1L))).thenReturn(List.of());
         
         assertThrows(RuntimeException.class, () -> {
             userService.deleteUser(1L);
         });
         
-        verify(userRepository, never()).deleteById(anyLong());
+        verify(userRepository, never()).deleteByIdIn(anyList());
+    }
+    
+    @Test
+    void testDeleteUsers_ReleasesCopiesOncePerBook() {
+        when(userRepository.findEmailIdsForUpdate(List.of(1L, 2L, 9L)))
+                .thenReturn(List.of(emailId(1L, "juan@example.com"), emailId(2L, "maria@example.com")));
+        // La reserva futura del libro 30 no tiene copia tomada: no se libera nada de ese libro
+        when(reservationRepository.findActiveBookingsForUpdate(List.of(1L, 2L))).thenReturn(List.of(
+                booking(10L, true), booking(20L, true), booking(10L, true), booking(30L, false)));
+        when(bookService.releaseCopies(Map.of(10L, 2, 20L, 1))).thenReturn(3);
+        when(reservationRepository.deleteByUserIdIn(List.of(1L, 2L))).thenReturn(5);
+        when(userRepository.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+        
+        UserDeletionReportDTO report = userService.deleteUsers(List.of(1L, 2L, 9L));
+        
+        assertEquals(2, report.getDeletedUsers());
+        assertEquals(5, report.getDeletedReservations());
+        assertEquals(3, report.getReleasedCopies());
+        assertEquals(List.of(9L), report.getNotFound());
+        verify(bookService, times(1)).releaseCopies(anyMap());
+        verify(cacheInvalidationRecorder).recordBulk(entityManager, User.class, List.of(1L, 2L));
+        verify(availabilityCalendar).reload(Set.of(10L, 20L, 30L));
+    }
+    
+    private static ReservationRepository.ActiveBooking booking(Long bookExternalId, boolean copyTaken) {
+        return new ReservationRepository.ActiveBooking() {
+            @Override
+            public Long getBookExternalId() {
+                return bookExternalId;
+            }
+            
+            @Override
+            public Boolean getCopyTaken() {
+                return copyTaken;
+            }
+        };
+    }
+    
+    private static UserRepository.EmailId emailId(Long id, String email) {
+        return new UserRepository.EmailId() {
+            @Override
+            public String getEmail() {
+                return email;
+            }
+            
+            @Override
+            public Long getId() {
+                return id;
+            }
+        };
     }
 }
 